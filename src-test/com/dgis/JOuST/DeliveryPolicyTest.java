@@ -0,0 +1,50 @@
+package com.dgis.JOuST;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class DeliveryPolicyTest {
+	@Test
+	public void testDeadbandBoundary() {
+		DeliveryPolicy p = DeliveryPolicy.onChange().withDeadband(0x20);
+		assertFalse(p.moved(0x10, 0x10));
+		assertFalse(p.moved(0x2F, 0x10));
+		assertTrue(p.moved(0x30, 0x10));
+		assertTrue(p.moved(0x10, 0x30));
+		assertTrue(p.moved(-1, 0x10));
+
+		DeliveryPolicy any = DeliveryPolicy.onChange();
+		assertFalse(any.moved(7, 7));
+		assertTrue(any.moved(8, 7));
+	}
+
+	@Test
+	public void testPercentDeadbandBoundary() {
+		DeliveryPolicy p = DeliveryPolicy.onChange().withPercentDeadband(10);
+		assertFalse(p.moved(209, 200));
+		assertTrue(p.moved(220, 200));
+		assertTrue(p.moved(180, 200));
+		//Both deadbands must be cleared.
+		p = p.withDeadband(30);
+		assertFalse(p.moved(220, 200));
+		assertTrue(p.moved(230, 200));
+	}
+}
@@ -0,0 +1,449 @@
+package com.dgis.JOuST;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.dgis.JOuST.serial.FakeObdSerial;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Some tests for OBDEventDriver
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class OBDEventDriverTest {
+
+	static class CountingListener implements PIDResultListener {
+		final AtomicInteger count = new AtomicInteger();
+		@Override
+		public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+			count.incrementAndGet();
+		}
+		@Override
+		public void error(OBDError error, int pid) {
+			fail(error.toString());
+		}
+	}
+
+	@Test
+	public void testListenersShareRequests() throws InterruptedException {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		CountingListener[] lists = new CountingListener[10];
+		for(int x=0; x<lists.length; x++) {
+			lists[x] = new CountingListener();
+			driver.scheduleRepeating(lists[x], 0x0C);
+		}
+		Thread.sleep(200);
+		driver.stop(null);
+		int requests = dev.getRequestCount(0x0C);
+		assertTrue(requests > 0);
+		for(CountingListener l : lists)
+			assertTrue(Math.abs(l.count.get() - requests) <= 1);
+	}
+
+	@Test
+	public void testSlowListenersAreDownsampled() throws InterruptedException {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		CountingListener fast = new CountingListener();
+		CountingListener slow = new CountingListener();
+		CountingListener once = new CountingListener();
+		driver.scheduleRepeating(fast, 0x0C, 100);
+		driver.scheduleRepeating(slow, 0x0C, 10);
+		driver.scheduleOnce(once, 0x0C);
+		Thread.sleep(500);
+		driver.stop(null);
+		assertEquals(1, once.count.get());
+		//Polled at the fastest listener's rate, not as fast as possible.
+		int requests = dev.getRequestCount(0x0C);
+		assertTrue("requests: "+requests, requests >= 30 && requests <= 60);
+		assertTrue("fast: "+fast.count.get(), Math.abs(fast.count.get() - requests) <= 1);
+		assertTrue("slow: "+slow.count.get(), slow.count.get() >= 3 && slow.count.get() <= 6);
+	}
+
+	@Test
+	public void testOnceRequestsSkipTheQueue() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(5);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		for(int pid=0x20; pid<0x30; pid++)
+			driver.scheduleRepeating(new CountingListener(), pid);
+		Thread.sleep(50);
+		//A full polling cycle is 16 requests; a one-shot request should not wait for it.
+		int queued = dev.getRequestLog().size();
+		PIDRequestFuture f = driver.requestOnce(null, 0x03, 1000);
+		PIDReply r = f.get();
+		driver.stop(null);
+		assertEquals(0x03, r.getPid());
+		assertEquals(1, (int)r.getValue());
+		//At most the request on the wire, and one started as it was queued, go first.
+		List<Integer> after = dev.getRequestLog();
+		after = after.subList(queued, after.size());
+		int waited = after.indexOf(0x03);
+		assertTrue("answered after queueing: "+after, waited >= 0 && waited <= 2);
+	}
+
+	@Test
+	public void testRequestsOnTheWireCannotBeCancelled() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(100);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		CountingListener list = new CountingListener();
+		PIDRequestFuture sent = driver.requestOnce(list, 0x03, 0);
+		Thread.sleep(30);
+		PIDRequestFuture queued = driver.requestOnce(list, 0x04, 0);
+		assertFalse(sent.cancel(false));
+		assertFalse(sent.isCancelled());
+		assertTrue(queued.cancel(false));
+		assertEquals(0x03, sent.get().getPid());
+		Thread.sleep(150);
+		driver.stop(null);
+		assertEquals(1, list.count.get());
+		assertEquals(0, dev.getRequestCount(0x04));
+	}
+
+	@Test
+	public void testListenersAreCalledWithoutTheDriverLock() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(0);
+		final OBDEventDriver driver = new OBDEventDriver(dev);
+		final Object lock = new Object();
+		final AtomicInteger samples = new AtomicInteger();
+		//Takes its own lock on the requester thread...
+		driver.scheduleRepeating(new PIDResultListener(){
+			@Override
+			public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+				synchronized(lock) {
+					samples.incrementAndGet();
+				}
+			}
+			@Override
+			public void error(OBDError error, int pid) {
+			}
+		}, 0x0C);
+		//...while another thread holds it and calls into the driver.
+		Thread scheduler = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				for(int pid=0; pid<0x100; pid++) {
+					synchronized(lock) {
+						driver.scheduleRepeating(new CountingListener(), pid);
+					}
+				}
+			}
+		});
+		scheduler.setDaemon(true);
+		scheduler.start();
+		scheduler.join(5000);
+		assertFalse("deadlocked", scheduler.isAlive());
+		int before = samples.get();
+		Thread.sleep(100);
+		assertTrue(samples.get() > before);
+		driver.stop(null);
+	}
+
+	@Test
+	public void testCancelRacesCompletion() throws Exception {
+		final byte[] data = "4103AA".getBytes();
+		final SampleTime time = new SampleTime(1, 2);
+		for(int x=0; x<2000; x++) {
+			final CountingListener list = new CountingListener();
+			final PIDRequestFuture f = new PIDRequestFuture(list, 0x03, 0);
+			final CountDownLatch go = new CountDownLatch(1);
+			Thread completer = new Thread(new Runnable(){
+				@Override
+				public void run() {
+					try {
+						go.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					f.complete(1, data, time, null);
+				}
+			});
+			completer.start();
+			go.countDown();
+			boolean cancelled = f.cancel(false);
+			completer.join();
+			assertEquals(cancelled, f.isCancelled());
+			assertEquals(cancelled ? 0 : 1, list.count.get());
+		}
+	}
+
+	@Test
+	public void testDTCsOnlyReportedOnChange() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(1);
+		dev.setDTCs(DTCMode.STORED, Arrays.asList(new DiagnosticTroubleCode(0x0133)));
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		CountingListener live = new CountingListener();
+		driver.scheduleRepeating(live, 0x0C);
+		final List<List<DiagnosticTroubleCode>> reports = new ArrayList<List<DiagnosticTroubleCode>>();
+		driver.scheduleDTCPolling(new DTCResultListener(){
+			@Override
+			public void dtcsReceived(DTCMode mode, List<DiagnosticTroubleCode> codes) {
+				reports.add(codes);
+			}
+			@Override
+			public void error(OBDError error, DTCMode mode) {
+				fail(error.toString());
+			}
+		}, DTCMode.STORED, 10);
+		Thread.sleep(300);
+		dev.setDTCs(DTCMode.STORED, new ArrayList<DiagnosticTroubleCode>());
+		Thread.sleep(300);
+		driver.stop(null);
+		assertTrue(dev.getRequestCount(DTCMode.STORED) > 2);
+		assertEquals(2, reports.size());
+		assertEquals("[P0133]", reports.get(0).toString());
+		assertEquals(0, reports.get(1).size());
+		//Live polling kept the bus for itself.
+		assertTrue(dev.getRequestCount(0x0C) >= OBDEventDriver.DTC_INTERLEAVE * (dev.getRequestCount(DTCMode.STORED) - 1));
+	}
+
+	@Test
+	public void testArbitraryRequestsShareTheFastLane() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(5);
+		dev.setResponse("0902", "014\r0: 49 02 01 31 44 34\r1: 47 50 30 30 52 35 35\r2: 42 31 32 33 34 35 36\r\r>");
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		driver.scheduleRepeating(new CountingListener(), 0x0C);
+		OBDRequestFuture<String> vin = driver.requestOnce(OBDRequests.vin(), null, 1000);
+		assertEquals("1D4GP00R55B123456", vin.get());
+		driver.stop(null);
+	}
+
+	@Test
+	public void testNamedListenersFollowCatalogChanges() throws Exception {
+		PIDCatalog old = PIDCatalog.getDefault();
+		FakeObdSerial dev = new FakeObdSerial(2);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		try {
+			CountingListener byName = new CountingListener();
+			CountingListener byPid = new CountingListener();
+			driver.scheduleRepeating(byName, "RPM");
+			driver.scheduleRepeating(byPid, 0x0C);
+			Thread.sleep(50);
+			assertTrue(dev.getRequestCount(0x0C) > 0);
+			PIDCatalog.setDefault(old.overlay(PIDCatalog.parse(new StringReader("0x22, 2, RPM\n"), "test", false)));
+			Thread.sleep(50);
+			int before = dev.getRequestCount(0x22);
+			assertTrue(before > 0);
+			Thread.sleep(50);
+			assertTrue(dev.getRequestCount(0x22) > before);
+			//Listeners by number stay where they were.
+			int pid0C = dev.getRequestCount(0x0C);
+			Thread.sleep(50);
+			assertTrue(dev.getRequestCount(0x0C) > pid0C);
+		} finally {
+			driver.stop(null);
+			PIDCatalog.setDefault(old);
+		}
+	}
+
+	@Test
+	public void testDriversHaveTheirOwnCatalogs() throws Exception {
+		PIDCatalog custom = PIDCatalog.builtin().overlay(PIDCatalog.parse(new StringReader("0x22, 2, RPM\n"), "test", false));
+		FakeObdSerial devA = new FakeObdSerial(2);
+		FakeObdSerial devB = new FakeObdSerial(2);
+		OBDEventDriver a = new OBDEventDriver(devA, new OBDContext("a", PIDCatalog.builtin()));
+		OBDEventDriver b = new OBDEventDriver(devB, new OBDContext("b", custom));
+		a.scheduleRepeating(new CountingListener(), "RPM");
+		b.scheduleRepeating(new CountingListener(), "RPM");
+		Thread.sleep(50);
+		a.stop(null);
+		b.stop(null);
+		assertTrue(devA.getRequestCount(0x0C) > 0);
+		assertEquals(0, devA.getRequestCount(0x22));
+		assertTrue(devB.getRequestCount(0x22) > 0);
+		assertEquals(0, devB.getRequestCount(0x0C));
+	}
+
+	@Test
+	public void testFailingPidsAreSuspended() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		dev.setNoData(0x0D, true);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		driver.setBreakerPolicy(3, 40, 80);
+		final List<String> events = new ArrayList<String>();
+		driver.addHealthListener(new PIDHealthListener() {
+			@Override
+			public void pidSuspended(int pid, int failures, OBDError lastError, long retryMillis) {
+				events.add("suspended "+pid+" "+retryMillis);
+			}
+			@Override
+			public void pidRecovered(int pid) {
+				events.add("recovered "+pid);
+			}
+		});
+		driver.scheduleRepeating(new CountingListener(), 0x0C);
+		driver.scheduleRepeating(new PIDResultListener() {
+			@Override
+			public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {}
+			@Override
+			public void error(OBDError error, int pid) {}
+		}, 0x0D);
+		Thread.sleep(300);
+		//3 failures, then probes at 40ms and every 80ms after that.
+		int failing = dev.getRequestCount(0x0D);
+		assertTrue("failing: "+failing, failing >= 5 && failing <= 8);
+		assertTrue(dev.getRequestCount(0x0C) > 50);
+		assertEquals(Arrays.asList(0x0D), driver.getSuspendedPids());
+		dev.setNoData(0x0D, false);
+		Thread.sleep(150);
+		driver.stop(null);
+		//Failed probes are not reported again.
+		assertEquals(Arrays.asList("suspended 13 40", "recovered 13"), events);
+		assertTrue(driver.getSuspendedPids().isEmpty());
+	}
+
+	@Test
+	public void testClosedPidsAreDroppedAtOnce() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		CountingListener a = new CountingListener();
+		CountingListener b = new CountingListener();
+		CountingListener other = new CountingListener();
+		PIDSubscription subA = driver.subscribe(a, 0x0C, 0);
+		PIDSubscription subB = driver.subscribe(b, 0x0C, 0);
+		driver.subscribe(other, 0x0D, 0);
+		assertEquals(2, driver.getConsumerCount(0x0C));
+		Thread.sleep(100);
+
+		subA.close();
+		subA.close();
+		assertFalse(subA.isOpen());
+		assertTrue(subB.isOpen());
+		assertEquals(1, driver.getConsumerCount(0x0C));
+		int closedA = a.count.get();
+		Thread.sleep(100);
+		assertTrue(a.count.get() <= closedA + 1);
+		assertTrue(b.count.get() > closedA + 10);
+
+		subB.close();
+		assertEquals(0, driver.getConsumerCount(0x0C));
+		int dropped = dev.getRequestCount(0x0C);
+		int before = dev.getRequestCount(0x0D);
+		Thread.sleep(200);
+		assertTrue(dev.getRequestCount(0x0C) <= dropped + 1);
+		//0x0D now has the bus to itself: about twice the rate it had.
+		int after = dev.getRequestCount(0x0D) - before;
+		assertTrue("after: "+after+" before: "+before, after > before * 1.5);
+		driver.stop(null);
+	}
+
+	@Test
+	public void testRemoveAll() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		PIDSubscription sub = driver.subscribe(new CountingListener(), 0x0C, 0);
+		driver.scheduleRepeating(new CountingListener(), 0x0C, 10);
+		driver.scheduleRepeating(new CountingListener(), 0x0D);
+		assertTrue(driver.removeAll(0x0C));
+		assertFalse(driver.removeAll(0x0C));
+		assertFalse(sub.isOpen());
+		assertEquals(0, driver.getConsumerCount(0x0C));
+		assertEquals(1, driver.getConsumerCount(0x0D));
+		Thread.sleep(100);
+		driver.stop(null);
+		assertTrue(dev.getRequestCount(0x0C) <= 1);
+		assertTrue(dev.getRequestCount(0x0D) > 0);
+	}
+
+	@Test
+	public void testDeliveryPolicies() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		dev.setValue(0x05, 0x10);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		CountingListener all = new CountingListener();
+		CountingListener changes = new CountingListener();
+		CountingListener deadband = new CountingListener();
+		CountingListener heartbeat = new CountingListener();
+		driver.subscribe(all, 0x05, 0);
+		driver.subscribe(changes, 0x05, 0, DeliveryPolicy.onChange());
+		driver.subscribe(deadband, 0x05, 0, DeliveryPolicy.onChange().withDeadband(0x20));
+		driver.subscribe(heartbeat, 0x05, 0, DeliveryPolicy.onChange().withHeartbeat(50));
+		Thread.sleep(220);
+		assertTrue(all.count.get() > 30);
+		assertEquals(1, changes.count.get());
+		assertEquals(1, deadband.count.get());
+		int beats = heartbeat.count.get();
+		assertTrue("beats: "+beats, beats >= 4 && beats <= 6);
+
+		dev.setValue(0x05, 0x20);
+		Thread.sleep(50);
+		assertEquals(2, changes.count.get());
+		assertEquals(1, deadband.count.get());
+		dev.setValue(0x05, 0x30);
+		Thread.sleep(50);
+		assertEquals(3, changes.count.get());
+		assertEquals(2, deadband.count.get());
+		driver.stop(null);
+	}
+
+	@Test
+	public void testStablePidsArePolledLess() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		dev.setValue(0x05, 0x10);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		CountingListener list = new CountingListener();
+		driver.subscribe(list, 0x05, 0, DeliveryPolicy.onChange().withAdaptivePolling(100));
+		driver.subscribe(new CountingListener(), 0x0C, 0);
+		Thread.sleep(500);
+		//Backs off 50, 100, 100...
+		int stable = dev.getRequestCount(0x05);
+		assertTrue("stable: "+stable, stable >= 4 && stable <= 8);
+		assertEquals(1, list.count.get());
+
+		dev.setValue(0x05, 0x20);
+		Thread.sleep(150);
+		assertEquals(2, list.count.get());
+		driver.stop(null);
+	}
+
+	@Test
+	public void testAdaptiveScheduleFavoursMovingPids() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		dev.setValue(0x05, 0x10);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		driver.setAdaptiveSchedule(new AdaptiveSchedule(5, 1000).withRange(0x0D, 20, 20));
+		//0x0C answers with a counter, so it always moves.
+		driver.scheduleRepeating(new CountingListener(), 0x0C);
+		driver.scheduleRepeating(new CountingListener(), 0x05);
+		driver.scheduleRepeating(new CountingListener(), 0x0D);
+		Thread.sleep(1200);
+		int still = dev.getRequestCount(0x05);
+		int moving = dev.getRequestCount(0x0C);
+		int fixed = dev.getRequestCount(0x0D);
+		Thread.sleep(500);
+		still = dev.getRequestCount(0x05) - still;
+		moving = dev.getRequestCount(0x0C) - moving;
+		fixed = dev.getRequestCount(0x0D) - fixed;
+		driver.stop(null);
+		assertTrue("still: "+still, still >= 1 && still <= 5);
+		assertTrue("fixed: "+fixed, fixed >= 8 && fixed <= 12);
+		assertTrue("moving: "+moving, moving > 50);
+	}
+}
@@ -0,0 +1,94 @@
+package com.dgis.JOuST;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dgis.util.Logger;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Tests for OBDLog and AsyncLogSink.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class OBDLogTest {
+
+	@Test
+	public void testLevelGuardsMessages() {
+		OBDLog log = new OBDLog("car");
+		final List<LogRecord> records = new ArrayList<LogRecord>();
+		log.setSink(new LogSink(){
+			@Override
+			public void publish(LogRecord r) {
+				records.add(r);
+			}
+		});
+		final int[] built = new int[1];
+		LogMessage msg = new LogMessage(){
+			@Override
+			public String get() {
+				built[0]++;
+				return "RX: 41 0C 1A F8";
+			}
+		};
+
+		log.log(Logger.LEVEL_SUPERFINE, msg);
+		log.logVerbose("hidden");
+		assertEquals(0, built[0]);
+		assertTrue(records.isEmpty());
+
+		log.setLevel(Logger.LEVEL_SUPERFINE);
+		log.log(Logger.LEVEL_SUPERFINE, msg);
+		assertEquals(1, built[0]);
+		assertEquals(1, records.size());
+		assertEquals("car", records.get(0).getSource());
+		assertEquals(Logger.LEVEL_SUPERFINE, records.get(0).getLevel());
+		assertEquals("RX: 41 0C 1A F8", records.get(0).getMessage());
+	}
+
+	@Test
+	public void testAsyncSink() throws InterruptedException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		AsyncLogSink sink = new AsyncLogSink(new PrintStream(bytes), 1000);
+		OBDLog log = new OBDLog("car");
+		log.setLevel(Logger.LEVEL_VERBOSE);
+		log.setSink(sink);
+		for(int x=0; x<500; x++)
+			log.logVerbose("line "+x);
+		sink.close();
+		String[] lines = bytes.toString().split("\n");
+		assertEquals(0, sink.getDropped());
+		assertEquals(500, sink.getWritten());
+		assertEquals(500, lines.length);
+		assertTrue(lines[0], lines[0].endsWith(" VERBOSE car: line 0"));
+		assertTrue(lines[499], lines[499].endsWith(" VERBOSE car: line 499"));
+
+		//Nothing is written once closed.
+		log.logVerbose("late");
+		assertEquals(1, sink.getDropped());
+	}
+}
@@ -0,0 +1,133 @@
+package com.dgis.JOuST;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class PIDCatalogTest {
+	private static PIDCatalog parse(String text, boolean config) throws Exception {
+		return PIDCatalog.parse(new StringReader(text), "test.cfg", config);
+	}
+
+	@Test
+	public void testBuiltin() {
+		PIDCatalog c = PIDCatalog.builtin();
+		assertEquals(2, c.getSize(0x0C));
+		assertEquals(0x0C, c.getPid("RPM"));
+		assertEquals("rpm", c.getUnit(0x0C));
+		assertEquals(1726.0, c.decode(0x0C, "411C1AF8".getBytes(), 2), 1e-9);
+		//O2 sensor voltage uses only the first of its two bytes.
+		assertEquals(0.9, c.decode(0x14, "4114B480".getBytes(), 2), 1e-9);
+		assertFalse(c.hasFormula(0x01));
+		assertEquals(-1, c.getSize(0xFF));
+	}
+
+	@Test
+	public void testConfigOverlay() throws Exception {
+		PIDCatalog cfg = parse("[units]\nimperial\n[pids]\n{\n# comment\n0x0D, 1, Vehicle Speed Sensor, VSS\n0xFF, 3, Custom; 2, 1, x, 1\n}\n", true);
+		PIDCatalog c = PIDCatalog.builtin().overlay(cfg);
+		assertEquals(0x0D, c.getPid("VSS"));
+		assertEquals(0x0D, c.getPid("Speed"));
+		assertEquals("km/h", c.getUnit(0x0D));
+		assertEquals(3, c.getSize(0xFF));
+		assertEquals(11.0, c.decode(0xFF, 5), 1e-9);
+	}
+
+	@Test
+	public void testErrorsHaveLineNumbers() throws Exception {
+		String[] bad = {
+				"0x0C, 2, RPM\n0x0G, 1, Bad\n",
+				"0x0C, 2, RPM\n0x0D, 1\n",
+				"0x0C, 2, RPM\n0x0C, 2, Again\n",
+				"0x0C, 2, RPM\n0x0D, 1, RPM\n",
+				"0x0C, 2, RPM\n0x0D, 1, Speed; 1, 0\n",
+		};
+		for(String text : bad) {
+			try {
+				parse(text, false);
+				fail("Parsed "+text);
+			} catch (PIDCatalogException e) {
+				assertEquals(2, e.getLine());
+				assertTrue(e.getMessage().startsWith("test.cfg:2: "));
+			}
+		}
+	}
+
+	@Test
+	public void testWatcherReload() throws Exception {
+		PIDCatalog old = PIDCatalog.getDefault();
+		File f = File.createTempFile("joust", ".cfg");
+		f.deleteOnExit();
+		try {
+			write(f, "[pids]\n{\n0xFE, 2, Watched\n}\n");
+			PIDCatalogWatcher w = new PIDCatalogWatcher(f, 1000);
+			assertTrue(w.reload());
+			assertEquals(0xFE, PIDCatalog.getDefault().getPid("Watched"));
+			assertEquals(0x0C, PIDCatalog.getDefault().getPid("RPM"));
+			//A broken file leaves the catalog alone.
+			write(f, "[pids]\n{\n0xFE, two, Watched\n}\n");
+			assertFalse(w.reload());
+			assertEquals(2, PIDCatalog.getDefault().getSize(0xFE));
+		} finally {
+			PIDCatalog.setDefault(old);
+		}
+	}
+
+	@Test
+	public void testWatcherReloadsIntoContext() throws Exception {
+		PIDCatalog old = PIDCatalog.getDefault();
+		File f = File.createTempFile("joust", ".cfg");
+		f.deleteOnExit();
+		try {
+			OBDContext ctx = new OBDContext("a", PIDCatalog.builtin());
+			final List<PIDCatalog> changes = new ArrayList<PIDCatalog>();
+			ctx.addCatalogListener(new PIDCatalogListener(){
+				@Override
+				public void catalogChanged(PIDCatalog was, PIDCatalog now) {
+					changes.add(now);
+				}
+			});
+			write(f, "[pids]\n{\n0xFE, 2, Watched\n}\n");
+			PIDCatalogWatcher w = new PIDCatalogWatcher(f, 1000, ctx);
+			assertTrue(w.reload());
+			assertEquals(0xFE, ctx.getCatalog().getPid("Watched"));
+			assertEquals(Arrays.asList(ctx.getCatalog()), changes);
+			assertSame(old, PIDCatalog.getDefault());
+		} finally {
+			PIDCatalog.setDefault(old);
+		}
+	}
+
+	private static void write(File f, String text) throws Exception {
+		FileOutputStream out = new FileOutputStream(f);
+		try {
+			out.write(text.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+}
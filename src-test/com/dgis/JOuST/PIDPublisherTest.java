@@ -0,0 +1,145 @@
+package com.dgis.JOuST;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.dgis.JOuST.serial.FakeObdSerial;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Some tests for PIDPublisher
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class PIDPublisherTest {
+
+	static class CountingSubscriber implements Flow.Subscriber<PIDReply> {
+		volatile Flow.Subscription subscription;
+		final AtomicInteger count = new AtomicInteger();
+		volatile Throwable error;
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+		@Override
+		public void onNext(PIDReply item) {
+			assertEquals(0x0C, item.getPid());
+			count.incrementAndGet();
+		}
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+		@Override
+		public void onComplete() {
+			fail("PID streams never complete");
+		}
+	}
+
+	@Test
+	public void testPollingFollowsDemand() throws InterruptedException {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		PIDPublisher pub = new PIDPublisher(driver, 0x0C, 0);
+		CountingSubscriber sub = new CountingSubscriber();
+		pub.subscribe(sub);
+		Thread.sleep(100);
+		assertEquals("nothing is polled before demand", 0, dev.getRequestCount(0x0C));
+
+		sub.subscription.request(3);
+		Thread.sleep(200);
+		assertEquals(3, sub.count.get());
+		int paused = dev.getRequestCount(0x0C);
+		Thread.sleep(200);
+		assertEquals("polling stops once demand is met", paused, dev.getRequestCount(0x0C));
+
+		sub.subscription.request(2);
+		Thread.sleep(200);
+		assertEquals(5, sub.count.get());
+
+		sub.subscription.request(Long.MAX_VALUE);
+		Thread.sleep(100);
+		sub.subscription.cancel();
+		int cancelled = sub.count.get();
+		assertTrue(cancelled > 5);
+		Thread.sleep(200);
+		assertTrue(sub.count.get() <= cancelled + 1);
+		driver.stop(null);
+		assertNull(sub.error);
+	}
+
+	@Test
+	public void testRateHoldsAcrossPauses() throws InterruptedException {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		PIDPublisher pub = new PIDPublisher(driver, 0x0C, 20);
+		final Semaphore received = new Semaphore(0);
+		final CountingSubscriber sub = new CountingSubscriber(){
+			@Override
+			public void onNext(PIDReply item) {
+				super.onNext(item);
+				received.release();
+			}
+		};
+		pub.subscribe(sub);
+		//One sample at a time, asked for again from another thread as soon
+		//as the last arrives, so the pid is dropped and scheduled again.
+		Thread consumer = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				try {
+					while(true) {
+						sub.subscription.request(1);
+						received.acquire();
+					}
+				} catch(InterruptedException e) {
+				}
+			}
+		});
+		consumer.start();
+		Thread.sleep(500);
+		consumer.interrupt();
+		consumer.join();
+		sub.subscription.cancel();
+		driver.stop(null);
+		//At 20 per second: one at once, then one every 50ms.
+		int n = sub.count.get();
+		assertTrue("samples: "+n, n >= 5 && n <= 12);
+		assertTrue("requests: "+dev.getRequestCount(0x0C), dev.getRequestCount(0x0C) <= 13);
+		assertNull(sub.error);
+	}
+
+	@Test
+	public void testNonPositiveRequestIsAnError() {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		OBDEventDriver driver = new OBDEventDriver(dev);
+		CountingSubscriber sub = new CountingSubscriber();
+		new PIDPublisher(driver, 0x0C, 0).subscribe(sub);
+		sub.subscription.request(0);
+		assertTrue(sub.error instanceof IllegalArgumentException);
+		sub.subscription.request(1);
+		driver.stop(null);
+		assertEquals(0, sub.count.get());
+	}
+}
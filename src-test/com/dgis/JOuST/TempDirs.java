@@ -0,0 +1,67 @@
+package com.dgis.JOuST;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Makes scratch directories for tests and deletes them, with everything
+ * in them, when deleteAll() is called from an @After method.
+ * File.deleteOnExit() cannot do this, as it skips directories that are
+ * not empty.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class TempDirs {
+	private final String prefix;
+	private final List<File> dirs = new ArrayList<File>();
+
+	public TempDirs(String prefix) {
+		this.prefix = prefix;
+	}
+
+	/**
+	 * @return a new directory under java.io.tmpdir, which does not exist yet.
+	 */
+	public File create() {
+		File d = new File(System.getProperty("java.io.tmpdir"), prefix+System.nanoTime());
+		dirs.add(d);
+		return d;
+	}
+
+	/**
+	 * Deletes every directory made by create().
+	 */
+	public void deleteAll() {
+		for(File d : dirs)
+			delete(d);
+		dirs.clear();
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if(children != null)
+			for(File c : children)
+				delete(c);
+		f.delete();
+	}
+}
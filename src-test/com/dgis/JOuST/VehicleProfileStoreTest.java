@@ -0,0 +1,60 @@
+package com.dgis.JOuST;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class VehicleProfileStoreTest {
+	private final TempDirs temp = new TempDirs("joust-profiles-");
+
+	@After
+	public void deleteTempDirs() {
+		temp.deleteAll();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		VehicleProfileStore store = new VehicleProfileStore(temp.create());
+		assertNull(store.loadLast());
+		VehicleProfile p = new VehicleProfile("1HGCM82633A004352");
+		p.setInterfaceType("ELM 327");
+		p.setProtocol(0x6);
+		p.setLatencyMillis(42);
+		p.setEcuCount(0x0C, 1);
+		p.setEcuCount(0x0D, 2);
+		p.setPidsKnown();
+		store.save(p);
+
+		VehicleProfile q = store.loadLast();
+		assertNotNull(q);
+		assertEquals("1HGCM82633A004352", q.getVin());
+		assertEquals("ELM 327", q.getInterfaceType());
+		assertEquals(6, q.getProtocol());
+		assertEquals(42, q.getLatencyMillis());
+		assertTrue(q.isSupported(0x0C));
+		assertEquals(2, q.getEcuCount(0x0D));
+		assertFalse(q.isSupported(0x05));
+
+		store.markLast(null);
+		assertNull(store.loadLast());
+		assertNotNull(store.load("1HGCM82633A004352"));
+	}
+}
@@ -0,0 +1,142 @@
+package com.dgis.JOuST.derived;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.dgis.JOuST.OBDEventDriver;
+import com.dgis.JOuST.serial.FakeObdSerial;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Some tests for DerivedMetricEngine and the windowed aggregates.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class DerivedMetricEngineTest {
+
+	@Test
+	public void testAggregatesMatchBruteForce() {
+		final int N = 7;
+		MovingAverage avg = new MovingAverage(N);
+		WindowExtremum min = WindowExtremum.min(N);
+		WindowExtremum max = WindowExtremum.max(N);
+		double[] all = new double[500];
+		Random r = new Random(42);
+		for(int i=0; i<all.length; i++) {
+			all[i] = r.nextInt(100) - 50;
+			avg.add(all[i]);
+			min.add(all[i]);
+			max.add(all[i]);
+			double sum = 0, lo = Double.MAX_VALUE, hi = -Double.MAX_VALUE;
+			int from = Math.max(0, i - N + 1);
+			for(int j=from; j<=i; j++) {
+				sum += all[j];
+				lo = Math.min(lo, all[j]);
+				hi = Math.max(hi, all[j]);
+			}
+			assertEquals(sum / (i - from + 1), avg.value(), 1e-9);
+			assertEquals(lo, min.value(), 0);
+			assertEquals(hi, max.value(), 0);
+		}
+	}
+
+	@Test
+	public void testExponentialAverage() {
+		ExponentialAverage e = new ExponentialAverage(0.5);
+		assertTrue(Double.isNaN(e.value()));
+		e.add(10);
+		assertEquals(10, e.value(), 0);
+		e.add(20);
+		assertEquals(15, e.value(), 0);
+	}
+
+	@Test
+	public void testInputsAreInterpolated() throws Exception {
+		DerivedMetricEngine engine = new DerivedMetricEngine(null);
+		DerivedMetricEngine.SourceNode a = engine.new SourceNode(0x01);
+		DerivedMetricEngine.SourceNode b = engine.new SourceNode(0x02);
+		DerivedSignal sum = new DerivedSignal("sum", 1, 2){
+			@Override
+			public double compute(double[] in) {
+				return in[0] + in[1];
+			}
+		};
+		DerivedMetricEngine.FormulaNode f = engine.new FormulaNode(sum, new DerivedMetricEngine.Node[]{a, b});
+		f.active = true;
+		final double[] got = {-1, -1};
+		f.listeners.add(new DerivedResultListener(){
+			@Override
+			public void valueReceived(String name, double value, long timeNanos) {
+				got[0] = value;
+				got[1] = timeNanos;
+			}
+			@Override
+			public void error(String msg, String name) {
+				fail();
+			}
+		});
+		a.publish(0, 0);
+		a.publish(100, 100);
+		assertEquals(-1, got[1], 0); //b not seen yet
+		b.publish(1, 50);
+		//a interpolated to t=50
+		assertEquals(51, got[0], 1e-9);
+		assertEquals(50, got[1], 0);
+	}
+
+	@Test
+	public void testSchedulingWhileSamplesFlow() throws Exception {
+		OBDEventDriver driver = new OBDEventDriver(new FakeObdSerial(0));
+		final DerivedMetricEngine engine = new DerivedMetricEngine(driver);
+		final AtomicInteger values = new AtomicInteger();
+		final DerivedResultListener list = new DerivedResultListener(){
+			@Override
+			public void valueReceived(String name, double value, long timeNanos) {
+				values.incrementAndGet();
+			}
+			@Override
+			public void error(String msg, String name) {
+			}
+		};
+		engine.scheduleRepeating(list, 0x0C);
+		//Samples now come in on the driver's thread, taking the engine's
+		//lock, while this thread subscribes through the engine.
+		Thread scheduler = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				for(int pid=0; pid<0x100; pid++)
+					engine.scheduleRepeating(list, pid);
+			}
+		});
+		scheduler.setDaemon(true);
+		scheduler.start();
+		scheduler.join(5000);
+		assertFalse("deadlocked", scheduler.isAlive());
+		int before = values.get();
+		Thread.sleep(100);
+		assertTrue(values.get() > before);
+		driver.stop(null);
+	}
+}
@@ -0,0 +1,123 @@
+package com.dgis.JOuST.derived;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Some tests for TripEngine
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class TripEngineTest {
+	private static final long SECOND = 1000000000L;
+
+	static class Recorder implements TripListener {
+		final List<Long> started = new ArrayList<Long>();
+		final List<TripSummary> ended = new ArrayList<TripSummary>();
+		@Override
+		public void tripStarted(long startNanos) {
+			started.add(startNanos);
+		}
+		@Override
+		public void tripEnded(TripSummary summary) {
+			ended.add(summary);
+		}
+	}
+
+	/**
+	 * Feeds one sample of each input per second from second from to to.
+	 */
+	private static void drive(TripEngine trip, long base, int from, int to, double rpm, double speed, double maf) {
+		for(int s=from; s<to; s++) {
+			long t = base + s * SECOND;
+			trip.update(StandardSignals.PID_RPM, rpm, t);
+			trip.update(StandardSignals.PID_SPEED, speed, t + SECOND / 3);
+			trip.update(StandardSignals.PID_MAF, maf, t + 2 * SECOND / 3);
+		}
+	}
+
+	@Test
+	public void testTripTotals() {
+		TripEngine trip = new TripEngine(30 * 1000, 5 * 1000);
+		Recorder rec = new Recorder();
+		trip.addListener(rec);
+		long base = 1000 * SECOND;
+		drive(trip, base, 0, 10, 0, 0, 0);
+		assertTrue(rec.started.isEmpty());
+		assertNull(trip.getCurrent());
+
+		//A minute of idling, then 100 seconds at 36 km/h: a kilometer.
+		drive(trip, base, 10, 70, 800, 0, 10);
+		assertEquals(Long.valueOf(base + 10 * SECOND), rec.started.get(0));
+		drive(trip, base, 70, 170, 2000, 36, 10);
+		TripSummary now = trip.getCurrent();
+		assertFalse(now.isFinished());
+		assertTrue(now.getDistanceKm() > 0.9);
+
+		//Engine off: the trip ends once the hold has passed.
+		drive(trip, base, 170, 190, 0, 0, 0);
+		assertTrue(rec.ended.isEmpty());
+		drive(trip, base, 190, 210, 0, 0, 0);
+		assertEquals(1, rec.ended.size());
+		TripSummary s = rec.ended.get(0);
+		assertTrue(s.isFinished());
+		assertEquals(base + 10 * SECOND, s.getStartNanos());
+		//Last active at the first engine-off sample's predecessor.
+		assertEquals(160, s.getDurationMillis() / 1000, 1);
+		//The step from 0 to 36 km/h is smoothed over one sample.
+		assertEquals(1.0, s.getDistanceKm(), 0.01);
+		assertEquals(60, s.getIdleMillis() / 1000, 1);
+		assertEquals(36, s.getMaxSpeed(), 0);
+		double gallons = StandardSignals.gallonsPerHour(10) * 160 / 3600;
+		assertEquals(gallons, s.getFuelGallons(), gallons * 0.02);
+		assertEquals(s.getDistanceMiles() / s.getFuelGallons(), s.getMilesPerGallon(), 1e-9);
+		assertNull(trip.getCurrent());
+	}
+
+	@Test
+	public void testSilenceEndsTripAndGapsAreSkipped() {
+		TripEngine trip = new TripEngine(30 * 1000, 5 * 1000);
+		Recorder rec = new Recorder();
+		trip.addListener(rec);
+		long base = 5000 * SECOND;
+		drive(trip, base, 0, 10, 2000, 36, 10);
+		//Samples drop out for 20 seconds: not integrated, not an end either.
+		drive(trip, base, 30, 40, 2000, 36, 10);
+		assertTrue(rec.ended.isEmpty());
+		trip.tick(base + 60 * SECOND);
+		assertTrue(rec.ended.isEmpty());
+		trip.tick(base + 70 * SECOND);
+		assertEquals(1, rec.ended.size());
+		TripSummary s = rec.ended.get(0);
+		//9 + 9 integrated seconds at 36 km/h.
+		assertEquals(0.18, s.getDistanceKm(), 0.001);
+		assertEquals(0, s.getIdleMillis());
+
+		//The next trip starts from scratch.
+		drive(trip, base, 100, 102, 900, 0, 5);
+		assertEquals(2, rec.started.size());
+		assertEquals(0, trip.getCurrent().getDistanceKm(), 0);
+	}
+}
@@ -0,0 +1,105 @@
+package com.dgis.JOuST.serial;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dgis.JOuST.ConnectionState;
+import com.dgis.JOuST.ConnectionStateListener;
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.OBDEventDriver;
+import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.SampleTime;
+import com.dgis.JOuST.TimeoutKind;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ConnectionSupervisorTest {
+	@Test
+	public void testReconnectsAndResumes() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(2);
+		ConnectionSupervisor sup = new ConnectionSupervisor(dev);
+		sup.setPolicy(3, 10, 40);
+		final List<ConnectionState> states = new ArrayList<ConnectionState>();
+		sup.addStateListener(new ConnectionStateListener() {
+			@Override
+			public void stateChanged(ConnectionState old, ConnectionState now, String reason) {
+				synchronized(states) {
+					states.add(now);
+				}
+			}
+		});
+		OBDEventDriver driver = new OBDEventDriver(sup);
+		driver.scheduleRepeating(new PIDResultListener() {
+			@Override
+			public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {}
+			@Override
+			public void error(OBDError error, int pid) {}
+		}, 0x0C);
+		Thread.sleep(50);
+		dev.setUnplugged(true);
+		Thread.sleep(200);
+		int during = dev.getRequestCount(0x0C);
+		//Backing off, not hammering the port.
+		assertTrue("handshakes: "+dev.getHandshakeCount(), dev.getHandshakeCount() >= 2 && dev.getHandshakeCount() <= 8);
+		assertEquals(ConnectionState.RECONNECTING, sup.getState());
+		dev.setUnplugged(false);
+		Thread.sleep(150);
+		assertEquals(ConnectionState.CONNECTED, sup.getState());
+		assertTrue(dev.getRequestCount(0x0C) > during);
+		driver.stop(null);
+		synchronized(states) {
+			assertEquals(ConnectionState.LOST, states.get(0));
+			assertEquals(ConnectionState.RECONNECTING, states.get(1));
+			assertEquals(ConnectionState.CONNECTED, states.get(2));
+		}
+	}
+
+	@Test
+	public void testOnlyTheSupervisedRequestsCount() throws Exception {
+		FakeObdSerial dev = new FakeObdSerial(0);
+		ConnectionSupervisor sup = new ConnectionSupervisor(dev);
+		sup.setPolicy(2, 10, 40);
+		PIDResultListener ignore = new PIDResultListener() {
+			@Override
+			public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {}
+			@Override
+			public void error(OBDError error, int pid) {}
+		};
+		//Timeouts counted for someone else sharing the context are not ours.
+		for(int x=0; x<5; x++) {
+			dev.getContext().getMetrics().timedOut(TimeoutKind.FIRST_BYTE);
+			sup.requestPID(ignore, 0x0C, 1);
+		}
+		//Nor is a pid the vehicle does not support.
+		dev.setNoData(0x0D, true);
+		for(int x=0; x<5; x++)
+			sup.requestPID(ignore, 0x0D, 1);
+		assertEquals(0, dev.getHandshakeCount());
+		//A request that times out is, whether or not anything counted it.
+		dev.setError(0x0E, OBDError.NO_ANSWER);
+		sup.requestPID(ignore, 0x0E, 1);
+		assertEquals(0, dev.getHandshakeCount());
+		sup.requestPID(ignore, 0x0E, 1);
+		assertEquals(1, dev.getHandshakeCount());
+		assertEquals(ConnectionState.CONNECTED, sup.getState());
+	}
+}
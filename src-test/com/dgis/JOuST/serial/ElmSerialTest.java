@@ -5,10 +5,27 @@ import static org.junit.Assert.*;
 import gnu.io.PortInUseException;
 import gnu.io.UnsupportedCommOperationException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
+import com.dgis.JOuST.DTCMode;
+import com.dgis.JOuST.DTCResultListener;
+import com.dgis.JOuST.DiagnosticTroubleCode;
+import com.dgis.JOuST.OBDContext;
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.RequestBudget;
+import com.dgis.JOuST.SampleTime;
+import com.dgis.JOuST.TimeoutKind;
+import com.dgis.JOuST.TimingProfile;
+
 /*
  * Copyright (C) 2009 Giacomo Ferrari
  * This file is part of JOuST.
@@ -44,66 +61,31 @@ public class ElmSerialTest {
 	@Test
 	public void testProcess_response() throws IOException, PortInUseException, UnsupportedCommOperationException {
 		ElmSerial test = new ElmSerial(null, null);
+		ElmResponse reply = new ElmResponse();
 		byte[] buf = new byte[200];
 		strcpy(buf, "ELM320");
-		ElmResponseVisitor visit = new AElmResponseVisitor(){
-			@Override
-			Object defaultCase() {
-				fail();
-				return null;
-			}
-			@Override
-			public Object interfaceFound(ELMInterfaceType type) {
-				assertTrue((type == ELMInterfaceType.INTERFACE_ELM320));
-				return null;
-			}
-		};
-		
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.INTERFACE_ID, test.process_response(reply, null, buf));
+		assertTrue((reply.interfaceType == ELMInterfaceType.INTERFACE_ELM320));
 
-		
-		visit = new AElmResponseVisitor(){
-			@Override
-			Object defaultCase() {
-				fail();
-				return null;
-			}
-			@Override
-			public Object interfaceFound(ELMInterfaceType type) {
-				assertTrue((type == ELMInterfaceType.INTERFACE_ELM323));
-				return null;
-			}
-		};		
 		strcpy(buf, "SEARCHING...ELM323");
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.INTERFACE_ID, test.process_response(reply, null, buf));
+		assertTrue((reply.interfaceType == ELMInterfaceType.INTERFACE_ELM323));
 
-		
-		visit = new AElmResponseVisitor(){
-			@Override
-			Object defaultCase() {
-				fail();
-				return null;
-			}
-			@Override
-			public Object hexData() {
-				return null;
-			}
-		};	
-		
 		strcpy(buf, "9f");
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.HEX_DATA, test.process_response(reply, null, buf));
 
 		strcpy(buf, "BUS INIT: ...OK\n\r9F\t\t\r\n");
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.HEX_DATA, test.process_response(reply, null, buf));
+		assertEquals("9F", new String(reply.text, reply.start, reply.end - reply.start));
 
 		strcpy(buf, "97  ");
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.HEX_DATA, test.process_response(reply, null, buf));
 
 		strcpy(buf, " AF");
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.HEX_DATA, test.process_response(reply, null, buf));
 
 		strcpy(buf, "FA");
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.HEX_DATA, test.process_response(reply, null, buf));
 		
 		
 		buf = new byte[] { 52, 49, 32, 48, 48, 32, 57, 56, 32, 49, 56, 32, 56,
@@ -114,8 +96,7 @@ public class ElmSerialTest {
 				0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
 				0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, };
 		byte[] req = "0100".getBytes();
-		System.err.println("\n");
-		test.process_response(visit, req, buf);
+		assertEquals(ELMResponseCode.HEX_DATA, test.process_response(reply, req, buf));
 		
 		buf = new byte[] { 52, 120, 32, 48, 48, 32, 57, 56, 32, 49, 56, 32, 56,
 				48, 32, 48, 49, 32, 13, 52, 49, 32, 48, 48, 32, 66, 69, 32, 51,
@@ -124,47 +105,17 @@ public class ElmSerialTest {
 				0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
 				0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
 				0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, };
-		System.err.println("\n");
-		visit = new AElmResponseVisitor(){
-			@Override
-			Object defaultCase() {
-				fail();
-				return null;
-			}
-			@Override
-			public Object rubbish() {
-				return null;
-			}
-		};
-		test.process_response(visit, req, buf);
+		assertEquals(ELMResponseCode.RUBBISH, test.process_response(reply, req, buf));
 
-		visit = new AElmResponseVisitor(){
-			@Override
-			Object defaultCase() {
-				fail();
-				return null;
-			}
-			@Override
-			public Object dataError2() {
-				return null;
-			}
-		};
 		strcpy(buf, "<DATA ERROR>");
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.DATA_ERROR2, test.process_response(reply, null, buf));
 		
-		visit = new AElmResponseVisitor(){
-			@Override
-			Object defaultCase() {
-				fail();
-				return null;
-			}
-			@Override
-			public Object unableToConnect() {
-				return null;
-			}
-		};
 		strcpy(buf, ">\n\rUNABLETOCONNECT\n");
-		test.process_response(visit, null, buf);
+		assertEquals(ELMResponseCode.UNABLE_TO_CONNECT, test.process_response(reply, null, buf));
+		assertEquals(OBDError.UNABLE_TO_CONNECT, reply.code.getError());
+
+		strcpy(buf, "NO DATA\r\r>");
+		assertEquals(ELMResponseCode.ERR_NO_DATA, test.process_response(reply, null, buf));
 	}
 
 	@Test
@@ -192,4 +143,127 @@ public class ElmSerialTest {
 		assertTrue(r.equals("411125"));
 	}
 
+	@Test
+	public void testCommandTable(){
+		assertEquals("010C\r", new String(CommandTable.command(0x01, 0x0C)));
+		assertEquals("020C00\r", new String(CommandTable.command(0x02, 0x0C)));
+		assertEquals("4902", new String(CommandTable.responsePrefix(0x09, 0x02)));
+		assertEquals("41FF", new String(CommandTable.responsePrefix(0x01, 0xFF)));
+		assertFalse(CommandTable.contains(0x03, 0));
+		assertFalse(CommandTable.contains(0x01, 256));
+
+		//The last line need not end with a delimiter.
+		byte[] buf = new byte[255];
+		StringBuffer response = new StringBuffer("7E8 \r41 0D 3C");
+		assertTrue(ElmSerial.find_valid_response(buf, response, CommandTable.responsePrefix(0x01, 0x0D), null));
+		assertEquals("410D3C", ElmSerial.bytesToString(buf));
+		assertFalse(ElmSerial.find_valid_response(buf, response, CommandTable.responsePrefix(0x01, 0x0C), null));
+	}
+
+	@Test
+	public void testRequestBudget() throws IOException {
+		OBDContext ctx = new OBDContext();
+		ctx.setTiming(TimingProfile.DEFAULT.withBudget(0, new RequestBudget(200, 100, 300)));
+		final OBDError[] error = new OBDError[1];
+		PIDResultListener list = new PIDResultListener(){
+			public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+				fail();
+			}
+			public void error(OBDError e, int pid) {
+				error[0] = e;
+			}
+		};
+
+		//Silence ends the request at the first-byte limit.
+		ElmSerial test = new ElmSerial(new TrickleInputStream(-1), new ByteArrayOutputStream(), ctx);
+		long start = System.nanoTime();
+		test.requestPID(list, 0x0C, 2);
+		long took = (System.nanoTime() - start) / 1000000L;
+		//Only the lower bound is exact; the upper one allows for a slow machine.
+		assertTrue("took "+took, took >= 200 && took < 200*3);
+		assertEquals(OBDError.NO_ANSWER, error[0]);
+		assertEquals(1, ctx.getMetrics().getTimeouts(TimeoutKind.FIRST_BYTE));
+		assertEquals(0, ctx.getMetrics().getTimeouts(TimeoutKind.INTER_BYTE));
+		assertEquals(0, ctx.getMetrics().getTimeouts(TimeoutKind.TOTAL));
+
+		//A trickle of bytes cannot stretch it past the total.
+		test = new ElmSerial(new TrickleInputStream(20), new ByteArrayOutputStream(), ctx);
+		start = System.nanoTime();
+		test.requestPID(list, 0x0C, 2);
+		took = (System.nanoTime() - start) / 1000000L;
+		assertTrue("took "+took, took >= 300 && took < 300*3);
+		assertEquals(OBDError.ANSWER_TOO_SLOW, error[0]);
+		assertEquals(1, ctx.getMetrics().getTimeouts(TimeoutKind.FIRST_BYTE));
+		assertEquals(0, ctx.getMetrics().getTimeouts(TimeoutKind.INTER_BYTE));
+		assertEquals(1, ctx.getMetrics().getTimeouts(TimeoutKind.TOTAL));
+	}
+
+	@Test
+	public void testRequestErrorsAreOBDErrors() throws IOException {
+		ElmSerial test = new ElmSerial(new ByteArrayInputStream("UNABLE TO CONNECT\r\r>".getBytes()), new ByteArrayOutputStream());
+		final OBDError[] error = new OBDError[1];
+		test.requestDTCs(new DTCResultListener(){
+			public void dtcsReceived(DTCMode mode, List<DiagnosticTroubleCode> codes) {
+				fail();
+			}
+			public void error(OBDError e, DTCMode mode) {
+				error[0] = e;
+			}
+		}, DTCMode.STORED);
+		assertEquals(OBDError.UNABLE_TO_CONNECT, error[0]);
+	}
+
+	@Test
+	public void testCommandIsOneWrite() throws IOException {
+		final List<String> writes = new ArrayList<String>();
+		OutputStream out = new OutputStream(){
+			@Override
+			public void write(int b) {
+				writes.add(String.valueOf((char)b));
+			}
+			@Override
+			public void write(byte[] b, int off, int len) {
+				writes.add(new String(b, off, len));
+			}
+		};
+		ElmSerial test = new ElmSerial(new ByteArrayInputStream("41 0C 1A F8 \r\r>".getBytes()), out);
+		final String[] got = new String[1];
+		test.requestPID(new PIDResultListener(){
+			public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+				got[0] = ElmSerial.bytesToString(data);
+			}
+			public void error(OBDError e, int pid) {
+				fail(e.toString());
+			}
+		}, 0x0C, 2);
+		assertEquals("410C1AF8", got[0]);
+		assertEquals(1, writes.size());
+		assertEquals("010C\r", writes.get(0));
+	}
+}
+
+/**
+ * Answers with one byte every so often, and never sends the prompt.
+ */
+class TrickleInputStream extends InputStream {
+	private final long periodNanos;
+	private long last = System.nanoTime();
+
+	/**
+	 * @param periodMillis time between bytes, or -1 to never answer.
+	 */
+	TrickleInputStream(int periodMillis) {
+		periodNanos = periodMillis * 1000000L;
+	}
+
+	@Override
+	public int available() {
+		return periodNanos >= 0 && System.nanoTime() - last >= periodNanos ? 1 : 0;
+	}
+
+	@Override
+	public int read() {
+		last = System.nanoTime();
+		return 'A';
+	}
 }
@@ -0,0 +1,231 @@
+package com.dgis.JOuST.serial;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dgis.JOuST.DTCMode;
+import com.dgis.JOuST.DTCResultListener;
+import com.dgis.JOuST.DiagnosticTroubleCode;
+import com.dgis.JOuST.OBDContext;
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.OBDRequest;
+import com.dgis.JOuST.OBDResponseListener;
+import com.dgis.JOuST.PIDNotFoundException;
+import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.SampleTime;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An ObdSerial that answers every request itself after a short delay,
+ * for testing code that sits on top of the interface. Every pid has one
+ * data byte, whose value is the number of times the pid has been requested.
+ * Trouble codes are whatever was last passed to setDTCs(). Other requests
+ * are answered with the response text given to setResponse().
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class FakeObdSerial implements ObdSerial {
+	private final int[] requests = new int[256];
+	private final List<Integer> requestLog = new ArrayList<Integer>();
+	//Error each pid answers with, or null to answer with data.
+	private final OBDError[] errors = new OBDError[256];
+	//Data byte each pid answers with, or -1 to count requests instead.
+	private final int[] values = new int[256];
+	private final int[] dtcRequests = new int[DTCMode.values().length];
+	private final Map<DTCMode, List<DiagnosticTroubleCode>> dtcs = new EnumMap<DTCMode, List<DiagnosticTroubleCode>>(DTCMode.class);
+	private final long delayMillis;
+	private final SampleTime time = new SampleTime();
+	private final Map<String, String> responses = new HashMap<String, String>();
+	private boolean open = true;
+	//While set, requests throw and handshakes find nothing.
+	private volatile boolean unplugged = false;
+	private int handshakes = 0;
+	private final OBDContext context = new OBDContext();
+
+	public FakeObdSerial(long delayMillis) {
+		this.delayMillis = delayMillis;
+		Arrays.fill(values, -1);
+	}
+
+	/**
+	 * @return how many times pid has been requested.
+	 */
+	public synchronized int getRequestCount(int pid) {
+		return requests[pid];
+	}
+
+	/**
+	 * @return every pid answered so far, in the order they were answered.
+	 */
+	public synchronized List<Integer> getRequestLog() {
+		return new ArrayList<Integer>(requestLog);
+	}
+
+	/**
+	 * Simulates losing the link: requests throw IOExceptions and
+	 * handshakes fail until plugged back in.
+	 */
+	public void setUnplugged(boolean unplugged) {
+		this.unplugged = unplugged;
+	}
+
+	/**
+	 * Makes pid answer NO DATA, or answer again.
+	 */
+	public synchronized void setNoData(int pid, boolean noData) {
+		errors[pid] = noData ? OBDError.NO_DATA : null;
+	}
+
+	/**
+	 * Makes pid fail with error, or answer again if null.
+	 */
+	public synchronized void setError(int pid, OBDError error) {
+		errors[pid] = error;
+	}
+
+	/**
+	 * Makes pid answer with this data byte, or -1 to answer with the
+	 * number of times it has been requested.
+	 */
+	public synchronized void setValue(int pid, int value) {
+		values[pid] = value;
+	}
+
+	public synchronized int getHandshakeCount() {
+		return handshakes;
+	}
+
+	@Override
+	public void requestPID(PIDResultListener list, int pid, int numBytes) throws IOException {
+		if(!open) throw new IOException("requestPID() called after stop().");
+		if(unplugged) throw new IOException("Unplugged.");
+		time.requestSent(System.nanoTime());
+		try {
+			Thread.sleep(delayMillis);
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted.");
+		}
+		int n;
+		OBDError fail;
+		synchronized(this) {
+			n = ++requests[pid];
+			requestLog.add(pid);
+			fail = errors[pid];
+			if(values[pid] >= 0) n = values[pid];
+		}
+		time.promptReceived(System.nanoTime());
+		if(fail != null) {
+			list.error(fail, pid);
+			return;
+		}
+		byte[] buf = String.format("41%02X%02X", pid, n & 0xFF).getBytes();
+		list.dataReceived(pid, 1, buf, time);
+	}
+
+	public synchronized int getRequestCount(DTCMode mode) {
+		return dtcRequests[mode.ordinal()];
+	}
+
+	public synchronized void setDTCs(DTCMode mode, List<DiagnosticTroubleCode> codes) {
+		dtcs.put(mode, codes);
+	}
+
+	/**
+	 * @param command e.g. "0902"
+	 * @param response what an ELM interface would send back, e.g. "49 02 01 ...".
+	 */
+	public synchronized void setResponse(String command, String response) {
+		responses.put(command, response);
+	}
+
+	@Override
+	public <T> void request(OBDRequest<T> req, OBDResponseListener<T> list) throws IOException {
+		if(!open) throw new IOException("request() called after stop().");
+		time.requestSent(System.nanoTime());
+		String response;
+		synchronized(this) {
+			response = responses.get(req.getCommand());
+		}
+		time.promptReceived(System.nanoTime());
+		T value = response == null ? req.noData() : ElmSerial.parseResponse(req, response, context.getCatalog());
+		if(value == null) list.error(OBDError.NO_DATA, req);
+		else list.responseReceived(req, value, time);
+	}
+
+	@Override
+	public void requestDTCs(DTCResultListener list, DTCMode mode) throws IOException {
+		if(!open) throw new IOException("requestDTCs() called after stop().");
+		try {
+			Thread.sleep(delayMillis);
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted.");
+		}
+		List<DiagnosticTroubleCode> codes;
+		synchronized(this) {
+			dtcRequests[mode.ordinal()]++;
+			codes = dtcs.get(mode);
+		}
+		list.dtcsReceived(mode, codes == null ? new ArrayList<DiagnosticTroubleCode>() : codes);
+	}
+
+	@Override
+	public OBDContext getContext() {
+		return context;
+	}
+
+	@Override
+	public void requestPID(PIDResultListener list, int pid) throws IOException, PIDNotFoundException {
+		requestPID(list, pid, 1);
+	}
+
+	@Override
+	public void requestPID(PIDResultListener list, String name) throws IOException, PIDNotFoundException {
+		throw new PIDNotFoundException(-1);
+	}
+
+	@Override
+	public ResetResult resetAndHandshake() throws IOException {
+		synchronized(this) {
+			handshakes++;
+		}
+		return new ResetResult("Fake", !unplugged);
+	}
+
+	@Override
+	public void stop() throws IOException {
+		open = false;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public String getInterfaceIdentifier() {
+		return "Fake";
+	}
+}
@@ -0,0 +1,124 @@
+package com.dgis.JOuST.serial;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dgis.JOuST.DTCMode;
+import com.dgis.JOuST.DiagnosticTroubleCode;
+import com.dgis.JOuST.MonitorTestResult;
+import com.dgis.JOuST.OBDRequests;
+import com.dgis.JOuST.PIDCatalog;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Tests for the standard requests, parsed from ELM responses.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class OBDRequestsTest {
+
+	@Test
+	public void testCodeNames() {
+		assertEquals("P0133", new DiagnosticTroubleCode(0x0133).toString());
+		assertEquals("C0300", new DiagnosticTroubleCode(0x4300).toString());
+		assertEquals("B1234", new DiagnosticTroubleCode(0x9234).toString());
+		assertEquals("U3FFF", new DiagnosticTroubleCode(0xFFFF).toString());
+	}
+
+	@Test
+	public void testDTCLegacyFrames() {
+		List<DiagnosticTroubleCode> codes = ElmSerial.parseResponse(OBDRequests.dtcs(DTCMode.STORED),
+				"43 01 33 00 00 00 00 \r43 02 34 01 33 C1 23 \r\r>");
+		assertEquals("[P0133, P0234, U0123]", codes.toString());
+	}
+
+	@Test
+	public void testDTCCanSingleFrame() {
+		List<DiagnosticTroubleCode> codes = ElmSerial.parseResponse(OBDRequests.dtcs(DTCMode.PENDING),
+				"SEARCHING...\r47 02 01 33 02 34 \r\r>");
+		assertEquals("[P0133, P0234]", codes.toString());
+		codes = ElmSerial.parseResponse(OBDRequests.dtcs(DTCMode.PENDING), "47 00 \r\r>");
+		assertEquals(0, codes.size());
+	}
+
+	@Test
+	public void testDTCCanMultiFrame() {
+		List<DiagnosticTroubleCode> codes = ElmSerial.parseResponse(OBDRequests.dtcs(DTCMode.PERMANENT),
+				"00A\r0: 4A 04 01 33 02 34\r1: 03 00 04 00 00 00 00\r\r>");
+		assertEquals("[P0133, P0234, P0300, P0400]", codes.toString());
+	}
+
+	@Test
+	public void testWrongService() {
+		assertNull(ElmSerial.parseResponse(OBDRequests.dtcs(DTCMode.STORED), "47 01 01 33 \r\r>"));
+	}
+
+	@Test
+	public void testVinCan() {
+		String vin = ElmSerial.parseResponse(OBDRequests.vin(),
+				"014\r0: 49 02 01 31 44 34\r1: 47 50 30 30 52 35 35\r2: 42 31 32 33 34 35 36\r\r>");
+		assertEquals("1D4GP00R55B123456", vin);
+	}
+
+	@Test
+	public void testVinLegacy() {
+		//Out of order on purpose; frames are put back in sequence.
+		String vin = ElmSerial.parseResponse(OBDRequests.vin(),
+				"49 02 01 00 00 00 31\r49 02 03 30 30 52 35\r49 02 02 44 34 47 50\r"
+				+"49 02 04 35 42 31 32\r49 02 05 33 34 35 36\r\r>");
+		assertEquals("1D4GP00R55B123456", vin);
+	}
+
+	@Test
+	public void testFreezeFrame() {
+		Double rpm = ElmSerial.parseResponse(OBDRequests.freezeFrame(0x0C, 0, 2), "42 0C 00 1A F8 \r\r>");
+		assertEquals(1726, rpm, 0);
+		assertNull(ElmSerial.parseResponse(OBDRequests.freezeFrame(0x0C, 1, 2), "42 0C 00 1A F8 \r\r>"));
+	}
+
+	@Test
+	public void testValuesUseTheInterfaceCatalog() throws Exception {
+		PIDCatalog raw = PIDCatalog.builtin().overlay(
+				PIDCatalog.parse(new StringReader("0x0C, 2, Engine RPM; 1, 0, counts\n"), "test.cfg", false));
+		Double rpm = ElmSerial.parseResponse(OBDRequests.pid(0x0C, 2), "41 0C 1A F8 \r\r>", raw);
+		assertEquals(0x1AF8, rpm, 0);
+		rpm = ElmSerial.parseResponse(OBDRequests.freezeFrame(0x0C, 0, 2), "42 0C 00 1A F8 \r\r>", raw);
+		assertEquals(0x1AF8, rpm, 0);
+	}
+
+	@Test
+	public void testMonitorResults() {
+		List<MonitorTestResult> r = ElmSerial.parseResponse(OBDRequests.testResults(0x01),
+				"013\r0: 46 01 01 0A 0B B0\r1: 0B 00 0B B8 01 02 0A 00\r2: 10 00 11 00 20 00 00\r\r>");
+		assertEquals(2, r.size());
+		assertEquals(0x01, r.get(0).getTestId());
+		assertEquals(0x0BB0, r.get(0).getValue());
+		assertTrue(r.get(0).passed());
+		assertEquals(0x01, r.get(1).getMonitorId());
+		assertEquals(0x02, r.get(1).getTestId());
+		assertEquals(0x10, r.get(1).getValue());
+		assertFalse(r.get(1).passed());
+	}
+}
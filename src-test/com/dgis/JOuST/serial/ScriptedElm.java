@@ -0,0 +1,101 @@
+package com.dgis.JOuST.serial;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An ELM327 with echo off that answers each command with the text it has
+ * been given for it. AT commands it has no answer for get "OK", anything
+ * else "NO DATA". Keeps every command it was sent, for checking what a
+ * handshake did.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+class ScriptedElm {
+	private final Map<String, String> answers = new HashMap<String, String>();
+	private final List<String> commands = new ArrayList<String>();
+	private byte[] pending;
+	private int pos;
+
+	/**
+	 * @param cmd the command, in lower case and without the carriage return.
+	 * @param response what the ELM prints before its prompt.
+	 */
+	synchronized void answer(String cmd, String response) {
+		answers.put(cmd, response);
+	}
+
+	synchronized List<String> getCommands() {
+		return new ArrayList<String>(commands);
+	}
+
+	private synchronized void received(String cmd) {
+		commands.add(cmd);
+		String r = answers.get(cmd);
+		if(r == null) r = cmd.startsWith("at") ? "OK" : "NO DATA";
+		pending = (r+"\r\r>").getBytes();
+		pos = 0;
+	}
+
+	private synchronized int available() {
+		return pending == null ? 0 : pending.length - pos;
+	}
+
+	private synchronized int read(byte[] b, int off, int len) {
+		int n = Math.min(len, available());
+		if(n == 0) return 0;
+		System.arraycopy(pending, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	final OutputStream out = new OutputStream(){
+		@Override
+		public void write(int b) {
+			throw new UnsupportedOperationException("Commands come in one write.");
+		}
+		@Override
+		public void write(byte[] b, int off, int len) {
+			received(new String(b, off, len).trim().toLowerCase());
+		}
+	};
+
+	final InputStream in = new InputStream(){
+		@Override
+		public int available() {
+			return ScriptedElm.this.available();
+		}
+		@Override
+		public int read() {
+			byte[] b = new byte[1];
+			return ScriptedElm.this.read(b, 0, 1) == 0 ? -1 : b[0];
+		}
+		@Override
+		public int read(byte[] b, int off, int len) {
+			return ScriptedElm.this.read(b, off, len);
+		}
+	};
+}
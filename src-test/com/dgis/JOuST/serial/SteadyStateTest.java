@@ -0,0 +1,150 @@
+package com.dgis.JOuST.serial;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.OBDEventDriver;
+import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.SampleTime;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks that polling repeating pids through an OBDEventDriver and an
+ * ElmSerial allocates nothing once warmed up.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class SteadyStateTest {
+	private static final int WARMUP = 20000;
+	private static final int MEASURED = 50000;
+
+	@Test
+	public void testPollingAllocatesNothing() throws Exception {
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) mx;
+		Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+		bean.setThreadAllocatedMemoryEnabled(true);
+
+		LoopbackElm elm = new LoopbackElm();
+		elm.answer(0x0C, "1A F8");
+		elm.answer(0x0D, "3C");
+		OBDEventDriver driver = new OBDEventDriver(new ElmSerial(elm.in, elm.out));
+		final AtomicLong samples = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		final AtomicLong thread = new AtomicLong(-1);
+		PIDResultListener list = new PIDResultListener(){
+			@Override
+			public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+				if(thread.get() < 0) thread.set(Thread.currentThread().getId());
+				samples.incrementAndGet();
+			}
+			@Override
+			public void error(OBDError error, int pid) {
+				errors.incrementAndGet();
+			}
+		};
+		driver.scheduleRepeating(list, 0x0C);
+		driver.scheduleRepeating(list, 0x0D);
+		try {
+			await(samples, WARMUP);
+			long before = bean.getThreadAllocatedBytes(thread.get());
+			long from = samples.get();
+			await(samples, from + MEASURED);
+			long allocated = bean.getThreadAllocatedBytes(thread.get()) - before;
+			long polled = samples.get() - from;
+			assertEquals(0, errors.get());
+			//A few hundred bytes come from the JIT settling, not from polling;
+			//one object per request would be well over a megabyte.
+			assertTrue(allocated+" bytes allocated over "+polled+" samples", allocated < polled / 10);
+		} finally {
+			driver.stop(null);
+		}
+	}
+
+	private static void await(AtomicLong counter, long target) throws InterruptedException {
+		long giveUp = System.currentTimeMillis() + 30000;
+		while(counter.get() < target) {
+			assertTrue("Timed out waiting for samples.", System.currentTimeMillis() < giveUp);
+			Thread.sleep(5);
+		}
+	}
+}
+
+/**
+ * An ELM327 with echo off that answers mode 01 requests for the PIDs it
+ * has been given, at once and without allocating. Only for use from one
+ * thread.
+ */
+class LoopbackElm {
+	private final byte[][] answers = new byte[256][];
+	private byte[] pending;
+	private int pos;
+
+	void answer(int pid, String data) {
+		answers[pid] = String.format("41 %02X %s \r\r>", pid, data).getBytes();
+	}
+
+	final OutputStream out = new OutputStream(){
+		@Override
+		public void write(int b) {
+			throw new UnsupportedOperationException("Commands come in one write.");
+		}
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if(len < 5 || b[off] != '0' || b[off+1] != '1') {
+				pending = "?\r\r>".getBytes();
+			} else {
+				int pid = Character.digit(b[off+2], 16) * 16 + Character.digit(b[off+3], 16);
+				pending = answers[pid] != null ? answers[pid] : "NO DATA\r\r>".getBytes();
+			}
+			pos = 0;
+		}
+	};
+
+	final InputStream in = new InputStream(){
+		@Override
+		public int available() {
+			return pending == null ? 0 : pending.length - pos;
+		}
+		@Override
+		public int read() {
+			if(available() == 0) return -1;
+			return pending[pos++];
+		}
+		@Override
+		public int read(byte[] b, int off, int len) {
+			int n = Math.min(len, available());
+			if(n == 0) return 0;
+			System.arraycopy(pending, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+	};
+}
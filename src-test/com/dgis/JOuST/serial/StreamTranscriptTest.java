@@ -0,0 +1,93 @@
+package com.dgis.JOuST.serial;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Some tests for StreamTranscript
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class StreamTranscriptTest {
+
+	@Test
+	public void testRecordsBothDirections() throws IOException {
+		StreamTranscript t = new StreamTranscript(64);
+		OutputStream out = t.wrap(new ByteArrayOutputStream());
+		InputStream in = t.wrap(new ByteArrayInputStream("41 0C 1A F8\r>".getBytes()));
+		out.write("010C\r".getBytes());
+		byte[] buf = new byte[32];
+		int len = in.read(buf);
+		assertEquals(13, len);
+		assertEquals(18, t.getRecordedCount());
+
+		ByteArrayOutputStream dump = new ByteArrayOutputStream();
+		t.dump(dump);
+		String s = dump.toString();
+		assertTrue(s.contains("TX 30 31 30 43 0D  |010C.|"));
+		assertTrue(s.contains("RX 34 31 20 30 43"));
+	}
+
+	@Test
+	public void testWrapsAround() throws IOException {
+		StreamTranscript t = new StreamTranscript(6); //rounded to 8
+		OutputStream out = t.wrap(new ByteArrayOutputStream());
+		out.write("ABCDEFGHIJ".getBytes());
+		ByteArrayOutputStream dump = new ByteArrayOutputStream();
+		t.dump(dump);
+		String s = dump.toString();
+		assertTrue(s.contains("|CDEFGHIJ|"));
+		assertFalse(s.contains("41"));
+	}
+
+	@Test
+	public void testErrorDumpsAreAppendedInTheBackground() throws Exception {
+		StreamTranscript t = new StreamTranscript(64);
+		File f = File.createTempFile("joust-transcript", ".txt");
+		try {
+			t.wrap(new ByteArrayOutputStream()).write("010C\r".getBytes());
+			assertFalse(t.errorOccurred());
+			t.setErrorDumpFile(f);
+			assertTrue(t.errorOccurred());
+			//Within the interval: no second dump.
+			assertFalse(t.errorOccurred());
+			String s = "";
+			for(int x=0; x<100 && !s.contains("|010C.|"); x++) {
+				Thread.sleep(10);
+				s = new String(Files.readAllBytes(f.toPath()));
+			}
+			assertTrue(s.startsWith("--- "));
+			assertTrue(s.contains("|010C.|"));
+		} finally {
+			f.delete();
+		}
+	}
+}
@@ -4,6 +4,7 @@ import gnu.io.PortInUseException;
 import gnu.io.UnsupportedCommOperationException;
 
 import java.awt.Font;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -16,9 +17,18 @@ import javax.swing.*;
 import org.junit.runners.model.FrameworkMethod;
 
 import com.dgis.JOuST.IOBDEventDriver;
+import com.dgis.JOuST.OBDError;
 import com.dgis.JOuST.OBDEventDriver;
 import com.dgis.JOuST.PIDNotFoundException;
 import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.SampleTime;
+import com.dgis.JOuST.derived.DerivedMetricEngine;
+import com.dgis.JOuST.derived.DerivedResultListener;
+import com.dgis.JOuST.derived.MovingAverage;
+import com.dgis.JOuST.derived.StandardSignals;
+import com.dgis.JOuST.derived.TripEngine;
+import com.dgis.JOuST.derived.TripListener;
+import com.dgis.JOuST.derived.TripSummary;
 import com.dgis.util.Logger;
 import com.dgis.util.SerialHelper;
 
@@ -47,6 +57,8 @@ import com.dgis.util.SerialHelper;
  */
 
 public class TestConnectAndID {
+	//log.txt rolls over to log.txt.1 at this size.
+	private static final long MAX_LOG_BYTES = 16L << 20;
 
 	public static void main(String[] args) throws IOException, PortInUseException, UnsupportedCommOperationException {
 		System.out.println("S for serial, C for console, N for network.");
@@ -140,15 +152,12 @@ public class TestConnectAndID {
 		frame.setSize(400, 600);
 		frame.setVisible(true);
 		
-		FileOutputStream log = new FileOutputStream("log.txt");
-		final PrintStream log_ps = new PrintStream(log);
+		//Bounded, so the tester can be left running for weeks.
+		final PrintStream log_ps = new PrintStream(new RollingFileOutputStream(new File("log.txt"), MAX_LOG_BYTES));
 		
 		PIDResultListener pidList = new PIDResultListener(){
-			double maf=-1;
-			double speed=-1;
-			double mpg=-1;
 			@Override
-			public synchronized void dataReceived(int pid, int numBytes, byte[] data) {
+			public synchronized void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
 				switch(pid){
 				case 0x11:
 					double rawThrottle = (double)Integer.valueOf(ElmSerial.bytesToString(data).substring(4), 16);
@@ -160,7 +169,6 @@ public class TestConnectAndID {
 				case 0x0D:
 					double rawSpeed = (double)Integer.valueOf(ElmSerial.bytesToString(data).substring(4), 16);
 					rawSpeed/=1.609;
-					speed=rawSpeed;
 					System.out.println("Speed: "+rawSpeed);
 					log_ps.println("Speed, "+rawSpeed);
 					speedLabel.setText(""+rawSpeed);
@@ -175,51 +183,30 @@ public class TestConnectAndID {
 				case 0x10:
 					double rawMAF = (double)Integer.valueOf(ElmSerial.bytesToString(data).substring(4), 16);
 					rawMAF/=100.;
-					maf=rawMAF;
 					mafLabel.setText(""+rawMAF);
 					System.out.println("MAF: "+rawMAF);
 					log_ps.println("MAF, "+rawMAF);
 					break;
 				default:
-					error("unknown pid", pid);
+					System.err.println("unknown pid: "+pid);
 				}
-				processMPG();
 			}
-			static final double STOICH = 14.7;
-			static final double GASOLINE_DENSITY = 6.17;
-			static final double GRAM_PER_POUND = 453.59237;
-			static final double MILE_PER_KM = 0.62137119;
-			static final double SECOND_PER_HOUR = 3600;
-			
-			static final int AVG_SIZE=100;
-			double[] mpgs = new double[AVG_SIZE];
-			int ptr=-1;
-			private void processMPG() {
-				if(maf >= 0 && speed >= 0){
-					mpg = (STOICH * GASOLINE_DENSITY * GRAM_PER_POUND * speed * MILE_PER_KM)/(SECOND_PER_HOUR * maf);
-					mpgLabel.setText(""+mpg);
-					System.out.println("MPG: "+mpg);
-					log_ps.println("MPG, "+mpg);
-					maf=-1;
-					speed=-1;
-					if(ptr==-1){
-						for(int x=0;x<AVG_SIZE; x++)
-							mpgs[x]=mpg;
-						ptr=0;
-					}
-					mpgs[ptr] = mpg;
-					ptr = (ptr+1) % AVG_SIZE;
-					double average = 0;
-					for(int x=0;x<AVG_SIZE; x++)
-						average+=mpgs[x];
-					average/=AVG_SIZE;
-					System.out.println("Avg MPG: "+average);
-					log_ps.println("Avg MPG, "+average);
-					avgMpgLabel.setText(""+average);
-				}
+			@Override
+			public void error(OBDError error, int pid) {
+				System.err.println(error);
+			}
+		};
+		
+		DerivedResultListener mpgList = new DerivedResultListener(){
+			@Override
+			public void valueReceived(String name, double value, long timeNanos) {
+				JLabel label = name.equals("MPG") ? mpgLabel : avgMpgLabel;
+				label.setText(""+value);
+				System.out.println(name+": "+value);
+				log_ps.println(name+", "+value);
 			}
 			@Override
-			public void error(String msg, int pid) {
+			public void error(String msg, String name) {
 				System.err.println(msg);
 			}
 		};
@@ -232,9 +219,37 @@ public class TestConnectAndID {
 		event.scheduleRepeating(pidList, "Speed");
 		event.scheduleRepeating(pidList, "RPM");
 		event.scheduleRepeating(pidList, "MAF");
+		
+		DerivedMetricEngine derived = new DerivedMetricEngine(event);
+		derived.define(StandardSignals.milesPerGallon("MPG"));
+		derived.defineAggregate("Avg MPG", "MPG", new MovingAverage(100));
+		derived.scheduleRepeating(mpgList, "MPG");
+		derived.scheduleRepeating(mpgList, "Avg MPG");
+
+		TripEngine trips = new TripEngine();
+		trips.addListener(new TripListener() {
+			@Override
+			public void tripStarted(long startNanos) {
+				System.out.println("Trip started.");
+				log_ps.println("Trip started");
+			}
+			@Override
+			public void tripEnded(TripSummary summary) {
+				System.out.println("Trip: "+summary);
+				log_ps.println("Trip, "+summary);
+			}
+		});
+		trips.attach(derived);
 
 		while(System.in.available()==0 || System.in.read() != 'q'){
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				break;
+			}
 		}
+		TripSummary current = trips.getCurrent();
+		if(current != null) outln("Trip so far: "+current);
 		outln("Closing port...");
 		event.stop(new Runnable() {
 			@Override
@@ -257,3 +272,54 @@ public class TestConnectAndID {
 	}
 
 }
+
+/**
+ * Writes to a file until it reaches a size, then moves it to file.1,
+ * replacing any older one, and starts again. Keeps at most twice the
+ * size on disk.
+ */
+class RollingFileOutputStream extends OutputStream {
+	private final File file;
+	private final long maxBytes;
+	private FileOutputStream out;
+	private long written;
+
+	RollingFileOutputStream(File file, long maxBytes) throws IOException {
+		this.file = file;
+		this.maxBytes = maxBytes;
+		out = new FileOutputStream(file);
+	}
+
+	private void roll() throws IOException {
+		out.close();
+		File old = new File(file.getPath()+".1");
+		old.delete();
+		file.renameTo(old);
+		out = new FileOutputStream(file);
+		written = 0;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if(written >= maxBytes) roll();
+		out.write(b);
+		written++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if(written + len > maxBytes && written > 0) roll();
+		out.write(b, off, len);
+		written += len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,144 @@
+package com.dgis.JOuST.serial;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.dgis.JOuST.OBDContext;
+import com.dgis.JOuST.OBDEventDriver;
+import com.dgis.JOuST.TempDirs;
+import com.dgis.JOuST.TimingProfile;
+import com.dgis.JOuST.VehicleProfile;
+import com.dgis.JOuST.VehicleProfileListener;
+import com.dgis.JOuST.VehicleProfileStore;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Tests for VehicleConnector against a scripted ELM327.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class VehicleConnectorTest {
+	private static final String VIN = "1HGCM82633A004352";
+	//ISO 15765 multi-frame answer to 0902 for 1D4GP00R55B123456.
+	private static final String OTHER_VIN_FRAMES =
+			"014\r0: 49 02 01 31 44 34\r1: 47 50 30 30 52 35 35\r2: 42 31 32 33 34 35 36";
+
+	private final TempDirs temp = new TempDirs("joust-profiles-");
+
+	@After
+	public void deleteTempDirs() {
+		temp.deleteAll();
+	}
+
+	private static ElmSerial open(ScriptedElm elm) {
+		OBDContext ctx = new OBDContext();
+		ctx.setTiming(new TimingProfile(500, 200, 20, 200));
+		return new ElmSerial(elm.in, elm.out, ctx);
+	}
+
+	private VehicleProfileStore storeWithLast() throws Exception {
+		VehicleProfileStore store = new VehicleProfileStore(temp.create());
+		VehicleProfile p = new VehicleProfile(VIN);
+		p.setInterfaceType("ELM 327");
+		p.setProtocol(0x6);
+		p.setEcuCount(0x0C, 1);
+		p.setPidsKnown();
+		store.save(p);
+		return store;
+	}
+
+	private static ScriptedElm vehicle() {
+		ScriptedElm elm = new ScriptedElm();
+		elm.answer("atz", "ELM327 v1.3a");
+		elm.answer("atws", "ELM327 v1.3a");
+		elm.answer("0100", "41 00 BE 3E B8 11");
+		return elm;
+	}
+
+	@Test
+	public void testCachedProfileWarmStarts() throws Exception {
+		ScriptedElm elm = vehicle();
+		VehicleConnector conn = new VehicleConnector(open(elm), storeWithLast());
+		assertTrue(conn.connect());
+		assertTrue(conn.isUnverified());
+		assertEquals(VIN, conn.getProfile().getVin());
+		List<String> cmds = elm.getCommands();
+		assertEquals("atws", cmds.get(0));
+		assertTrue(cmds.toString(), cmds.indexOf("atsp6") < cmds.indexOf("0100"));
+		assertFalse(cmds.toString(), cmds.contains("atz"));
+		//Supported pids come from the profile, not from the vehicle.
+		assertFalse(cmds.toString(), cmds.contains("0902"));
+		assertFalse(cmds.toString(), cmds.contains("0120"));
+	}
+
+	@Test
+	public void testWarmStartFallsBackToFullHandshake() throws Exception {
+		ScriptedElm elm = vehicle();
+		elm.answer("atsp6", "?");
+		VehicleConnector conn = new VehicleConnector(open(elm), storeWithLast());
+		assertTrue(conn.connect());
+		List<String> cmds = elm.getCommands();
+		int atsp = cmds.indexOf("atsp6");
+		assertTrue(cmds.toString(), atsp >= 0);
+		assertTrue(cmds.toString(), cmds.indexOf("atz") > atsp);
+		assertTrue(cmds.toString(), cmds.lastIndexOf("0100") > cmds.indexOf("atz"));
+	}
+
+	@Test
+	public void testVerifyReportsVinMismatch() throws Exception {
+		ScriptedElm elm = vehicle();
+		elm.answer("0902", OTHER_VIN_FRAMES);
+		VehicleProfileStore store = storeWithLast();
+		ElmSerial serial = open(elm);
+		VehicleConnector conn = new VehicleConnector(serial, store);
+		assertTrue(conn.connect());
+		OBDEventDriver driver = new OBDEventDriver(serial);
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<String> actual = new AtomicReference<String>();
+		final AtomicReference<VehicleProfile> cached = new AtomicReference<VehicleProfile>();
+		try {
+			conn.verify(driver, new VehicleProfileListener(){
+				@Override
+				public void profileMismatch(VehicleProfile p, String actualVin) {
+					cached.set(p);
+					actual.set(actualVin);
+					done.countDown();
+				}
+			});
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+		} finally {
+			driver.stop(null);
+		}
+		assertEquals(VIN, cached.get().getVin());
+		assertEquals("1D4GP00R55B123456", actual.get());
+		assertFalse(conn.isUnverified());
+		//The next connect() does the full handshake.
+		assertNull(store.loadLast());
+		assertNotNull(store.load(VIN));
+	}
+}
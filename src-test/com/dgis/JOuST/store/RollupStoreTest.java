@@ -0,0 +1,175 @@
+package com.dgis.JOuST.store;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.dgis.JOuST.LogRecord;
+import com.dgis.JOuST.LogSink;
+import com.dgis.JOuST.OBDLog;
+import com.dgis.JOuST.SampleTime;
+import com.dgis.JOuST.TempDirs;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Some tests for RollupStore
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class RollupStoreTest {
+	//Some time on an hour boundary.
+	private static final long T0 = 1250000000000L - 1250000000000L % 3600000L;
+
+	private final TempDirs temp = new TempDirs("joust-store-");
+
+	@After
+	public void deleteTempDirs() {
+		temp.deleteAll();
+	}
+
+	private static void assertSummary(long[] times, double[] values, int n, Rollup r) {
+		long count = 0;
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, sum = 0;
+		for(int x=0; x<n; x++) {
+			if(times[x] < r.getStartMillis() || times[x] >= r.getEndMillis()) continue;
+			count++;
+			min = Math.min(min, values[x]);
+			max = Math.max(max, values[x]);
+			sum += values[x];
+		}
+		assertEquals(count, r.getCount());
+		if(count == 0) return;
+		assertEquals(min, r.getMin(), 0);
+		assertEquals(max, r.getMax(), 0);
+		assertEquals(sum, r.getSum(), 1e-6 * Math.abs(sum));
+	}
+
+	@Test
+	public void testSummariesMatchSamples() throws Exception {
+		File dir = temp.create();
+		RollupStore store = new RollupStore(dir, null, 4096);
+		Random rnd = new Random(42);
+		int n = 3 * 3600;
+		long[] times = new long[n];
+		double[] values = new double[n];
+		long t = T0 + 1234;
+		for(int x=0; x<n; x++) {
+			t += 500 + rnd.nextInt(1000);
+			times[x] = t;
+			values[x] = x % 7 == 0 ? values[Math.max(0, x-1)] : 20 + rnd.nextInt(100) / 4.0;
+			assertTrue(store.record(0x0C, times[x], values[x]));
+		}
+		assertFalse(store.record(0x0C, T0, 1));
+		assertFalse(store.record(0x0C, t, Double.NaN));
+		assertEquals(2, store.getDropped());
+
+		assertSummary(times, values, n, store.summarize(0x0C, T0, t + 1));
+		assertSummary(times, values, n, store.summarize(0x0C, T0 + 3599999, T0 + 2*3600000 + 61001));
+		assertSummary(times, values, n, store.summarize(0x0C, T0 + 60000, T0 + 120000));
+		assertSummary(times, values, n, store.summarize(0x0C, T0 + 61500, T0 + 61900));
+		assertEquals(0, store.summarize(0x0D, T0, t).getCount());
+		assertTrue(Double.isNaN(store.summarize(0x0D, T0, t).getMean()));
+
+		List<Rollup> hours = store.rollups(0x0C, Resolution.HOUR, T0, t + 1);
+		assertTrue(hours.size() >= 3);
+		long total = 0;
+		for(Rollup r : hours) {
+			assertSummary(times, values, n, r);
+			total += r.getCount();
+		}
+		assertEquals(n, total);
+		List<Rollup> minutes = store.rollups(0x0C, Resolution.MINUTE, T0 + 600000, T0 + 1200000);
+		assertEquals(10, minutes.size());
+		for(Rollup r : minutes)
+			assertSummary(times, values, n, r);
+
+		long[] readTimes = new long[n];
+		double[] readValues = new double[n];
+		assertEquals(n, store.read(0x0C, T0, t + 1, readTimes, readValues));
+		for(int x=0; x<n; x++) {
+			assertEquals(times[x], readTimes[x]);
+			assertEquals(Double.doubleToRawLongBits(values[x]), Double.doubleToRawLongBits(readValues[x]));
+		}
+		store.close();
+	}
+
+	@Test
+	public void testReopenAndAppend() throws Exception {
+		File dir = temp.create();
+		RollupStore store = new RollupStore(dir, null, 4096);
+		for(int x=0; x<1000; x++)
+			store.record(0x05, T0 + x * 100L, 90);
+		store.close();
+		//A steady rate and value should cost two bytes a sample.
+		File[] segs = new File(dir, "05").listFiles();
+		int segments = 0;
+		for(File f : segs)
+			if(f.getName().endsWith(".seg")) segments++;
+		assertEquals(1, segments);
+
+		store = new RollupStore(dir, null, 4096);
+		assertEquals(Arrays.asList(0x05), store.getPids());
+		assertFalse(store.record(0x05, T0, 1));
+		for(int x=1000; x<4000; x++)
+			assertTrue(store.record(0x05, T0 + x * 100L, x < 3000 ? 90 : 95.5));
+		Rollup r = store.summarize(0x05, T0, T0 + 3600000);
+		assertEquals(4000, r.getCount());
+		assertEquals(90, r.getMin(), 0);
+		assertEquals(95.5, r.getMax(), 0);
+		assertEquals((3000 * 90 + 1000 * 95.5) / 4000, r.getMean(), 1e-9);
+		long[] times = new long[10];
+		double[] values = new double[10];
+		assertEquals(2, store.read(0x05, T0 + 299900, T0 + 300100, times, values));
+		assertEquals(T0 + 299900, times[0]);
+		assertEquals(90, values[0], 0);
+		assertEquals(95.5, values[1], 0);
+		store.close();
+	}
+
+	@Test
+	public void testWriteFailuresAreCountedAndLoggedOnce() throws Exception {
+		RollupStore store = new RollupStore(temp.create(), null, 4096);
+		final List<String> logged = new ArrayList<String>();
+		OBDLog log = new OBDLog("test");
+		log.setSink(new LogSink(){
+			@Override
+			public void publish(LogRecord r) {
+				logged.add(r.getMessage());
+			}
+		});
+		store.setLog(log);
+		SampleTime time = new SampleTime(System.nanoTime(), System.nanoTime());
+		store.dataReceived(0x0D, 1, "410D3C".getBytes(), time);
+		assertEquals(0, store.getFailed());
+		store.close();
+		store.dataReceived(0x0D, 1, "410D3C".getBytes(), time);
+		store.dataReceived(0x0D, 1, "410D3D".getBytes(), time);
+		assertEquals(2, store.getFailed());
+		assertEquals(0, store.getDropped());
+		assertEquals(logged.toString(), 1, logged.size());
+	}
+}
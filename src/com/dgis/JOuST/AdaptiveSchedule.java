@@ -0,0 +1,93 @@
+package com.dgis.JOuST;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Lets OBDEventDriver share the bus out by how fast each pid is moving,
+ * rather than evenly. See OBDEventDriver.setAdaptiveSchedule().
+ *
+ * The driver keeps a smoothed estimate of each repeating pid's rate of
+ * change, in fractions of the pid's full raw range per second, and of
+ * how many requests per second the bus manages. Every REBALANCE_MILLIS
+ * it gives each pid its minimum rate, then hands out the rest of the
+ * bus in proportion to the pids' rates of change, up to their maximums.
+ * So at a steady cruise every pid idles near its minimum, and under hard
+ * acceleration speed and RPM take the time the others leave.
+ *
+ * A pid is never polled faster than its fastest listener asks for,
+ * whatever the schedule allows.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class AdaptiveSchedule {
+	/**
+	 * How often polling rates are recomputed.
+	 */
+	public static final long REBALANCE_MILLIS = 500;
+
+	/**
+	 * Weight of each new observation in the smoothed rate of change.
+	 */
+	public static final double SMOOTHING = 0.3;
+
+	private final double[] minRate = new double[256];
+	private final double[] maxRate = new double[256];
+
+	/**
+	 * @param minRate requests per second every pid gets however still it is.
+	 * @param maxRate requests per second no pid gets however fast it moves.
+	 */
+	public AdaptiveSchedule(double minRate, double maxRate) {
+		check(minRate, maxRate);
+		Arrays.fill(this.minRate, minRate);
+		Arrays.fill(this.maxRate, maxRate);
+	}
+
+	private AdaptiveSchedule(AdaptiveSchedule s) {
+		System.arraycopy(s.minRate, 0, minRate, 0, 256);
+		System.arraycopy(s.maxRate, 0, maxRate, 0, 256);
+	}
+
+	private static void check(double minRate, double maxRate) {
+		if(!(minRate > 0) || !(maxRate >= minRate) || Double.isInfinite(maxRate))
+			throw new IllegalArgumentException("Rates must be positive, finite, and minRate at most maxRate.");
+	}
+
+	/**
+	 * @return a copy of this schedule with its own range for pid.
+	 */
+	public AdaptiveSchedule withRange(int pid, double minRate, double maxRate) {
+		if(pid < 0 || pid > 0xFF) throw new IllegalArgumentException("No such PID: "+pid);
+		check(minRate, maxRate);
+		AdaptiveSchedule s = new AdaptiveSchedule(this);
+		s.minRate[pid] = minRate;
+		s.maxRate[pid] = maxRate;
+		return s;
+	}
+
+	public double getMinRate(int pid) {
+		return minRate[pid];
+	}
+
+	public double getMaxRate(int pid) {
+		return maxRate[pid];
+	}
+}
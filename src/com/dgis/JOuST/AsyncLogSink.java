@@ -0,0 +1,141 @@
+package com.dgis.JOuST;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Writes records to a stream from a background thread, so logging costs
+ * the requesting thread one queue offer. Whatever has queued up is written
+ * as one batch with one flush. When the queue is full, records are
+ * dropped and counted rather than making the logger wait; the count is
+ * written with the next batch.
+ *
+ * Give an adapter's OBDLog one of these and a verbose level to trace it
+ * without slowing it down:
+ * <pre>
+ * ctx.getLog().setSink(new AsyncLogSink(out, AsyncLogSink.DEFAULT_CAPACITY));
+ * ctx.getLog().setLevel(Logger.LEVEL_SUPERFINE);
+ * </pre>
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class AsyncLogSink implements LogSink {
+	public static final int DEFAULT_CAPACITY = 4096;
+	//Most records written per batch, so a flood still gets flushed regularly.
+	private static final int MAX_BATCH = 256;
+
+	private final PrintStream out;
+	private final BlockingQueue<LogRecord> queue;
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final Thread writer;
+	private volatile boolean closed = false;
+
+	/**
+	 * Starts the writer thread.
+	 * @param capacity most records waiting to be written.
+	 */
+	public AsyncLogSink(PrintStream out, int capacity) {
+		this.out = out;
+		queue = new ArrayBlockingQueue<LogRecord>(capacity);
+		writer = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "JOuST log writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void publish(LogRecord r) {
+		if(closed || !queue.offer(r)) dropped.incrementAndGet();
+	}
+
+	/**
+	 * @return records dropped because the queue was full or the sink closed.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return records written so far.
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * Writes whatever is queued, then stops the writer thread.
+	 * @throws InterruptedException
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		writer.interrupt();
+		writer.join();
+	}
+
+	private void drain() {
+		List<LogRecord> batch = new ArrayList<LogRecord>(MAX_BATCH);
+		StringBuilder sb = new StringBuilder();
+		SimpleDateFormat fmt = new SimpleDateFormat("HH:mm:ss.SSS");
+		long reportedDrops = 0;
+		while(true) {
+			try {
+				LogRecord first = queue.poll(1, TimeUnit.SECONDS);
+				if(first != null) {
+					batch.add(first);
+					queue.drainTo(batch, MAX_BATCH - 1);
+				}
+			} catch (InterruptedException e) {
+				//close(): write what is left, then stop.
+				queue.drainTo(batch);
+				closed = true;
+			}
+			long drops = dropped.get();
+			if(!batch.isEmpty() || drops != reportedDrops) {
+				for(int x=0; x<batch.size(); x++) {
+					batch.get(x).appendTo(sb, fmt);
+					sb.append('\n');
+				}
+				if(drops != reportedDrops) {
+					sb.append("(").append(drops - reportedDrops).append(" log records dropped)\n");
+					reportedDrops = drops;
+				}
+				out.print(sb);
+				out.flush();
+				written.addAndGet(batch.size());
+				batch.clear();
+				sb.setLength(0);
+			}
+			if(closed && queue.isEmpty()) return;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The OBD services that report diagnostic trouble codes.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public enum DTCMode {
+	/** Mode 03: confirmed codes, the ones that light the MIL. */
+	STORED(0x03),
+	/** Mode 07: codes detected during the current or last drive cycle. */
+	PENDING(0x07),
+	/** Mode 0A: codes that cannot be cleared by a scan tool. */
+	PERMANENT(0x0A);
+
+	private final int service;
+
+	private DTCMode(int service) {
+		this.service = service;
+	}
+
+	/**
+	 * @return the service number sent to the ECU.
+	 */
+	public int getService() {
+		return service;
+	}
+
+	/**
+	 * @return the service number the ECU answers with.
+	 */
+	public int getResponseService() {
+		return service + 0x40;
+	}
+}
@@ -0,0 +1,39 @@
+package com.dgis.JOuST;
+
+import java.util.List;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Receives diagnostic trouble codes.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public interface DTCResultListener {
+	/**
+	 * @param codes every code reported by any ECU, sorted, without duplicates.
+	 * Empty if there are none.
+	 */
+	void dtcsReceived(DTCMode mode, List<DiagnosticTroubleCode> codes);
+	/**
+	 * @param error why the codes for mode could not be read.
+	 */
+	void error(OBDError error, DTCMode mode);
+}
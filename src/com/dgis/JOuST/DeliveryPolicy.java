@@ -0,0 +1,160 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Decides which samples of a repeating pid a subscription is handed.
+ * Applied by the driver to the raw value of the response, i.e. the
+ * unsigned value of its data bytes, before anything is decoded, so
+ * filtered samples cost the listener nothing.
+ *
+ * EVERY_SAMPLE hands over everything. onChange() only hands over samples
+ * whose raw value differs from the last one handed over, by at least the
+ * deadband if one is set; the first sample always goes through. A
+ * heartbeat hands over a sample anyway once the subscription has heard
+ * nothing for that long, so a listener can tell a steady value from a
+ * dead one.
+ *
+ * With adaptive polling, the subscription also asks for the pid less
+ * often while the value holds still: each sample that has not moved by
+ * the deadband doubles its polling interval, starting from ADAPTIVE_FIRST_STEP_MILLIS,
+ * up to a limit, and the first change puts it back to the rate it was
+ * subscribed at. The pid is still polled faster if another subscription
+ * wants it.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class DeliveryPolicy {
+	public static final DeliveryPolicy EVERY_SAMPLE = new DeliveryPolicy(false, 0, 0, 0, 0);
+
+	/**
+	 * The shortest polling interval adaptive polling backs off to from a
+	 * subscription that wants every sample.
+	 */
+	public static final long ADAPTIVE_FIRST_STEP_MILLIS = 50;
+
+	private final boolean onChange;
+	private final long deadband;
+	private final double percentDeadband;
+	private final long heartbeatMillis;
+	private final long adaptiveMaxMillis;
+
+	private DeliveryPolicy(boolean onChange, long deadband, double percentDeadband, long heartbeatMillis, long adaptiveMaxMillis) {
+		this.onChange = onChange;
+		this.deadband = deadband;
+		this.percentDeadband = percentDeadband;
+		this.heartbeatMillis = heartbeatMillis;
+		this.adaptiveMaxMillis = adaptiveMaxMillis;
+	}
+
+	/**
+	 * @return a policy that only hands over samples whose raw value changed.
+	 */
+	public static DeliveryPolicy onChange() {
+		return new DeliveryPolicy(true, 0, 0, 0, 0);
+	}
+
+	/**
+	 * @param deadband how far, in raw units, the value must move from the
+	 * last sample handed over before the next is. A move of exactly the
+	 * deadband is handed over.
+	 */
+	public DeliveryPolicy withDeadband(long deadband) {
+		if(deadband < 0) throw new IllegalArgumentException("Deadband must not be negative.");
+		return new DeliveryPolicy(true, deadband, percentDeadband, heartbeatMillis, adaptiveMaxMillis);
+	}
+
+	/**
+	 * @param percent how far the value must move, as a percentage of the
+	 * last sample handed over, before the next is. Applies along with any
+	 * absolute deadband: the value must move by at least both.
+	 */
+	public DeliveryPolicy withPercentDeadband(double percent) {
+		if(!(percent >= 0)) throw new IllegalArgumentException("Deadband must not be negative.");
+		return new DeliveryPolicy(true, deadband, percent, heartbeatMillis, adaptiveMaxMillis);
+	}
+
+	/**
+	 * @param maxSilenceMillis hand over a sample regardless once none has
+	 * been for this long, 0 for never.
+	 */
+	public DeliveryPolicy withHeartbeat(long maxSilenceMillis) {
+		if(maxSilenceMillis < 0) throw new IllegalArgumentException("Heartbeat must not be negative.");
+		return new DeliveryPolicy(onChange, deadband, percentDeadband, maxSilenceMillis, adaptiveMaxMillis);
+	}
+
+	/**
+	 * @param maxIntervalMillis longest polling interval to back off to
+	 * while the value holds still, or 0 to poll at the subscribed rate.
+	 * Held to the heartbeat, if there is one.
+	 */
+	public DeliveryPolicy withAdaptivePolling(long maxIntervalMillis) {
+		if(maxIntervalMillis < 0) throw new IllegalArgumentException("Interval must not be negative.");
+		return new DeliveryPolicy(onChange, deadband, percentDeadband, heartbeatMillis, maxIntervalMillis);
+	}
+
+	public boolean isOnChange() {
+		return onChange;
+	}
+
+	public long getDeadband() {
+		return deadband;
+	}
+
+	public double getPercentDeadband() {
+		return percentDeadband;
+	}
+
+	public long getHeartbeatMillis() {
+		return heartbeatMillis;
+	}
+
+	/**
+	 * @return the longest polling interval adaptive polling backs off to,
+	 * in milliseconds, or 0 if it is off.
+	 */
+	public long getAdaptiveMaxMillis() {
+		if(adaptiveMaxMillis == 0 || heartbeatMillis == 0) return adaptiveMaxMillis;
+		return Math.min(adaptiveMaxMillis, heartbeatMillis);
+	}
+
+	/**
+	 * @param raw the raw value of a sample, or -1 if it has none.
+	 * @param last the raw value of the last sample handed over.
+	 * @return true if raw differs from last by at least the deadband, and
+	 * by something. Samples without a raw value always have moved.
+	 */
+	boolean moved(long raw, long last) {
+		if(raw < 0 || last < 0) return true;
+		long delta = Math.abs(raw - last);
+		if(delta == 0 || delta < deadband) return false;
+		return delta * 100.0 >= percentDeadband * last;
+	}
+
+	@Override
+	public String toString() {
+		if(!onChange && heartbeatMillis == 0 && adaptiveMaxMillis == 0) return "every sample";
+		StringBuilder sb = new StringBuilder(onChange ? "on change" : "every sample");
+		if(deadband > 0) sb.append(", deadband ").append(deadband);
+		if(percentDeadband > 0) sb.append(", deadband ").append(percentDeadband).append('%');
+		if(heartbeatMillis > 0) sb.append(", heartbeat ").append(heartbeatMillis).append("ms");
+		if(adaptiveMaxMillis > 0) sb.append(", adaptive up to ").append(getAdaptiveMaxMillis()).append("ms");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,72 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A diagnostic trouble code as reported by modes 03, 07 and 0A, e.g. P0133.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class DiagnosticTroubleCode implements Comparable<DiagnosticTroubleCode> {
+	private static final char[] SYSTEMS = {'P', 'C', 'B', 'U'};
+
+	private final int raw;
+
+	/**
+	 * @param raw the two bytes of the code as sent by the ECU, first byte high.
+	 */
+	public DiagnosticTroubleCode(int raw) {
+		this.raw = raw & 0xFFFF;
+	}
+
+	/**
+	 * @return the two bytes of the code as sent by the ECU, first byte high.
+	 */
+	public int getRaw() {
+		return raw;
+	}
+
+	/**
+	 * @return 'P' (powertrain), 'C' (chassis), 'B' (body) or 'U' (network).
+	 */
+	public char getSystem() {
+		return SYSTEMS[raw >> 14];
+	}
+
+	@Override
+	public String toString() {
+		return getSystem() + String.format("%04X", raw & 0x3FFF);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof DiagnosticTroubleCode && ((DiagnosticTroubleCode)o).raw == raw;
+	}
+
+	@Override
+	public int hashCode() {
+		return raw;
+	}
+
+	@Override
+	public int compareTo(DiagnosticTroubleCode o) {
+		return raw < o.raw ? -1 : (raw == o.raw ? 0 : 1);
+	}
+}
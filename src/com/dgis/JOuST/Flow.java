@@ -0,0 +1,61 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * The Reactive Streams interfaces, as in java.util.concurrent.Flow, for
+ * platforms that predate it. The contracts are the same, so adapting either
+ * way is a one-line wrapper.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class Flow {
+	private Flow() {}
+
+	public static interface Publisher<T> {
+		/**
+		 * Adds a subscriber, which is handed a Subscription through
+		 * onSubscribe() before anything else.
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	public static interface Subscriber<T> {
+		void onSubscribe(Subscription subscription);
+		/**
+		 * Called at most as many times as the subscriber has requested.
+		 */
+		void onNext(T item);
+		void onError(Throwable throwable);
+		void onComplete();
+	}
+
+	public static interface Subscription {
+		/**
+		 * Adds n to the number of items the subscriber is ready for.
+		 * @param n must be positive; otherwise the subscription is cancelled
+		 * and onError() is called.
+		 */
+		void request(long n);
+		/**
+		 * Stops delivery. Items may still arrive briefly after this returns.
+		 */
+		void cancel();
+	}
+}
@@ -13,8 +13,10 @@ public interface IOBDEventDriver {
 
 	
 	/**
-	 * Schedule the system to query for the specified pid exactly once,
-	 * as soon as possible, calling the given listener when the results arrive.
+	 * Schedule the system to repeatedly query for the specified pid as fast as
+	 * possible, calling the given listener when the results arrive.
+	 * However many listeners ask for a pid, it is requested once per cycle
+	 * and the result is handed to all of them.
 	 * @param list The listener to handle incoming data for this request.
 	 * @param pid the pid to request.
 	 * @return true if scheduling was successful.
@@ -23,14 +25,95 @@ public interface IOBDEventDriver {
 	public boolean scheduleRepeating(PIDResultListener list, String name) throws PIDNotFoundException;
 
 	/**
-	 * Schedule the system to repeatedly query for the specified pid as fast as
-	 * possible, calling the given listener when the results arrive.
+	 * Schedule the system to repeatedly query for the specified pid, calling
+	 * the given listener at most maxRate times per second. The pid is
+	 * requested at the highest rate any of its listeners asks for; slower
+	 * listeners are handed a subset of the samples.
+	 * @param list The listener to handle incoming data for this request.
+	 * @param pid the pid to request.
+	 * @param maxRate samples per second wanted by list, or 0 for as fast as possible.
+	 * @return true if scheduling was successful.
+	 */
+	public boolean scheduleRepeating(PIDResultListener list, int pid, double maxRate);
+	public boolean scheduleRepeating(PIDResultListener list, String name, double maxRate) throws PIDNotFoundException;
+
+	/**
+	 * Same as scheduleRepeating(list, pid, maxRate), but returns a handle
+	 * that ends this one request without touching any other the listener
+	 * has. The pid is dropped from the schedule as soon as its last
+	 * subscription is closed.
+	 * @return the open subscription.
+	 */
+	public PIDSubscription subscribe(PIDResultListener list, int pid, double maxRate);
+	public PIDSubscription subscribe(PIDResultListener list, String name, double maxRate) throws PIDNotFoundException;
+
+	/**
+	 * Same as subscribe(list, pid, maxRate), handing list only the samples
+	 * policy lets through. maxRate still caps how many it considers.
+	 * @return the open subscription.
+	 */
+	public PIDSubscription subscribe(PIDResultListener list, int pid, double maxRate, DeliveryPolicy policy);
+	public PIDSubscription subscribe(PIDResultListener list, String name, double maxRate, DeliveryPolicy policy) throws PIDNotFoundException;
+
+	/**
+	 * @return how many repeating requests for pid are open, 0 if it is
+	 * not being polled.
+	 */
+	public int getConsumerCount(int pid);
+
+	/**
+	 * Schedule the system to query for the specified pid exactly once,
+	 * as soon as possible, calling the given listener when the results arrive.
+	 * Same as requestOnce(list, pid, 0).
 	 * @param list The listener to handle incoming data for this request.
 	 * @param pid the pid to request.
 	 * @return true if scheduling was successful.
 	 */
 	public boolean scheduleOnce(PIDResultListener list, int pid);
 	public boolean scheduleOnce(PIDResultListener list, String name) throws PIDNotFoundException;
+
+	/**
+	 * Query for the specified pid exactly once. One-shot requests skip
+	 * ahead of repeating ones: they are sent as soon as the request on the
+	 * wire completes. Listeners repeatedly polling the same pid also get
+	 * the result.
+	 * @param list The listener to handle incoming data for this request, or null.
+	 * @param pid the pid to request.
+	 * @param timeoutMillis if the request cannot be sent within this many
+	 * milliseconds, fail it instead. 0 to wait indefinitely.
+	 * @return the pending result.
+	 */
+	public PIDRequestFuture requestOnce(PIDResultListener list, int pid, long timeoutMillis);
+	public PIDRequestFuture requestOnce(PIDResultListener list, String name, long timeoutMillis) throws PIDNotFoundException;
+
+	/**
+	 * Send an arbitrary request exactly once, e.g. a mode 09 VIN read.
+	 * Shares the one-shot lane with requestOnce(PIDResultListener, ...).
+	 * @param req the request, see OBDRequests.
+	 * @param list The listener to handle the answer, or null.
+	 * @param timeoutMillis if the request cannot be sent within this many
+	 * milliseconds, fail it instead. 0 to wait indefinitely.
+	 * @return the pending result.
+	 */
+	public <T> OBDRequestFuture<T> requestOnce(OBDRequest<T> req, OBDResponseListener<T> list, long timeoutMillis);
+	
+	/**
+	 * Check for diagnostic trouble codes in the background while pids are
+	 * polled. Checks are spread out so that they take at most one request
+	 * in every OBDEventDriver.DTC_INTERLEAVE.
+	 * @param list called with the first result, then whenever the codes change.
+	 * @param mode which codes to check.
+	 * @param intervalMillis time between checks.
+	 * @return true if scheduling was successful.
+	 */
+	public boolean scheduleDTCPolling(DTCResultListener list, DTCMode mode, long intervalMillis);
+	
+	/**
+	 * Listen for repeating pids being suspended because they keep
+	 * failing, and recovering.
+	 */
+	public void addHealthListener(PIDHealthListener list);
+	public void removeHealthListener(PIDHealthListener list);
 	
 	/**
 	 * Removes all requests to be handled by a certain PIDResultListener.
@@ -46,6 +129,11 @@ public interface IOBDEventDriver {
 	 */
 	public boolean removeAll(int pid);
 
+	/**
+	 * @return the catalog, log and metrics this driver uses.
+	 */
+	public OBDContext getContext();
+
 	/**
 	 * Remove all requests.
 	 * @return true if clear succeeded.
@@ -0,0 +1,322 @@
+package com.dgis.JOuST;
+
+// Generated by PIDCatalogCompiler from j1979.pids. Do not edit.
+
+final class J1979Catalog {
+	private J1979Catalog() {}
+
+	static final int[] PID = {
+		0x00,0x01,0x02,0x03,0x04,0x05,0x06,0x07,
+		0x08,0x09,0x0A,0x0B,0x0C,0x0D,0x0E,0x0F,
+		0x10,0x11,0x12,0x13,0x14,0x15,0x16,0x17,
+		0x18,0x19,0x1A,0x1B,0x1C,0x1D,0x1E,0x1F,
+		0x20,0x21,0x22,0x23,0x24,0x25,0x26,0x27,
+		0x28,0x29,0x2A,0x2B,0x2C,0x2D,0x2E,0x2F,
+		0x30,0x31,0x32,0x33,0x34,0x35,0x36,0x37,
+		0x38,0x39,0x3A,0x3B,0x3C,0x3D,0x3E,0x3F,
+		0x40,0x41,0x42,0x43,0x44,0x45,0x46,0x47,
+		0x48,0x49,0x4A,0x4B,0x4C,0x4D,0x4E,0x4F,
+		0x50,0x51,0x52,0x53,0x54,0x55,0x56,0x57,
+		0x58,0x59,0x5A,0x5B,0x5C,0x5D,0x5E,0x5F,
+		0x60,0x61,0x62,0x63,0x64,0x65,0x66,0x67,
+		0x68,0x69,0x6A,0x6B,0x6C,0x6D,0x6E,0x6F,
+		0x70,0x71,0x72,0x73,0x74,0x75,0x76,0x77,
+		0x78,0x79,0x7A,0x7B,0x7C,0x7D,0x7E,0x7F,
+		0x80,0x81,0x82,0x83,0x84,0x85,0x86,0x87,
+		0x88,0x89,0x8A,0x8B,0x8C,0x8D,0x8E,0x8F,
+		0x90,0x91,0x92,0x93,0x94,0x98,0x99,0x9A,
+		0x9B,0x9C,0x9D,0x9E,0x9F,0xA0,0xA1,0xA2,
+		0xA3,0xA4,0xA5,0xA6,0xA7,0xA8,0xA9,0xC0,
+	};
+
+	static final int[] SIZE = {
+		4,4,2,2,1,1,1,1,
+		1,1,1,1,2,1,1,1,
+		2,1,1,1,2,2,2,2,
+		2,2,2,2,1,1,1,2,
+		4,2,2,2,4,4,4,4,
+		4,4,4,4,1,1,1,1,
+		1,2,2,1,4,4,4,4,
+		4,4,4,4,2,2,2,2,
+		4,4,2,2,2,1,1,1,
+		1,1,1,1,1,2,2,4,
+		4,1,1,2,2,2,2,2,
+		2,2,1,1,1,2,2,1,
+		4,1,1,2,5,2,5,3,
+		3,7,5,5,5,6,5,3,
+		9,5,5,5,5,7,7,5,
+		9,9,7,7,9,1,1,13,
+		4,21,21,5,1,10,5,5,
+		13,41,41,7,17,1,1,7,
+		3,5,2,3,12,9,9,6,
+		4,17,4,2,9,4,9,2,
+		9,4,4,4,4,4,4,4,
+	};
+
+	static final int[] VALUE_BYTES = {
+		4,4,2,2,1,1,1,1,
+		1,1,1,1,2,1,1,1,
+		2,1,1,1,1,1,1,1,
+		1,1,1,1,1,1,1,2,
+		4,2,2,2,2,2,2,2,
+		2,2,2,2,1,1,1,1,
+		1,2,2,1,2,2,2,2,
+		2,2,2,2,2,2,2,2,
+		4,4,2,2,2,1,1,1,
+		1,1,1,1,1,2,2,4,
+		1,1,1,2,2,1,1,1,
+		1,2,1,1,1,2,2,1,
+		4,1,1,2,1,2,5,3,
+		3,7,5,5,5,6,5,3,
+		9,5,5,5,5,7,7,5,
+		9,9,7,7,9,1,1,13,
+		4,21,21,5,1,10,5,5,
+		13,41,41,7,17,1,1,7,
+		3,5,2,3,12,9,9,6,
+		4,17,2,2,9,4,9,2,
+		9,4,4,4,4,4,4,4,
+	};
+
+	static final double[] SCALE = {
+		Double.NaN,Double.NaN,Double.NaN,Double.NaN,0.39215686274509803,1.0,0.78125,0.78125,
+		0.78125,0.78125,3.0,1.0,0.25,1.0,0.5,1.0,
+		0.01,0.39215686274509803,Double.NaN,Double.NaN,0.005,0.005,0.005,0.005,
+		0.005,0.005,0.005,0.005,Double.NaN,Double.NaN,Double.NaN,1.0,
+		Double.NaN,1.0,0.079,10.0,3.0517578125E-5,3.0517578125E-5,3.0517578125E-5,3.0517578125E-5,
+		3.0517578125E-5,3.0517578125E-5,3.0517578125E-5,3.0517578125E-5,0.39215686274509803,0.78125,0.39215686274509803,0.39215686274509803,
+		1.0,1.0,Double.NaN,1.0,3.0517578125E-5,3.0517578125E-5,3.0517578125E-5,3.0517578125E-5,
+		3.0517578125E-5,3.0517578125E-5,3.0517578125E-5,3.0517578125E-5,0.1,0.1,0.1,0.1,
+		Double.NaN,Double.NaN,0.001,0.39215686274509803,3.0517578125E-5,0.39215686274509803,1.0,0.39215686274509803,
+		0.39215686274509803,0.39215686274509803,0.39215686274509803,0.39215686274509803,0.39215686274509803,1.0,1.0,Double.NaN,
+		10.0,Double.NaN,0.39215686274509803,0.005,Double.NaN,0.78125,0.78125,0.78125,
+		0.78125,10.0,0.39215686274509803,0.39215686274509803,1.0,0.0078125,0.05,Double.NaN,
+		Double.NaN,1.0,1.0,1.0,1.0,Double.NaN,Double.NaN,Double.NaN,
+		Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,
+		Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,
+		Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,
+		Double.NaN,Double.NaN,Double.NaN,Double.NaN,1.0,Double.NaN,Double.NaN,Double.NaN,
+		Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,0.39215686274509803,1.0,Double.NaN,
+		Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,Double.NaN,
+		Double.NaN,Double.NaN,0.02,0.2,Double.NaN,Double.NaN,Double.NaN,0.03125,
+		Double.NaN,Double.NaN,Double.NaN,0.1,Double.NaN,Double.NaN,Double.NaN,Double.NaN,
+	};
+
+	static final double[] OFFSET = {
+		0.0,0.0,0.0,0.0,0.0,-40.0,-100.0,-100.0,
+		-100.0,-100.0,0.0,0.0,0.0,0.0,-64.0,-40.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,-100.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,-40.0,-40.0,-40.0,-40.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,-40.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,-100.0,-100.0,-100.0,
+		-100.0,0.0,0.0,0.0,-40.0,-210.0,0.0,0.0,
+		0.0,-125.0,-125.0,0.0,-125.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,-40.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,-125.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+		0.0,0.0,0.0,0.0,0.0,0.0,0.0,0.0,
+	};
+
+	static final String[] UNIT = {
+		null,null,null,null,"%","C","%","%",
+		"%","%","kPa","kPa","rpm","km/h","deg","C",
+		"g/s","%",null,null,"V","V","V","V",
+		"V","V","V","V",null,null,null,"s",
+		null,"km","kPa","kPa","ratio","ratio","ratio","ratio",
+		"ratio","ratio","ratio","ratio","%","%","%","%",
+		"count","km",null,"kPa","ratio","ratio","ratio","ratio",
+		"ratio","ratio","ratio","ratio","C","C","C","C",
+		null,null,"V","%","ratio","%","C","%",
+		"%","%","%","%","%","min","min",null,
+		"g/s",null,"%","kPa",null,"%","%","%",
+		"%","kPa","%","%","C","deg","L/h",null,
+		null,"%","%","Nm","%",null,null,null,
+		null,null,null,null,null,null,null,null,
+		null,null,null,null,null,null,null,null,
+		null,null,null,null,null,null,null,null,
+		null,null,null,null,"C",null,null,null,
+		null,null,null,null,null,"%","%",null,
+		null,null,null,null,null,null,null,null,
+		null,null,"g/s","kg/h",null,null,null,"mg/stroke",
+		null,null,null,"km",null,null,null,null,
+	};
+
+	static final String[][] NAMES = {
+		{"PIDs supported 01-20"},
+		{"Monitor status since DTCs cleared"},
+		{"Freeze DTC"},
+		{"Fuel system status"},
+		{"Calculated Engine Load", "Load"},
+		{"Engine Coolant Temperature", "Coolant Temp"},
+		{"Short Term Fuel Trim Bank 1", "STFT1"},
+		{"Long Term Fuel Trim Bank 1", "LTFT1"},
+		{"Short Term Fuel Trim Bank 2", "STFT2"},
+		{"Long Term Fuel Trim Bank 2", "LTFT2"},
+		{"Fuel Pressure"},
+		{"Intake Manifold Absolute Pressure", "MAP"},
+		{"Engine RPM", "RPM"},
+		{"Vehicle Speed Sensor", "Speed"},
+		{"Timing Advance"},
+		{"Intake Air Temperature", "IAT"},
+		{"Mass Air Flow Rate", "MAF"},
+		{"Absolute Throttle Position", "Throttle"},
+		{"Commanded Secondary Air Status"},
+		{"Oxygen Sensors Present 2 Banks"},
+		{"O2 Sensor 1 Voltage"},
+		{"O2 Sensor 2 Voltage"},
+		{"O2 Sensor 3 Voltage"},
+		{"O2 Sensor 4 Voltage"},
+		{"O2 Sensor 5 Voltage"},
+		{"O2 Sensor 6 Voltage"},
+		{"O2 Sensor 7 Voltage"},
+		{"O2 Sensor 8 Voltage"},
+		{"OBD Standards"},
+		{"Oxygen Sensors Present 4 Banks"},
+		{"Auxiliary Input Status"},
+		{"Run Time Since Engine Start", "Run Time"},
+		{"PIDs supported 21-40"},
+		{"Distance Traveled With MIL On"},
+		{"Fuel Rail Pressure"},
+		{"Fuel Rail Gauge Pressure"},
+		{"O2 Sensor 1 Equivalence Ratio"},
+		{"O2 Sensor 2 Equivalence Ratio"},
+		{"O2 Sensor 3 Equivalence Ratio"},
+		{"O2 Sensor 4 Equivalence Ratio"},
+		{"O2 Sensor 5 Equivalence Ratio"},
+		{"O2 Sensor 6 Equivalence Ratio"},
+		{"O2 Sensor 7 Equivalence Ratio"},
+		{"O2 Sensor 8 Equivalence Ratio"},
+		{"Commanded EGR"},
+		{"EGR Error"},
+		{"Commanded Evaporative Purge"},
+		{"Fuel Tank Level Input", "Fuel Level"},
+		{"Warm-ups Since Codes Cleared"},
+		{"Distance Traveled Since Codes Cleared"},
+		{"Evap System Vapor Pressure"},
+		{"Absolute Barometric Pressure", "Baro"},
+		{"O2 Sensor 1 Equivalence Ratio Current"},
+		{"O2 Sensor 2 Equivalence Ratio Current"},
+		{"O2 Sensor 3 Equivalence Ratio Current"},
+		{"O2 Sensor 4 Equivalence Ratio Current"},
+		{"O2 Sensor 5 Equivalence Ratio Current"},
+		{"O2 Sensor 6 Equivalence Ratio Current"},
+		{"O2 Sensor 7 Equivalence Ratio Current"},
+		{"O2 Sensor 8 Equivalence Ratio Current"},
+		{"Catalyst Temperature Bank 1 Sensor 1"},
+		{"Catalyst Temperature Bank 2 Sensor 1"},
+		{"Catalyst Temperature Bank 1 Sensor 2"},
+		{"Catalyst Temperature Bank 2 Sensor 2"},
+		{"PIDs supported 41-60"},
+		{"Monitor status this drive cycle"},
+		{"Control Module Voltage", "Voltage"},
+		{"Absolute Load Value"},
+		{"Commanded Equivalence Ratio"},
+		{"Relative Throttle Position"},
+		{"Ambient Air Temperature", "Ambient Temp"},
+		{"Absolute Throttle Position B"},
+		{"Absolute Throttle Position C"},
+		{"Accelerator Pedal Position D"},
+		{"Accelerator Pedal Position E"},
+		{"Accelerator Pedal Position F"},
+		{"Commanded Throttle Actuator"},
+		{"Time Run With MIL On"},
+		{"Time Since Trouble Codes Cleared"},
+		{"Maximum Equivalence Ratio O2 Voltage O2 Current MAP"},
+		{"Maximum Mass Air Flow Rate"},
+		{"Fuel Type"},
+		{"Ethanol Fuel Percent"},
+		{"Absolute Evap System Vapor Pressure"},
+		{"Evap System Vapor Pressure Wide"},
+		{"Short Term Secondary O2 Trim Bank 1 3"},
+		{"Long Term Secondary O2 Trim Bank 1 3"},
+		{"Short Term Secondary O2 Trim Bank 2 4"},
+		{"Long Term Secondary O2 Trim Bank 2 4"},
+		{"Fuel Rail Absolute Pressure"},
+		{"Relative Accelerator Pedal Position"},
+		{"Hybrid Battery Pack Remaining Life"},
+		{"Engine Oil Temperature", "Oil Temp"},
+		{"Fuel Injection Timing"},
+		{"Engine Fuel Rate", "Fuel Rate"},
+		{"Emission Requirements"},
+		{"PIDs supported 61-80"},
+		{"Driver Demand Engine Torque"},
+		{"Actual Engine Torque"},
+		{"Engine Reference Torque"},
+		{"Engine Percent Torque Data"},
+		{"Auxiliary Input Output Supported"},
+		{"Mass Air Flow Sensor"},
+		{"Engine Coolant Temperature Sensors"},
+		{"Intake Air Temperature Sensors"},
+		{"Commanded EGR And EGR Error"},
+		{"Commanded Diesel Intake Air Flow"},
+		{"EGR Temperature"},
+		{"Commanded Throttle Actuator Control"},
+		{"Fuel Pressure Control System"},
+		{"Injection Pressure Control System"},
+		{"Turbocharger Compressor Inlet Pressure"},
+		{"Boost Pressure Control"},
+		{"Variable Geometry Turbo Control"},
+		{"Wastegate Control"},
+		{"Exhaust Pressure"},
+		{"Turbocharger RPM"},
+		{"Turbocharger A Temperature"},
+		{"Turbocharger B Temperature"},
+		{"Charge Air Cooler Temperature"},
+		{"Exhaust Gas Temperature Bank 1"},
+		{"Exhaust Gas Temperature Bank 2"},
+		{"Diesel Particulate Filter Bank 1"},
+		{"Diesel Particulate Filter Bank 2"},
+		{"Diesel Particulate Filter Temperature"},
+		{"NOx NTE Control Area Status"},
+		{"PM NTE Control Area Status"},
+		{"Engine Run Time"},
+		{"PIDs supported 81-A0"},
+		{"Engine Run Time For AECD 1-5"},
+		{"Engine Run Time For AECD 6-10"},
+		{"NOx Sensor"},
+		{"Manifold Surface Temperature"},
+		{"NOx Reagent System"},
+		{"Particulate Matter Sensor"},
+		{"Intake Manifold Absolute Pressure Sensors"},
+		{"SCR Inducement System"},
+		{"Engine Run Time For AECD 11-15"},
+		{"Engine Run Time For AECD 16-20"},
+		{"Diesel Aftertreatment"},
+		{"O2 Sensor Wide Range"},
+		{"Throttle Position G"},
+		{"Engine Friction Torque"},
+		{"Particulate Matter Sensor Bank 1 2"},
+		{"WWH-OBD System Information"},
+		{"WWH-OBD System Information 2"},
+		{"Fuel System Control"},
+		{"WWH-OBD Counters Support"},
+		{"NOx Warning And Inducement System"},
+		{"Exhaust Gas Temperature Sensor Bank 1"},
+		{"Exhaust Gas Temperature Sensor Bank 2"},
+		{"Hybrid EV System Data"},
+		{"Diesel Exhaust Fluid Sensor Data"},
+		{"O2 Sensor Data"},
+		{"Engine Fuel Rate Mass"},
+		{"Engine Exhaust Flow Rate"},
+		{"Fuel System Percentage Use"},
+		{"PIDs supported A1-C0"},
+		{"NOx Sensor Corrected Data"},
+		{"Cylinder Fuel Rate"},
+		{"Evap System Vapor Pressure Sensors"},
+		{"Transmission Actual Gear"},
+		{"Commanded Diesel Exhaust Fluid Dosing"},
+		{"Odometer"},
+		{"NOx Sensor Concentration Sensors 3 4"},
+		{"NOx Sensor Corrected Concentration Sensors 3 4"},
+		{"ABS Disable Switch State"},
+		{"PIDs supported C1-E0"},
+	};
+}
@@ -0,0 +1,93 @@
+package com.dgis.JOuST;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import com.dgis.util.Logger;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * One logged message, with its level, time and the adapter that logged it
+ * kept apart from the text, so sinks can filter or format them as they
+ * see fit.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class LogRecord {
+	private static final String[] LEVEL_NAMES = {"ERROR", "WARNING", "INFO", "VERBOSE", "SUPERFINE"};
+
+	private final String source;
+	private final int level;
+	private final long timeMillis;
+	private final String message;
+
+	/**
+	 * @param source name of the adapter, or null.
+	 * @param level one of the Logger.LEVEL_ constants.
+	 */
+	public LogRecord(String source, int level, long timeMillis, String message) {
+		this.source = source;
+		this.level = level;
+		this.timeMillis = timeMillis;
+		this.message = message;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return the level's name, e.g. "VERBOSE".
+	 */
+	public static String levelName(int level) {
+		if(level < Logger.LEVEL_ERROR || level >= LEVEL_NAMES.length) return Integer.toString(level);
+		return LEVEL_NAMES[level];
+	}
+
+	/**
+	 * Appends "time LEVEL source: message" to sb. fmt is not thread-safe,
+	 * so each caller passes its own.
+	 */
+	void appendTo(StringBuilder sb, SimpleDateFormat fmt) {
+		sb.append(fmt.format(new Date(timeMillis))).append(' ').append(levelName(level)).append(' ');
+		if(source != null) sb.append(source).append(": ");
+		sb.append(message);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		appendTo(sb, new SimpleDateFormat("HH:mm:ss.SSS"));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,53 @@
+package com.dgis.JOuST;
+
+import com.dgis.util.Logger;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Where an OBDLog sends the messages that pass its level.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public interface LogSink {
+	/**
+	 * Hands each record to the shared Logger, on the caller's thread.
+	 * Subject to the Logger's own level as well. The default.
+	 */
+	public static final LogSink LOGGER = new LogSink(){
+		@Override
+		public void publish(LogRecord r) {
+			String msg = r.getSource() == null ? r.getMessage() : r.getSource()+": "+r.getMessage();
+			Logger l = Logger.getInstance();
+			switch(r.getLevel()) {
+			case Logger.LEVEL_ERROR: l.logError(msg); break;
+			case Logger.LEVEL_WARNING: l.logWarning(msg); break;
+			case Logger.LEVEL_INFO: l.logInfo(msg); break;
+			case Logger.LEVEL_VERBOSE: l.logVerbose(msg); break;
+			default: l.logSuperfine(msg); break;
+			}
+		}
+	};
+
+	/**
+	 * Called on the thread that logged. Must not block for long.
+	 */
+	void publish(LogRecord r);
+}
@@ -0,0 +1,81 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * One on-board monitoring test result from mode 06, as reported on CAN:
+ * the test, its unit and scaling id, and the raw value and limits.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class MonitorTestResult {
+	private final int monitorId;
+	private final int testId;
+	private final int unitAndScalingId;
+	private final int value;
+	private final int min;
+	private final int max;
+
+	public MonitorTestResult(int monitorId, int testId, int unitAndScalingId, int value, int min, int max) {
+		this.monitorId = monitorId;
+		this.testId = testId;
+		this.unitAndScalingId = unitAndScalingId;
+		this.value = value;
+		this.min = min;
+		this.max = max;
+	}
+
+	public int getMonitorId() {
+		return monitorId;
+	}
+
+	public int getTestId() {
+		return testId;
+	}
+
+	public int getUnitAndScalingId() {
+		return unitAndScalingId;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	public int getMin() {
+		return min;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * @return true if the value is within the limits.
+	 */
+	public boolean passed() {
+		return value >= min && value <= max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MID %02X TID %02X: %d [%d, %d] %s", monitorId, testId, value, min, max,
+				passed() ? "pass" : "FAIL");
+	}
+}
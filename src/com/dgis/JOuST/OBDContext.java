@@ -0,0 +1,125 @@
+package com.dgis.JOuST;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Everything one adapter is configured with: its PID catalog, log,
+ * metrics and timing. Give each ElmSerial its own context and nothing is
+ * shared between adapters in the same process, so each can talk to a
+ * different vehicle with a different catalog on its own thread.
+ *
+ * A context made without a catalog follows PIDCatalog.getDefault(),
+ * including when that is replaced.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class OBDContext {
+	//Null to follow the default catalog.
+	private volatile PIDCatalog catalog;
+	private volatile TimingProfile timing = TimingProfile.DEFAULT;
+	private final OBDLog log;
+	private final OBDMetrics metrics = new OBDMetrics();
+
+	private final List<PIDCatalogListener> catalogListeners = new CopyOnWriteArrayList<PIDCatalogListener>();
+	//Registered with PIDCatalog while following the default and listened to.
+	private final PIDCatalogListener defaultListener = new PIDCatalogListener() {
+		@Override
+		public void catalogChanged(PIDCatalog old, PIDCatalog now) {
+			if(catalog == null) fireCatalogChanged(old, now);
+		}
+	};
+
+	/**
+	 * A context following the default catalog, with an untagged log.
+	 */
+	public OBDContext() {
+		this(null, null);
+	}
+
+	/**
+	 * @param name tag for the adapter's log messages, or null.
+	 * @param catalog the catalog to use, or null to follow the default.
+	 */
+	public OBDContext(String name, PIDCatalog catalog) {
+		this.log = new OBDLog(name);
+		this.catalog = catalog;
+	}
+
+	/**
+	 * @return the catalog to look PIDs up in. Call for every lookup
+	 * rather than keep it, as it may be replaced.
+	 */
+	public PIDCatalog getCatalog() {
+		PIDCatalog c = catalog;
+		return c != null ? c : PIDCatalog.getDefault();
+	}
+
+	/**
+	 * Replaces this context's catalog and tells its catalog listeners.
+	 * @param c the new catalog, or null to follow the default again.
+	 */
+	public void setCatalog(PIDCatalog c) {
+		PIDCatalog old = getCatalog();
+		catalog = c;
+		PIDCatalog now = getCatalog();
+		if(old != now) fireCatalogChanged(old, now);
+	}
+
+	/**
+	 * Listens for changes to what getCatalog() returns.
+	 */
+	public synchronized void addCatalogListener(PIDCatalogListener list) {
+		if(catalogListeners.isEmpty()) PIDCatalog.addChangeListener(defaultListener);
+		catalogListeners.add(list);
+	}
+
+	public synchronized void removeCatalogListener(PIDCatalogListener list) {
+		catalogListeners.remove(list);
+		if(catalogListeners.isEmpty()) PIDCatalog.removeChangeListener(defaultListener);
+	}
+
+	private void fireCatalogChanged(PIDCatalog old, PIDCatalog now) {
+		for(PIDCatalogListener list : catalogListeners)
+			list.catalogChanged(old, now);
+	}
+
+	public TimingProfile getTiming() {
+		return timing;
+	}
+
+	/**
+	 * Takes effect from the next request.
+	 */
+	public void setTiming(TimingProfile timing) {
+		if(timing == null) throw new IllegalArgumentException("timing must not be null.");
+		this.timing = timing;
+	}
+
+	public OBDLog getLog() {
+		return log;
+	}
+
+	public OBDMetrics getMetrics() {
+		return metrics;
+	}
+}
@@ -0,0 +1,84 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Why a request failed, as handed to PIDResultListener.error(). toString()
+ * gives a message fit for the user.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public enum OBDError {
+	NO_DATA("No data: the vehicle does not support this request, or did not answer it."),
+	BUS_BUSY("OBD Bus Busy. Try again."),
+	BUS_ERROR("Bus Error: OBDII bus is shorted to Vbatt or Ground."),
+	BUS_INIT_ERROR("OBD Bus Init Error. Check connection to the vehicle, make sure the vehicle is OBD-II compliant, and ignition is ON."),
+	UNABLE_TO_CONNECT("Unable to connect to OBD bus. Check connection to the vehicle. Make sure the vehicle is OBD-II compliant, and ignition is ON."),
+	CAN_ERROR("CAN Error. Check connection to the vehicle. Make sure the vehicle is OBD-II compliant, and ignition is ON."),
+	DATA_ERROR("Data Error: there has been a loss of data. You may have a bad connection to the vehicle, check the cable and try again."),
+	BUFFER_FULL("Hardware data buffer overflow."),
+	SERIAL_ERROR("Serial Link Error: please check connection between computer and scan tool."),
+	/** The interface answered, but nothing in the answer was for this request. */
+	INVALID_ANSWER("Got no valid answer from the interface."),
+	/** TimeoutKind.FIRST_BYTE */
+	NO_ANSWER("Got no answer from the interface in time."),
+	/** TimeoutKind.INTER_BYTE */
+	ANSWER_STALLED("The interface stopped answering part way."),
+	/** TimeoutKind.TOTAL */
+	ANSWER_TOO_SLOW("The interface did not finish answering in time."),
+	IO_ERROR("I/O error talking to the interface."),
+	UNKNOWN_PID("The PID catalog has no entry for this PID."),
+	/** A one-shot request expired before it could be sent. */
+	DEADLINE_PASSED("The deadline passed before the request could be sent.");
+
+	private final String message;
+
+	private OBDError(String message) {
+		this.message = message;
+	}
+
+	/**
+	 * @return true if the interface did not answer in time.
+	 */
+	public boolean isTimeout() {
+		return this == NO_ANSWER || this == ANSWER_STALLED || this == ANSWER_TOO_SLOW;
+	}
+
+	/**
+	 * @return true if the interface reported that it cannot reach the
+	 * vehicle, as counted by OBDMetrics.linkError().
+	 */
+	public boolean isLinkError() {
+		return this == UNABLE_TO_CONNECT || this == BUS_ERROR || this == BUS_INIT_ERROR || this == CAN_ERROR;
+	}
+
+	public static OBDError forTimeout(TimeoutKind kind) {
+		switch(kind) {
+		case FIRST_BYTE: return NO_ANSWER;
+		case INTER_BYTE: return ANSWER_STALLED;
+		default: return ANSWER_TOO_SLOW;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return message;
+	}
+}
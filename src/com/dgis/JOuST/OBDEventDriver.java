@@ -1,12 +1,16 @@
 package com.dgis.JOuST;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.dgis.JOuST.serial.ObdSerial;
+import com.dgis.util.Logger;
 
 /*
  * Copyright (C) 2009 Giacomo Ferrari
@@ -30,97 +34,735 @@ import com.dgis.JOuST.serial.ObdSerial;
  * hardware and library users. It provides an event interface over top of
  * an ObdSerial interface.
  *
+ * Each pid is requested once per cycle no matter how many listeners want
+ * it, at the highest rate any of them asks for. The response is fanned out
+ * to every listener, skipping samples for listeners that asked for a
+ * lower rate.
+ *
+ * One-shot requests go in a separate lane that is drained before any
+ * repeating pid is considered, so they wait for at most the request that
+ * is already on the wire.
+ *
+ * Trouble code checks run in the background at a low rate, taking at most
+ * one request in every DTC_INTERLEAVE while pids are due, and listeners
+ * only hear about them when the codes change.
+ *
+ * A repeating pid that fails BREAKER_FAILURES times in a row, e.g. one the
+ * vehicle answers with NO DATA or not at all, is suspended: it is only
+ * probed, at an interval that doubles from BREAKER_PROBE_MILLIS up to
+ * BREAKER_MAX_PROBE_MILLIS while it keeps failing, so it cannot eat the
+ * time of the pids that work. PIDHealthListeners hear about it.
+ *
+ * An I/O error fails the request in flight and pauses polling for
+ * IO_ERROR_PAUSE_MILLIS. To reconnect automatically, hand the driver a
+ * ConnectionSupervisor wrapping the device.
+ *
+ * A pid is polled for as long as at least one listener or subscription
+ * wants it. When the last one goes it is dropped at once, and since the
+ * pids share the bus round-robin, the time it took goes straight to the
+ * rest. Only the request already on the wire, if any, still completes.
+ *
+ * By default the bus is shared evenly between the pids that are due.
+ * With an AdaptiveSchedule set, each pid is instead polled at a rate
+ * within its range that follows how fast its value is moving.
+ *
+ * Subscriptions may be given a DeliveryPolicy, so that e.g. a listener
+ * only hears about a pid when its value changes. The policy is applied
+ * here, on the raw value, before any listener is called.
+ *
+ * Listeners scheduled by name follow the name if the context's catalog
+ * is replaced and gives it to another pid; polling carries on through the change.
+ *
+ * Long-running sessions: once the repeating pids are scheduled, polling
+ * them allocates nothing, so the heap stays flat for as long as the
+ * vehicle is on. Queue items, listener entries and the device callback
+ * are made when a pid is scheduled and reused for every request. This
+ * holds with an ElmSerial (see its notes), while the pids answer, and as
+ * long as the listeners allocate nothing themselves. One-shot requests,
+ * trouble code changes, failures and catalog changes allocate, but
+ * nothing is kept once they are done.
+ *
  * Copyright (C) 2009 Giacomo Ferrari
  * @author Giacomo Ferrari
  */
 public class OBDEventDriver implements IOBDEventDriver {
+	/**
+	 * While repeating pids are due, a trouble code check may take at most
+	 * one request in this many.
+	 */
+	public static final int DTC_INTERLEAVE = 20;
+
+	/**
+	 * Default circuit breaker policy, see setBreakerPolicy().
+	 */
+	public static final int BREAKER_FAILURES = 3;
+	public static final long BREAKER_PROBE_MILLIS = 5000;
+	public static final long BREAKER_MAX_PROBE_MILLIS = 300000;
+
+	/**
+	 * Polling pauses this long after the device throws an IOException.
+	 */
+	public static final long IO_ERROR_PAUSE_MILLIS = 1000;
+
+
 	private ObdSerial device;
+	private final OBDContext context;
+	private final OBDLog logger;
 	
 	private Thread requester;
 	
-	//TODO: Add locks around this everywhere.
-	private Queue<PIDQueueItem> processingQueue = new LinkedList<PIDQueueItem>();
+	//All pids with at least one listener. Guarded by this.
+	private final List<PIDQueueItem> items = new ArrayList<PIDQueueItem>();
+	//Round-robin position in items.
+	private int cursor = 0;
+	//When each pid was last requested, kept once its item is dropped so a
+	//pid scheduled again, e.g. by a PIDPublisher resuming, is not polled
+	//sooner than its rate allows. Long.MIN_VALUE if never. Guarded by this.
+	private final long[] retiredRequestNanos = new long[0x100];
+	//One-shot requests, serviced before anything in items. Guarded by this.
+	private final ArrayDeque<PIDRequestFuture> onceLane = new ArrayDeque<PIDRequestFuture>();
+	private final ArrayDeque<OBDRequestFuture<?>> requestLane = new ArrayDeque<OBDRequestFuture<?>>();
+	//Background trouble code checks, one per mode. Guarded by this.
+	private final List<DTCPollItem> dtcPolls = new ArrayList<DTCPollItem>();
+	//Pid requests since the last trouble code check. Guarded by this.
+	private int sinceDTCCheck = 0;
+	//The pid whose request is in flight, and its entry in items if any,
+	//or the trouble code check or other request in flight. Only touched by
+	//the requester thread.
+	private int currentPid;
+	private PIDQueueItem current = null;
+	private DTCPollItem currentDTC = null;
+	private OBDRequestFuture<?> currentRequest = null;
 
 	private volatile boolean shutdownFlag = false;
 	
 	private volatile Runnable onStop = null;
+
+	//Circuit breaker policy. Guarded by this.
+	private int breakerFailures = BREAKER_FAILURES;
+	private long breakerProbeNanos = BREAKER_PROBE_MILLIS * 1000000L;
+	private long breakerMaxProbeNanos = BREAKER_MAX_PROBE_MILLIS * 1000000L;
+	private final List<PIDHealthListener> healthListeners = new CopyOnWriteArrayList<PIDHealthListener>();
+
+	//Adaptive polling rates, null to share the bus evenly. Guarded by this.
+	private AdaptiveSchedule schedule = null;
+	private long lastRebalanceNanos;
+	//Smoothed time a pid request takes, 0 until one has completed. Only
+	//touched by the requester thread.
+	private double requestNanos = 0;
+
+	//Who to tell about the request that just finished, picked out with the
+	//lock held and told after it is released, so listeners may take their
+	//own locks and call back into the driver. Only touched by the
+	//requester thread, and reused so requests allocate nothing.
+	private PIDListenerQueueItem[] deliverTo = new PIDListenerQueueItem[8];
+	private int deliverCount = 0;
+	private final ArrayList<PIDRequestFuture> answered = new ArrayList<PIDRequestFuture>();
+	private final ArrayList<RequestFuture<?>> expired = new ArrayList<RequestFuture<?>>();
+	private boolean recovered = false;
+	//Failures and wait before the first probe if the pid was just
+	//suspended, else -1.
+	private int suspendedFailures = -1;
+	private long suspendedRetryMillis;
+
+	private final PIDCatalogListener catalogListener = new PIDCatalogListener() {
+		@Override
+		public void catalogChanged(PIDCatalog old, PIDCatalog now) {
+			rebind(now);
+		}
+	};
+	
+	//Handed to the device with every request, so requests allocate no callbacks.
+	private final PIDResultListener dispatcher = new PIDResultListener() {
+		@Override
+		public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+			synchronized(OBDEventDriver.this) {
+				takeAnswered();
+				if(current != null) {
+					recovered = current.succeeded();
+					if(schedule != null) current.observe(numBytes, data, time.getSampleNanos());
+					reserve(current.size());
+					deliverCount = current.accept(numBytes, data, time.getSampleNanos(), deliverTo);
+					retire(current);
+				}
+			}
+			if(!answered.isEmpty()) {
+				PIDCatalog catalog = context.getCatalog();
+				for(int x=0; x<answered.size(); x++)
+					answered.get(x).complete(numBytes, data, time, catalog);
+				answered.clear();
+			}
+			if(recovered) {
+				recovered = false;
+				for(PIDHealthListener list : healthListeners)
+					list.pidRecovered(pid);
+			}
+			for(int x=0; x<deliverCount; x++) {
+				PIDListenerQueueItem lqi = deliverTo[x];
+				deliverTo[x] = null;
+				if(!lqi.closed) lqi.listener.dataReceived(pid, numBytes, data, time);
+			}
+			deliverCount = 0;
+		}
+
+		@Override
+		public void error(OBDError error, int pid) {
+			synchronized(OBDEventDriver.this) {
+				takeAnswered();
+				if(current != null) {
+					collectListeners(current);
+					failed(current, error);
+					retire(current);
+				}
+			}
+			tellFailed(error, pid, false);
+		}
+	};
+
+	/**
+	 * Moves the pending one-shot requests for currentPid into answered.
+	 * Must hold the lock.
+	 */
+	private void takeAnswered() {
+		for(PIDRequestFuture f = takeOnce(currentPid); f != null; f = takeOnce(currentPid))
+			answered.add(f);
+	}
+
+	/**
+	 * Makes room in deliverTo for n listeners.
+	 */
+	private void reserve(int n) {
+		if(deliverTo.length < n) deliverTo = new PIDListenerQueueItem[Math.max(n, deliverTo.length * 2)];
+	}
+
+	/**
+	 * Picks out every listener of qi to be told about an error. Must hold
+	 * the lock.
+	 */
+	private void collectListeners(PIDQueueItem qi) {
+		reserve(qi.size());
+		for(int x=0; x<qi.size(); x++)
+			deliverTo[x] = qi.get(x);
+		deliverCount = qi.size();
+	}
+
+	/**
+	 * Tells what error() or a failed lookup picked out. Must not hold the
+	 * lock.
+	 * @param dropped true if the failure itself closed the listeners, which
+	 * are then told anyway.
+	 */
+	private void tellFailed(OBDError error, int pid, boolean dropped) {
+		for(int x=0; x<answered.size(); x++)
+			answered.get(x).fail(error);
+		answered.clear();
+		for(int x=0; x<deliverCount; x++) {
+			PIDListenerQueueItem lqi = deliverTo[x];
+			deliverTo[x] = null;
+			if(dropped || !lqi.closed) lqi.listener.error(error, pid);
+		}
+		deliverCount = 0;
+		if(suspendedFailures >= 0) {
+			int failures = suspendedFailures;
+			suspendedFailures = -1;
+			for(PIDHealthListener list : healthListeners)
+				list.pidSuspended(pid, failures, error, suspendedRetryMillis);
+		}
+	}
+
+	/**
+	 * Fails the requests next() found past their deadline. Must not hold
+	 * the lock.
+	 */
+	private void tellExpired() {
+		for(int x=0; x<expired.size(); x++)
+			expired.get(x).expire();
+		expired.clear();
+	}
 	
 	/**
 	 * Initialize this ObdInterfaceDriver. 
 	 * @param device ObdSerial instance to use. Should be ready to accept requestPid()'s.
 	 */
 	public OBDEventDriver(ObdSerial device) {
+		this(device, device.getContext());
+	}
+
+	/**
+	 * Initialize this ObdInterfaceDriver with its own context, e.g. to
+	 * look names up in a different catalog than the device.
+	 * @param device ObdSerial instance to use. Should be ready to accept requestPid()'s.
+	 * @param context catalog, log and metrics for this driver.
+	 */
+	public OBDEventDriver(ObdSerial device, OBDContext context) {
 		if(!device.isOpen()) throw new IllegalArgumentException("ObdSerial device passed to ObdInterfaceDriver is not open!");
 		this.device = device;
+		this.context = context;
+		this.logger = context.getLog();
+		Arrays.fill(retiredRequestNanos, Long.MIN_VALUE);
+		context.addCatalogListener(catalogListener);
 		spawnRequesterThread();
 	}
 	
-	private boolean schedule(PIDResultListener list, int pid, boolean persistent) {
-		//try to find the pid already in the list.
-		for(PIDQueueItem qi : processingQueue){
-			if(qi.pid == pid){
-				PIDListenerQueueItem lqi = new PIDListenerQueueItem(list, persistent);
-				qi.listeners.add(lqi);
+	/**
+	 * @param name the name pid was looked up by, or null.
+	 */
+	private synchronized PIDListenerQueueItem schedule(PIDResultListener list, int pid, double maxRate, String name, DeliveryPolicy policy) {
+		if(maxRate < 0) throw new IllegalArgumentException("maxRate must not be negative.");
+		if(policy == null) throw new NullPointerException("policy");
+		long interval = maxRate == 0 ? 0 : (long)(1e9 / maxRate);
+		PIDListenerQueueItem lqi = new PIDListenerQueueItem(this, list, interval, name, policy);
+		add(pid, lqi);
+		notifyAll();
+		return lqi;
+	}
+
+	/**
+	 * Must hold the lock.
+	 */
+	private void add(int pid, PIDListenerQueueItem lqi) {
+		PIDQueueItem qi = find(pid);
+		if(qi == null) {
+			qi = new PIDQueueItem(pid);
+			if((pid & ~0xFF) == 0 && retiredRequestNanos[pid] != Long.MIN_VALUE)
+				qi.requested(retiredRequestNanos[pid]);
+			items.add(qi);
+		}
+		lqi.pid = pid;
+		qi.add(lqi);
+	}
+
+	/**
+	 * Removes lqi and closes it, and drops its item if that was the last
+	 * listener. Must hold the lock.
+	 */
+	private void drop(PIDQueueItem qi, PIDListenerQueueItem lqi) {
+		qi.remove(lqi);
+		lqi.closed = true;
+		retire(qi);
+	}
+
+	/**
+	 * Called by PIDListenerQueueItem.close().
+	 */
+	synchronized void unsubscribe(PIDListenerQueueItem lqi) {
+		if(lqi.closed) return;
+		PIDQueueItem qi = find(lqi.pid);
+		if(qi != null) drop(qi, lqi);
+		lqi.closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Moves listeners scheduled by name to the pid that name has in catalog.
+	 */
+	private synchronized void rebind(PIDCatalog catalog) {
+		List<PIDListenerQueueItem> moved = new ArrayList<PIDListenerQueueItem>();
+		List<Integer> to = new ArrayList<Integer>();
+		for(int x=0; x<items.size(); x++) {
+			PIDQueueItem qi = items.get(x);
+			for(int y=0; y<qi.size(); y++) {
+				PIDListenerQueueItem lqi = qi.get(y);
+				if(lqi.name == null) continue;
+				int pid = catalog.getPid(lqi.name);
+				if(pid < 0) {
+					logger.logWarning("\""+lqi.name+"\" is no longer in the PID catalog, still polling PID "+qi.pid+".");
+				} else if(pid != qi.pid) {
+					qi.remove(lqi);
+					y--;
+					moved.add(lqi);
+					to.add(pid);
+				}
+			}
+		}
+		for(int x=0; x<items.size(); x++) {
+			if(items.get(x).isEmpty() && items.get(x) != current) {
+				retire(items.get(x));
+				x--;
+			}
+		}
+		for(int x=0; x<moved.size(); x++)
+			add(to.get(x), moved.get(x));
+		notifyAll();
+	}
+
+	/**
+	 * Counts a failure of qi, suspending it or backing its probes off.
+	 * Health listeners are only told when qi is suspended, not about each
+	 * failed probe after that, and are left for tellFailed() to tell.
+	 * Must hold the lock.
+	 */
+	private void failed(PIDQueueItem qi, OBDError error) {
+		boolean wasSuspended = qi.suspended;
+		long retry = qi.failed(System.nanoTime(), breakerFailures, breakerProbeNanos, breakerMaxProbeNanos);
+		if(retry < 0) return;
+		if(wasSuspended) {
+			if(logger.isLoggable(Logger.LEVEL_VERBOSE))
+				logger.logVerbose(String.format("Probe of PID %02X failed, next in %d ms: %s", qi.pid, retry / 1000000L, error));
+			return;
+		}
+		logger.logWarning(String.format("Suspending PID %02X after %d failures: %s", qi.pid, qi.failures, error));
+		suspendedFailures = qi.failures;
+		suspendedRetryMillis = retry / 1000000L;
+	}
+
+	/**
+	 * Sets when repeating pids are suspended and how often they are then
+	 * probed. Applies from the next failure.
+	 * @param failures failures in a row before a pid is suspended.
+	 * @param probeMillis first wait before probing a suspended pid.
+	 * @param maxProbeMillis the wait doubles up to this while probes fail.
+	 */
+	public synchronized void setBreakerPolicy(int failures, long probeMillis, long maxProbeMillis) {
+		if(failures < 1 || probeMillis <= 0 || maxProbeMillis < probeMillis)
+			throw new IllegalArgumentException("Invalid circuit breaker policy.");
+		breakerFailures = failures;
+		breakerProbeNanos = probeMillis * 1000000L;
+		breakerMaxProbeNanos = maxProbeMillis * 1000000L;
+	}
+
+	@Override
+	public void addHealthListener(PIDHealthListener list) {
+		healthListeners.add(list);
+	}
+
+	@Override
+	public void removeHealthListener(PIDHealthListener list) {
+		healthListeners.remove(list);
+	}
+
+	/**
+	 * Polls each repeating pid at a rate that follows how fast its value
+	 * changes, within the schedule's range for it.
+	 * @param schedule the ranges, or null to share the bus evenly again.
+	 */
+	public synchronized void setAdaptiveSchedule(AdaptiveSchedule schedule) {
+		this.schedule = schedule;
+		for(int x=0; x<items.size(); x++)
+			items.get(x).scheduleIntervalNanos = 0;
+		//Rebalance on the next pass.
+		lastRebalanceNanos = System.nanoTime() - AdaptiveSchedule.REBALANCE_MILLIS * 1000000L;
+		notifyAll();
+	}
+
+	public synchronized AdaptiveSchedule getAdaptiveSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * Gives each pid the schedule's minimum rate for it, and shares what
+	 * the bus has left by the pids' rates of change. Allocates nothing.
+	 * Must hold the lock.
+	 */
+	private void rebalance(long now) {
+		if(schedule == null || requestNanos == 0) return;
+		if(now - lastRebalanceNanos < AdaptiveSchedule.REBALANCE_MILLIS * 1000000L) return;
+		lastRebalanceNanos = now;
+		double spare = 1e9 / requestNanos;
+		double activity = 0;
+		int polled = 0;
+		for(int x=0; x<items.size(); x++) {
+			PIDQueueItem qi = items.get(x);
+			if(qi.suspended || qi.isEmpty()) continue;
+			spare -= schedule.getMinRate(qi.pid);
+			activity += qi.activity;
+			polled++;
+		}
+		if(spare < 0) spare = 0;
+		for(int x=0; x<items.size(); x++) {
+			PIDQueueItem qi = items.get(x);
+			if(qi.suspended || qi.isEmpty()) continue;
+			double share = activity > 0 ? qi.activity / activity : 1.0 / polled;
+			double rate = Math.min(schedule.getMinRate(qi.pid) + spare * share, schedule.getMaxRate(qi.pid));
+			qi.scheduleIntervalNanos = (long)(1e9 / rate);
+		}
+	}
+
+	/**
+	 * @return the repeating pids currently suspended.
+	 */
+	public synchronized List<Integer> getSuspendedPids() {
+		List<Integer> l = new ArrayList<Integer>();
+		for(int x=0; x<items.size(); x++)
+			if(items.get(x).suspended) l.add(items.get(x).pid);
+		return l;
+	}
+
+	private synchronized PIDRequestFuture enqueueOnce(PIDResultListener list, int pid, long timeoutMillis) {
+		PIDRequestFuture f = new PIDRequestFuture(list, pid, deadline(timeoutMillis));
+		onceLane.add(f);
+		notifyAll();
+		return f;
+	}
+
+	private synchronized <T> OBDRequestFuture<T> enqueueRequest(OBDRequest<T> req, OBDResponseListener<T> list, long timeoutMillis) {
+		OBDRequestFuture<T> f = new OBDRequestFuture<T>(req, list, deadline(timeoutMillis));
+		requestLane.add(f);
+		notifyAll();
+		return f;
+	}
+
+	/**
+	 * @return the System.nanoTime() timeoutMillis from now, or 0 for no deadline.
+	 */
+	private static long deadline(long timeoutMillis) {
+		if(timeoutMillis < 0) throw new IllegalArgumentException("timeoutMillis must not be negative.");
+		if(timeoutMillis == 0) return 0;
+		long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+		return deadline == 0 ? 1 : deadline;
+	}
+
+	/**
+	 * @return the oldest live arbitrary request, or null. Moves any whose
+	 * deadline has passed to expired. Must hold the lock.
+	 */
+	private OBDRequestFuture<?> nextRequest(long now) {
+		while(!requestLane.isEmpty()) {
+			OBDRequestFuture<?> f = requestLane.poll();
+			if(f.isCancelled()) continue;
+			if(f.expired(now)) {
+				expired.add(f);
+				continue;
+			}
+			if(!f.sent()) continue; //cancelled just now
+			return f;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the first pending one-shot request for pid, dropping any
+	 * cancelled ones on the way. Must hold the lock.
+	 */
+	private PIDRequestFuture takeOnce(int pid) {
+		if(onceLane.isEmpty()) return null;
+		for(Iterator<PIDRequestFuture> it = onceLane.iterator(); it.hasNext();) {
+			PIDRequestFuture f = it.next();
+			if(f.isCancelled()) {
+				it.remove();
+			} else if(f.pid == pid) {
+				it.remove();
+				return f;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the pid of the oldest live one-shot request, or -1. Moves any
+	 * whose deadline has passed to expired. Must hold the lock.
+	 */
+	private int nextOnce(long now) {
+		while(!onceLane.isEmpty()) {
+			PIDRequestFuture f = onceLane.peek();
+			if(f.isCancelled()) {
+				onceLane.poll();
+			} else if(f.expired(now)) {
+				onceLane.poll();
+				expired.add(f);
+			} else {
+				return f.pid;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean scheduleDTCPolling(DTCResultListener list, DTCMode mode, long intervalMillis) {
+		if(intervalMillis <= 0) throw new IllegalArgumentException("intervalMillis must be positive.");
+		List<DiagnosticTroubleCode> known;
+		synchronized(this) {
+			DTCPollItem poll = null;
+			for(int x=0; x<dtcPolls.size(); x++)
+				if(dtcPolls.get(x).mode == mode) poll = dtcPolls.get(x);
+			if(poll == null) {
+				poll = new DTCPollItem(this, mode);
+				dtcPolls.add(poll);
+			}
+			known = poll.add(list, intervalMillis * 1000000L);
+			notifyAll();
+		}
+		//Told outside the lock, like every other listener.
+		if(known != null) list.dtcsReceived(mode, known);
+		return true;
+	}
+
+	/**
+	 * @return the trouble code check that is due, or null. Must hold the lock.
+	 */
+	private DTCPollItem dueDTC(long now) {
+		for(int x=0; x<dtcPolls.size(); x++)
+			if(dtcPolls.get(x).untilDue(now) <= 0) return dtcPolls.get(x);
+		return null;
+	}
+
+	private PIDQueueItem find(int pid) {
+		for(int x=0; x<items.size(); x++)
+			if(items.get(x).pid == pid) return items.get(x);
+		return null;
+	}
+
+	/**
+	 * Drops an item that has no listeners left. Must hold the lock.
+	 */
+	private void retire(PIDQueueItem qi) {
+		if(!qi.isEmpty()) return;
+		int idx = items.indexOf(qi);
+		if(idx < 0) return;
+		items.remove(idx);
+		if(cursor > idx) cursor--;
+		if((qi.pid & ~0xFF) == 0 && !qi.dueNow) retiredRequestNanos[qi.pid] = qi.lastRequestNanos;
+	}
+
+	/**
+	 * Picks what to request next: the oldest one-shot request if any,
+	 * otherwise the next due item in round-robin order, unless a trouble
+	 * code check is due and has waited its turn. Waits until there is
+	 * something, and sets currentPid and current, or currentDTC.
+	 * Returns false on shutdown, or rather than wait while requests past
+	 * their deadline are waiting to be failed without the lock.
+	 */
+	private synchronized boolean next() throws InterruptedException {
+		while(!shutdownFlag) {
+			long now = System.nanoTime();
+			rebalance(now);
+			currentDTC = null;
+			currentRequest = null;
+			int once = nextOnce(now);
+			if(once >= 0) {
+				currentPid = once;
+				current = find(once);
+				for(PIDRequestFuture f : onceLane)
+					if(f.pid == once) f.sent();
+				sinceDTCCheck++;
+				return true;
+			}
+			currentRequest = nextRequest(now);
+			if(currentRequest != null) {
+				sinceDTCCheck++;
+				return true;
+			}
+			DTCPollItem dtc = dueDTC(now);
+			if(dtc != null && sinceDTCCheck >= DTC_INTERLEAVE) {
+				currentDTC = dtc;
+				sinceDTCCheck = 0;
 				return true;
 			}
+			long wait = Long.MAX_VALUE;
+			int n = items.size();
+			for(int x=0; x<n; x++) {
+				if(cursor >= n) cursor = 0;
+				PIDQueueItem qi = items.get(cursor++);
+				long until = qi.untilDue(now);
+				if(until <= 0) {
+					currentPid = qi.pid;
+					current = qi;
+					sinceDTCCheck++;
+					return true;
+				}
+				if(until < wait) wait = until;
+			}
+			//No pid is due, so the bus is free for a trouble code check.
+			if(dtc != null) {
+				currentDTC = dtc;
+				sinceDTCCheck = 0;
+				return true;
+			}
+			for(int x=0; x<dtcPolls.size(); x++)
+				wait = Math.min(wait, dtcPolls.get(x).untilDue(now));
+			//Wake up for the earliest one-shot deadline too. An empty lane
+			//is skipped rather than iterated, so idle waits allocate nothing.
+			if(!onceLane.isEmpty()) {
+				for(PIDRequestFuture f : onceLane)
+					if(f.deadlineNanos != 0 && f.deadlineNanos - now < wait) wait = Math.max(1, f.deadlineNanos - now);
+			}
+			if(!requestLane.isEmpty()) {
+				for(OBDRequestFuture<?> f : requestLane)
+					if(f.deadlineNanos != 0 && f.deadlineNanos - now < wait) wait = Math.max(1, f.deadlineNanos - now);
+			}
+			if(!expired.isEmpty()) return false;
+			if(wait == Long.MAX_VALUE) wait();
+			else wait(wait / 1000000L, (int)(wait % 1000000L));
 		}
-		
-		//Need a new PIDQueueItem
-		PIDQueueItem qi = new PIDQueueItem(pid, new PIDListenerQueueItem(list, persistent));
-		return processingQueue.add(qi);
+		return false;
 	}
 	
 	private void issueRequest() {
-		final PIDQueueItem qi = processingQueue.poll();
-		if(qi == null){
-			//nothing in queue!
-			//TODO stop thread, restart on adding a request. Otherwise, 100% cpu use infinite loop!
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} //TODO this is a workaround.
-			return; 
-		}
-		
+		boolean picked;
 		try {
-			device.requestPID(new PIDResultListener() {
+			picked = next();
+		} catch (InterruptedException e) {
+			return;
+		}
+		tellExpired();
+		if(!picked) return;
 
-				@Override
-				public void dataReceived(int pid, int numBytes, byte[] data) {
-					for(PIDListenerQueueItem lqi : qi.listeners)
-						lqi.listener.dataReceived(pid, numBytes, data);
-					cleanup();
-				}
+		if(currentDTC != null) {
+			issueDTCRequest(currentDTC);
+			return;
+		}
+		if(currentRequest != null) {
+			try {
+				currentRequest.issue(device);
+			} catch (IOException e) {
+				//stop() interrupts whatever is in flight.
+				if(shutdownFlag) return;
+				currentRequest.fail(OBDError.IO_ERROR);
+				ioFailed(e);
+			}
+			return;
+		}
 
-				@Override
-				public void error(String msg, int pid) {
-					for(PIDListenerQueueItem lqi : qi.listeners)
-						lqi.listener.error(msg, pid);
-					cleanup();
-				}
-				
-				private void cleanup() {
-					//by re-adding here, we avoid re-request of pid until this request is done.
-					ArrayList<PIDListenerQueueItem> toRemove = new ArrayList<PIDListenerQueueItem>();
-					for(PIDListenerQueueItem lqi : qi.listeners) {
-						if(!lqi.persistent) toRemove.add(lqi);
-					}
-					qi.listeners.removeAll(toRemove);
-					
-					//TODO: check to make sure nobody added anything to processingQueue related to qi.pid
-					//Alternately, lock the queue and just call enqueue() a bunch of times.
-					if(qi.listeners.size() != 0) processingQueue.add(qi);
-				}
-				
-			}, qi.pid);
+		long sent = System.nanoTime();
+		if(current != null) current.requested(sent);
+		try {
+			device.requestPID(dispatcher, currentPid);
+			long took = System.nanoTime() - sent;
+			requestNanos = requestNanos == 0 ? took : requestNanos + AdaptiveSchedule.SMOOTHING * (took - requestNanos);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			//stop() interrupts whatever is in flight.
+			if(shutdownFlag) return;
+			dispatcher.error(OBDError.IO_ERROR, currentPid);
+			ioFailed(e);
 		} catch (PIDNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			synchronized(this) {
+				takeAnswered();
+				if(current != null) {
+					collectListeners(current);
+					current.clear();
+					retire(current);
+				}
+			}
+			tellFailed(OBDError.UNKNOWN_PID, currentPid, true);
+		}
+	}
+	
+	private void issueDTCRequest(DTCPollItem poll) {
+		poll.requested(System.nanoTime());
+		try {
+			device.requestDTCs(poll, poll.mode);
+		} catch (IOException e) {
+			//stop() interrupts whatever is in flight.
+			if(shutdownFlag) return;
+			poll.error(OBDError.IO_ERROR, poll.mode);
+			ioFailed(e);
+		}
+	}
+
+	/**
+	 * Logs e and waits before the next request, rather than spin on a
+	 * dead device.
+	 */
+	private synchronized void ioFailed(IOException e) {
+		if(shutdownFlag) return;
+		logger.logError("I/O error talking to "+device.getInterfaceIdentifier()+": "+e.getMessage());
+		long until = System.nanoTime() + IO_ERROR_PAUSE_MILLIS * 1000000L;
+		long left;
+		try {
+			while(!shutdownFlag && (left = until - System.nanoTime()) > 0)
+				wait(left / 1000000L + 1);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
 		}
 	}
 	
@@ -139,8 +781,8 @@ public class OBDEventDriver implements IOBDEventDriver {
 	}
 
 	private int LookupPid(String name) throws PIDNotFoundException {
-		Integer pid = OBDInterface.PID_NAMES.get(name);
-		if(pid == null) throw new PIDNotFoundException(-1);
+		int pid = context.getCatalog().getPid(name);
+		if(pid < 0) throw new PIDNotFoundException(-1);
 		return(pid);
 	}
 
@@ -149,31 +791,99 @@ public class OBDEventDriver implements IOBDEventDriver {
 	 * @see com.dgis.JOuST.IOBDEventDriver#scheduleRepeating(com.dgis.JOuST.PIDResultListener, int)
 	 */
 	public boolean scheduleRepeating(final PIDResultListener list, int pid) {
-		return schedule(list, pid, true);
+		return schedule(list, pid, 0, null, DeliveryPolicy.EVERY_SAMPLE) != null;
+	}
+
+	@Override
+	public boolean scheduleRepeating(PIDResultListener list, String name) throws PIDNotFoundException {
+		return schedule(list, LookupPid(name), 0, name, DeliveryPolicy.EVERY_SAMPLE) != null;
+	}
+
+	/**
+	 * @see com.dgis.JOuST.IOBDEventDriver#scheduleRepeating(com.dgis.JOuST.PIDResultListener, int, double)
+	 */
+	public boolean scheduleRepeating(PIDResultListener list, int pid, double maxRate) {
+		return schedule(list, pid, maxRate, null, DeliveryPolicy.EVERY_SAMPLE) != null;
+	}
+
+	@Override
+	public boolean scheduleRepeating(PIDResultListener list, String name, double maxRate) throws PIDNotFoundException {
+		return schedule(list, LookupPid(name), maxRate, name, DeliveryPolicy.EVERY_SAMPLE) != null;
+	}
+
+	/**
+	 * @see com.dgis.JOuST.IOBDEventDriver#subscribe(com.dgis.JOuST.PIDResultListener, int, double)
+	 */
+	public PIDSubscription subscribe(PIDResultListener list, int pid, double maxRate) {
+		return schedule(list, pid, maxRate, null, DeliveryPolicy.EVERY_SAMPLE);
+	}
+
+	@Override
+	public PIDSubscription subscribe(PIDResultListener list, String name, double maxRate) throws PIDNotFoundException {
+		return schedule(list, LookupPid(name), maxRate, name, DeliveryPolicy.EVERY_SAMPLE);
+	}
+
+	/**
+	 * @see com.dgis.JOuST.IOBDEventDriver#subscribe(com.dgis.JOuST.PIDResultListener, int, double, com.dgis.JOuST.DeliveryPolicy)
+	 */
+	public PIDSubscription subscribe(PIDResultListener list, int pid, double maxRate, DeliveryPolicy policy) {
+		return schedule(list, pid, maxRate, null, policy);
+	}
+
+	@Override
+	public PIDSubscription subscribe(PIDResultListener list, String name, double maxRate, DeliveryPolicy policy) throws PIDNotFoundException {
+		return schedule(list, LookupPid(name), maxRate, name, policy);
+	}
+
+	@Override
+	public synchronized int getConsumerCount(int pid) {
+		PIDQueueItem qi = find(pid);
+		return qi == null ? 0 : qi.size();
 	}
 	
 	/**
 	 * @see com.dgis.JOuST.IOBDEventDriver#scheduleOnce(com.dgis.JOuST.PIDResultListener, int)
 	 */
 	public boolean scheduleOnce(PIDResultListener list, int pid) {
-		return schedule(list, pid, false);
+		return enqueueOnce(list, pid, 0) != null;
 	}
 
 	@Override
 	public boolean scheduleOnce(PIDResultListener list, String name) throws PIDNotFoundException {
-		return schedule(list, LookupPid(name), false);
+		return enqueueOnce(list, LookupPid(name), 0) != null;
+	}
+
+	/**
+	 * @see com.dgis.JOuST.IOBDEventDriver#requestOnce(com.dgis.JOuST.PIDResultListener, int, long)
+	 */
+	public PIDRequestFuture requestOnce(PIDResultListener list, int pid, long timeoutMillis) {
+		return enqueueOnce(list, pid, timeoutMillis);
 	}
 
 	@Override
-	public boolean scheduleRepeating(PIDResultListener list, String name) throws PIDNotFoundException {
-		return schedule(list, LookupPid(name), true);
+	public PIDRequestFuture requestOnce(PIDResultListener list, String name, long timeoutMillis) throws PIDNotFoundException {
+		return enqueueOnce(list, LookupPid(name), timeoutMillis);
+	}
+
+	/**
+	 * @see com.dgis.JOuST.IOBDEventDriver#requestOnce(com.dgis.JOuST.OBDRequest, com.dgis.JOuST.OBDResponseListener, long)
+	 */
+	public <T> OBDRequestFuture<T> requestOnce(OBDRequest<T> req, OBDResponseListener<T> list, long timeoutMillis) {
+		return enqueueRequest(req, list, timeoutMillis);
 	}
 	
 	/**
 	 * @see com.dgis.JOuST.IOBDEventDriver#stop()
 	 */
 	public boolean stop(Runnable onStop) {
-		shutdownFlag  = true;
+		context.removeCatalogListener(catalogListener);
+		this.onStop = onStop;
+		synchronized(this) {
+			shutdownFlag  = true;
+			notifyAll();
+		}
+		//Wakes a ConnectionSupervisor backing off in the requester thread.
+		requester.interrupt();
 		try {
 			requester.join();
 		} catch (InterruptedException e) {
@@ -183,39 +893,398 @@ public class OBDEventDriver implements IOBDEventDriver {
 	}
 
 	@Override
-	public boolean remove(PIDResultListener list) {
-		//TODO
-		return false;
+	public OBDContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Also cancels list's pending one-shot requests, except one already on
+	 * the wire, which completes. Pids nobody else
+	 * listens to stop being polled at once. May be called by a listener
+	 * while it is being handed a sample.
+	 */
+	@Override
+	public synchronized boolean remove(PIDResultListener list) {
+		boolean removed = false;
+		for(int x=0; x<items.size(); x++) {
+			PIDQueueItem qi = items.get(x);
+			int n = items.size();
+			for(int y=qi.size()-1; y>=0; y--) {
+				if(qi.get(y).listener == list) {
+					drop(qi, qi.get(y));
+					removed = true;
+				}
+			}
+			if(items.size() < n) x--;
+		}
+		if(!onceLane.isEmpty()) {
+			for(Iterator<PIDRequestFuture> it = onceLane.iterator(); it.hasNext();) {
+				PIDRequestFuture f = it.next();
+				//One already on the wire completes, and is taken when it does.
+				if(f.listener == list && f.cancel(false)) {
+					it.remove();
+					removed = true;
+				}
+			}
+		}
+		return removed;
 	}
 
+	/**
+	 * Also cancels pending one-shot requests for pid that have not been
+	 * sent yet.
+	 */
 	@Override
-	public boolean removeAll(int pid) {
-		//TODO
-		return false;
+	public synchronized boolean removeAll(int pid) {
+		boolean removed = false;
+		PIDQueueItem qi = find(pid);
+		if(qi != null) {
+			while(!qi.isEmpty())
+				drop(qi, qi.get(qi.size()-1));
+			removed = true;
+		}
+		if(!onceLane.isEmpty()) {
+			for(Iterator<PIDRequestFuture> it = onceLane.iterator(); it.hasNext();) {
+				PIDRequestFuture f = it.next();
+				if(f.pid == pid && f.cancel(false)) {
+					it.remove();
+					removed = true;
+				}
+			}
+		}
+		return removed;
 	}
 
 	@Override
-	public boolean clear() {
-		processingQueue = new LinkedList<PIDQueueItem>();
+	public synchronized boolean clear() {
+		//An in-flight request still completes, but has nobody left to tell.
+		for(int x=0; x<items.size(); x++)
+			items.get(x).clear();
+		items.clear();
+		cursor = 0;
+		//One-shot requests on the wire stay, to be completed.
+		for(Iterator<PIDRequestFuture> it = onceLane.iterator(); it.hasNext();)
+			if(it.next().cancel(false)) it.remove();
+		for(OBDRequestFuture<?> f : requestLane)
+			f.cancel(false);
+		requestLane.clear();
+		for(int x=0; x<dtcPolls.size(); x++)
+			dtcPolls.get(x).clear();
+		dtcPolls.clear();
 		return true;
 	}
 	
 }
 
-final class PIDListenerQueueItem {
+final class PIDListenerQueueItem implements PIDSubscription {
+	private final OBDEventDriver driver;
 	public PIDResultListener listener;
-	public boolean persistent;
-	public PIDListenerQueueItem(PIDResultListener list, boolean persist) {
+	//Minimum time between deliveries, 0 for every sample.
+	public long intervalNanos;
+	//Name the pid was scheduled by, or null if scheduled by number.
+	final String name;
+	//Sample time at or after which the next delivery is due.
+	long nextDeliveryNanos = Long.MIN_VALUE;
+	final DeliveryPolicy policy;
+	//How often this listener wants the pid polled: intervalNanos, or
+	//longer while adaptive polling backs off.
+	long pollIntervalNanos;
+	//Raw value and time of the last sample handed over, if any.
+	private boolean deliveredAny = false;
+	private long lastRaw;
+	private long lastDeliveredNanos;
+	//Set by the driver with its lock held.
+	volatile int pid;
+	volatile boolean closed = false;
+	public PIDListenerQueueItem(OBDEventDriver driver, PIDResultListener list, long intervalNanos, String name, DeliveryPolicy policy) {
+		this.driver=driver;
 		listener=list;
-		persistent=persist;
+		this.intervalNanos=intervalNanos;
+		this.name=name;
+		this.policy=policy;
+		pollIntervalNanos=intervalNanos;
+	}
+
+	@Override
+	public int getPid() {
+		return pid;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return !closed;
+	}
+
+	@Override
+	public void close() {
+		driver.unsubscribe(this);
+	}
+
+	/**
+	 * @return true if a sample taken at this time should be delivered.
+	 * Keeps the phase, so the average rate matches the interval even when
+	 * samples arrive at an uneven pace.
+	 */
+	boolean due(long sampleNanos) {
+		if(intervalNanos == 0) return true;
+		if(nextDeliveryNanos != Long.MIN_VALUE && sampleNanos - nextDeliveryNanos < 0) return false;
+		if(nextDeliveryNanos == Long.MIN_VALUE || sampleNanos - nextDeliveryNanos >= intervalNanos)
+			nextDeliveryNanos = sampleNanos + intervalNanos;
+		else
+			nextDeliveryNanos += intervalNanos;
+		return true;
+	}
+
+	/**
+	 * @return true if the sample should be handed to the listener. Also
+	 * moves pollIntervalNanos if adaptive polling is on.
+	 */
+	boolean accept(byte[] data, int numBytes, long sampleNanos) {
+		if(!due(sampleNanos)) return false;
+		if(policy == DeliveryPolicy.EVERY_SAMPLE) return true;
+		long raw = PIDCatalog.rawValue(data, numBytes);
+		boolean moved = !deliveredAny || policy.moved(raw, lastRaw);
+		long adaptiveMax = policy.getAdaptiveMaxMillis() * 1000000L;
+		if(adaptiveMax > 0) {
+			if(moved) {
+				pollIntervalNanos = intervalNanos;
+			} else {
+				long stretched = Math.max(pollIntervalNanos * 2, DeliveryPolicy.ADAPTIVE_FIRST_STEP_MILLIS * 1000000L);
+				pollIntervalNanos = Math.max(intervalNanos, Math.min(stretched, adaptiveMax));
+			}
+		}
+		long heartbeat = policy.getHeartbeatMillis() * 1000000L;
+		if(moved || !policy.isOnChange() || (heartbeat > 0 && sampleNanos - lastDeliveredNanos >= heartbeat)) {
+			deliveredAny = true;
+			lastRaw = raw;
+			lastDeliveredNanos = sampleNanos;
+			return true;
+		}
+		return false;
 	}
 }
+
+/**
+ * One pid and everybody listening to it. All methods must be called with
+ * the driver's lock held.
+ */
 final class PIDQueueItem {
-	public List<PIDListenerQueueItem> listeners = new ArrayList<PIDListenerQueueItem>();
-	int pid;
-	public PIDQueueItem(int pid, PIDListenerQueueItem ... lists) {
+	private final List<PIDListenerQueueItem> listeners = new ArrayList<PIDListenerQueueItem>();
+	final int pid;
+	//Shortest interval any listener wants, MAX_VALUE if none.
+	long requestIntervalNanos = Long.MAX_VALUE;
+	long lastRequestNanos;
+	//Set until the first request goes out.
+	boolean dueNow = true;
+	//Circuit breaker: requests in a row that failed, and while suspended,
+	//when to probe next and the wait after that if the probe fails.
+	int failures = 0;
+	boolean suspended = false;
+	long probeAtNanos;
+	long probeIntervalNanos;
+	//Shortest spacing between requests the adaptive schedule allows this
+	//pid's share of the bus, 0 if there is none.
+	long scheduleIntervalNanos = 0;
+	//For the adaptive schedule: the last raw value and when it was taken,
+	//and the smoothed rate of change in full ranges per second.
+	private long lastRaw = -1;
+	private long lastRawNanos;
+	double activity = 0;
+	public PIDQueueItem(int pid) {
 		this.pid=pid;
-		for(PIDListenerQueueItem lqi : lists)
-			listeners.add(lqi);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return nanoseconds until the next request should be sent, 0 or less
+	 * if it is due, or Long.MAX_VALUE if nobody is waiting for one.
+	 */
+	long untilDue(long now) {
+		if(suspended) return requestIntervalNanos == Long.MAX_VALUE ? Long.MAX_VALUE : probeAtNanos - now;
+		if(dueNow) return 0;
+		if(requestIntervalNanos == Long.MAX_VALUE) return Long.MAX_VALUE;
+		return lastRequestNanos + Math.max(requestIntervalNanos, scheduleIntervalNanos) - now;
+	}
+
+	/**
+	 * Updates the rate of change with a sample.
+	 */
+	void observe(int numBytes, byte[] data, long sampleNanos) {
+		long raw = PIDCatalog.rawValue(data, numBytes);
+		if(raw < 0 || numBytes <= 0) return;
+		if(lastRaw >= 0 && sampleNanos - lastRawNanos > 0) {
+			double range = (1L << (8 * numBytes)) - 1;
+			double rate = Math.abs(raw - lastRaw) / range / ((sampleNanos - lastRawNanos) / 1e9);
+			activity += AdaptiveSchedule.SMOOTHING * (rate - activity);
+		}
+		lastRaw = raw;
+		lastRawNanos = sampleNanos;
+	}
+
+	void add(PIDListenerQueueItem lqi) {
+		listeners.add(lqi);
+		requestIntervalNanos = Math.min(requestIntervalNanos, lqi.pollIntervalNanos);
+	}
+
+	private void updateInterval() {
+		requestIntervalNanos = Long.MAX_VALUE;
+		for(int x=0; x<listeners.size(); x++)
+			requestIntervalNanos = Math.min(requestIntervalNanos, listeners.get(x).pollIntervalNanos);
+	}
+
+	void remove(PIDListenerQueueItem lqi) {
+		int idx = listeners.indexOf(lqi);
+		if(idx < 0) return;
+		listeners.remove(idx);
+		updateInterval();
+	}
+
+	int size() {
+		return listeners.size();
+	}
+
+	PIDListenerQueueItem get(int x) {
+		return listeners.get(x);
+	}
+
+	boolean isEmpty() {
+		return listeners.isEmpty();
+	}
+
+	void clear() {
+		for(int x=0; x<listeners.size(); x++)
+			listeners.get(x).closed = true;
+		listeners.clear();
+		requestIntervalNanos = Long.MAX_VALUE;
+	}
+
+	void requested(long now) {
+		lastRequestNanos = now;
+		dueNow = false;
+	}
+
+	/**
+	 * Resets the circuit breaker.
+	 * @return true if the pid was suspended.
+	 */
+	boolean succeeded() {
+		failures = 0;
+		boolean was = suspended;
+		suspended = false;
+		return was;
+	}
+
+	/**
+	 * Counts a failure.
+	 * @return the nanoseconds until the next probe if the pid has just been
+	 * suspended or a probe failed, otherwise -1.
+	 */
+	long failed(long now, int maxFailures, long probeNanos, long maxProbeNanos) {
+		failures++;
+		if(suspended) {
+			probeIntervalNanos = Math.min(probeIntervalNanos * 2, maxProbeNanos);
+		} else if(failures >= maxFailures) {
+			suspended = true;
+			probeIntervalNanos = probeNanos;
+		} else {
+			return -1;
+		}
+		probeAtNanos = now + probeIntervalNanos;
+		return probeIntervalNanos;
+	}
+
+	/**
+	 * Picks out the listeners a sample taken at sampleNanos should be
+	 * handed to, for the driver to call once it has let go of its lock.
+	 * @param into at least size() long.
+	 * @return how many were put in into.
+	 */
+	int accept(int numBytes, byte[] data, long sampleNanos, PIDListenerQueueItem[] into) {
+		int n = 0;
+		for(int x=0; x<listeners.size(); x++) {
+			PIDListenerQueueItem lqi = listeners.get(x);
+			if(lqi.accept(data, numBytes, sampleNanos)) into[n++] = lqi;
+		}
+		//Adaptive polling may have moved some listener's interval.
+		updateInterval();
+		return n;
+	}
+}
+
+/**
+ * Background trouble code checks for one mode and everybody listening to
+ * them. Used directly as the device callback, so checks allocate nothing
+ * unless the codes change.
+ */
+final class DTCPollItem implements DTCResultListener {
+	private final Object lock;
+	final DTCMode mode;
+	private final List<DTCResultListener> listeners = new ArrayList<DTCResultListener>();
+	private long intervalNanos = Long.MAX_VALUE;
+	private long lastRequestNanos;
+	private boolean dueNow = true;
+	//Last codes reported, null until the first check completes.
+	private List<DiagnosticTroubleCode> codes = null;
+
+	DTCPollItem(Object lock, DTCMode mode) {
+		this.lock = lock;
+		this.mode = mode;
+	}
+
+	/**
+	 * Must hold the lock.
+	 * @return the codes last reported, for the caller to hand to list once
+	 * it has let go of the lock, or null if there has been no check yet.
+	 */
+	List<DiagnosticTroubleCode> add(DTCResultListener list, long intervalNanos) {
+		listeners.add(list);
+		this.intervalNanos = Math.min(this.intervalNanos, intervalNanos);
+		return codes;
+	}
+
+	void clear() {
+		listeners.clear();
+		intervalNanos = Long.MAX_VALUE;
+	}
+
+	long untilDue(long now) {
+		if(listeners.isEmpty()) return Long.MAX_VALUE;
+		if(dueNow) return 0;
+		return lastRequestNanos + intervalNanos - now;
+	}
+
+	void requested(long now) {
+		lastRequestNanos = now;
+		dueNow = false;
+	}
+
+	/**
+	 * @return the listeners to tell, taken with the lock held so they are
+	 * told without it.
+	 */
+	private DTCResultListener[] snapshot() {
+		return listeners.toArray(new DTCResultListener[listeners.size()]);
+	}
+
+	@Override
+	public void dtcsReceived(DTCMode mode, List<DiagnosticTroubleCode> received) {
+		List<DiagnosticTroubleCode> now;
+		DTCResultListener[] tell;
+		synchronized(lock) {
+			if(received.equals(codes)) return;
+			codes = now = Collections.unmodifiableList(new ArrayList<DiagnosticTroubleCode>(received));
+			tell = snapshot();
+		}
+		for(DTCResultListener list : tell)
+			list.dtcsReceived(mode, now);
+	}
+
+	@Override
+	public void error(OBDError error, DTCMode mode) {
+		DTCResultListener[] tell;
+		synchronized(lock) {
+			tell = snapshot();
+		}
+		for(DTCResultListener list : tell)
+			list.error(error, mode);
+	}
+}
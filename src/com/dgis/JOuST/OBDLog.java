@@ -0,0 +1,108 @@
+package com.dgis.JOuST;
+
+import com.dgis.util.Logger;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * One adapter's log. Messages are tagged with the adapter's name and
+ * filtered by its own level before anything is built or handed to its
+ * sink, so each adapter in a process can be made more or less verbose on
+ * its own. Messages that are dear to build should be guarded with
+ * isLoggable() or passed as a LogMessage.
+ *
+ * The level defaults to LEVEL_INFO and the sink to LogSink.LOGGER.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class OBDLog {
+	public static final int DEFAULT_LEVEL = Logger.LEVEL_INFO;
+
+	private final String name;
+	private volatile int level = DEFAULT_LEVEL;
+	private volatile LogSink sink = LogSink.LOGGER;
+
+	/**
+	 * @param name tag for this adapter's messages, or null for none.
+	 */
+	public OBDLog(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param level one of the Logger.LEVEL_ constants. Messages less
+	 * important than this are dropped.
+	 */
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public boolean isLoggable(int level) {
+		return level <= this.level;
+	}
+
+	public void setSink(LogSink sink) {
+		if(sink == null) throw new NullPointerException("sink");
+		this.sink = sink;
+	}
+
+	public LogSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Logs msg.get() if level passes; otherwise msg is never called.
+	 */
+	public void log(int level, LogMessage msg) {
+		if(isLoggable(level)) publish(level, msg.get());
+	}
+
+	public void log(int level, String msg) {
+		if(isLoggable(level)) publish(level, msg);
+	}
+
+	public void logError(String msg) {
+		log(Logger.LEVEL_ERROR, msg);
+	}
+
+	public void logWarning(String msg) {
+		log(Logger.LEVEL_WARNING, msg);
+	}
+
+	public void logInfo(String msg) {
+		log(Logger.LEVEL_INFO, msg);
+	}
+
+	public void logVerbose(String msg) {
+		log(Logger.LEVEL_VERBOSE, msg);
+	}
+
+	public void logSuperfine(String msg) {
+		log(Logger.LEVEL_SUPERFINE, msg);
+	}
+
+	private void publish(int level, String msg) {
+		sink.publish(new LogRecord(name, level, System.currentTimeMillis(), msg));
+	}
+}
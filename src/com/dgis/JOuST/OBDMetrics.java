@@ -0,0 +1,114 @@
+package com.dgis.JOuST;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Counters for one adapter's requests. Updated without locking by the
+ * thread talking to the adapter and readable from any thread.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class OBDMetrics {
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong linkErrors = new AtomicLong();
+	private final AtomicLongArray timeoutsByKind = new AtomicLongArray(TimeoutKind.values().length);
+	private final AtomicLong latencyNanos = new AtomicLong();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	/**
+	 * A request was answered.
+	 * @param latency nanoseconds from sending it to the prompt.
+	 */
+	public void answered(long latency) {
+		requests.incrementAndGet();
+		latencyNanos.addAndGet(latency);
+		long max;
+		while(latency > (max = maxLatencyNanos.get()))
+			if(maxLatencyNanos.compareAndSet(max, latency)) break;
+	}
+
+	/**
+	 * A request got an answer that was not usable.
+	 */
+	public void failed() {
+		requests.incrementAndGet();
+		errors.incrementAndGet();
+	}
+
+	/**
+	 * A request got no answer in time.
+	 */
+	public void timedOut(TimeoutKind kind) {
+		requests.incrementAndGet();
+		timeouts.incrementAndGet();
+		timeoutsByKind.incrementAndGet(kind.ordinal());
+	}
+
+	/**
+	 * The interface reported that it cannot reach the vehicle, e.g.
+	 * UNABLE TO CONNECT. Counted on top of failed().
+	 */
+	public void linkError() {
+		linkErrors.incrementAndGet();
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	public long getTimeouts(TimeoutKind kind) {
+		return timeoutsByKind.get(kind.ordinal());
+	}
+
+	public long getLinkErrors() {
+		return linkErrors.get();
+	}
+
+	/**
+	 * @return mean nanoseconds per answered request, or 0 if none.
+	 */
+	public long getMeanLatencyNanos() {
+		long answered = requests.get() - errors.get() - timeouts.get();
+		return answered <= 0 ? 0 : latencyNanos.get() / answered;
+	}
+
+	public long getMaxLatencyNanos() {
+		return maxLatencyNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return requests.get()+" requests, "+errors.get()+" errors, "+timeouts.get()+" timeouts, mean "
+			+getMeanLatencyNanos()/1000000L+"ms, max "+getMaxLatencyNanos()/1000000L+"ms";
+	}
+}
@@ -0,0 +1,126 @@
+package com.dgis.JOuST;
+
+import java.util.List;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A request for any OBD service: the service number, the argument bytes
+ * that follow it (usually a PID), the expected length of the answer, and
+ * how to turn the answer into a value.
+ *
+ * The interface sends the service and arguments, splits the response into
+ * messages (reassembling multi-frame ones), keeps the messages that answer
+ * this request - response service followed by the same arguments - and
+ * hands their payloads to parse().
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public abstract class OBDRequest<T> {
+	private final int service;
+	private final int[] args;
+	private final int expectedLength;
+
+	/**
+	 * @param service the service (mode) number, e.g. 0x09.
+	 * @param expectedLength number of payload bytes each message carries, or
+	 * -1 if it varies. Longer payloads are trimmed, since some interfaces pad.
+	 * @param args bytes sent after the service and echoed back by the ECU,
+	 * e.g. the PID.
+	 */
+	public OBDRequest(int service, int expectedLength, int... args) {
+		this.service = service;
+		this.expectedLength = expectedLength;
+		this.args = args.clone();
+	}
+
+	public int getService() {
+		return service;
+	}
+
+	/**
+	 * @return the first argument (the PID for most services), or -1 if none.
+	 */
+	public int getPid() {
+		return args.length > 0 ? args[0] : -1;
+	}
+
+	public int getExpectedLength() {
+		return expectedLength;
+	}
+
+	/**
+	 * @return the command as sent to an ELM interface, e.g. "0902".
+	 */
+	public String getCommand() {
+		StringBuilder sb = new StringBuilder(2 + args.length * 2);
+		sb.append(String.format("%02X", service));
+		for(int a : args) sb.append(String.format("%02X", a));
+		return sb.toString();
+	}
+
+	/**
+	 * @return number of bytes before the payload: the response service
+	 * and the echoed arguments.
+	 */
+	public int getHeaderLength() {
+		return 1 + args.length;
+	}
+
+	/**
+	 * @return true if msg is an answer to this request.
+	 */
+	public boolean matches(byte[] msg) {
+		if(msg.length < getHeaderLength() || (msg[0] & 0xFF) != service + 0x40) return false;
+		for(int x=0; x<args.length; x++)
+			if((msg[x+1] & 0xFF) != args[x]) return false;
+		return true;
+	}
+
+	/**
+	 * @param payloads the payload of each answering message, in the order
+	 * received. Never empty.
+	 * @return the value, or null if the payloads are malformed.
+	 */
+	public abstract T parse(List<byte[]> payloads);
+
+	/**
+	 * Same as parse(payloads), for interfaces with their own catalog.
+	 * Requests whose value is decoded by a PIDCatalog override this to
+	 * use the one given.
+	 * @param catalog the catalog of the interface that was asked.
+	 */
+	public T parse(List<byte[]> payloads, PIDCatalog catalog) {
+		return parse(payloads);
+	}
+
+	/**
+	 * @return the value to report when the interface answers NO DATA, or
+	 * null to report an error.
+	 */
+	public T noData() {
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return getCommand();
+	}
+}
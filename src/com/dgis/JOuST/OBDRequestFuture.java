@@ -0,0 +1,70 @@
+package com.dgis.JOuST;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import com.dgis.JOuST.serial.ObdSerial;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The pending result of a one-shot OBDRequest made through
+ * IOBDEventDriver.requestOnce(). Also serves as the request's callback.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class OBDRequestFuture<T> extends RequestFuture<T> implements OBDResponseListener<T> {
+	final OBDRequest<T> request;
+	final OBDResponseListener<T> listener;
+
+	OBDRequestFuture(OBDRequest<T> request, OBDResponseListener<T> listener, long deadlineNanos) {
+		super(deadlineNanos);
+		this.request = request;
+		this.listener = listener;
+	}
+
+	public OBDRequest<T> getRequest() {
+		return request;
+	}
+
+	void issue(ObdSerial device) throws IOException {
+		device.request(request, this);
+	}
+
+	@Override
+	public void responseReceived(OBDRequest<T> req, T value, SampleTime time) {
+		if(succeed(value) && listener != null) listener.responseReceived(req, value, time);
+	}
+
+	@Override
+	public void error(OBDError error, OBDRequest<T> req) {
+		if(fail(error.toString(), null) && listener != null) listener.error(error, req);
+	}
+
+	void fail(OBDError error) {
+		error(error, request);
+	}
+
+	@Override
+	void expire() {
+		String msg = "Deadline passed before "+request+" could be requested.";
+		if(fail(msg, new TimeoutException()) && listener != null) listener.error(OBDError.DEADLINE_PASSED, request);
+	}
+}
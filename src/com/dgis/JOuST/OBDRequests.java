@@ -0,0 +1,237 @@
+package com.dgis.JOuST;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Ready-made requests for the standard OBD services.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class OBDRequests {
+	private OBDRequests() {}
+
+	/**
+	 * Mode 01: current value of a PID, decoded by the interface's PIDCatalog.
+	 */
+	public static OBDRequest<Double> pid(final int pid, int numBytes) {
+		return new OBDRequest<Double>(0x01, numBytes, pid){
+			@Override
+			public Double parse(List<byte[]> payloads) {
+				return parse(payloads, PIDCatalog.getDefault());
+			}
+			@Override
+			public Double parse(List<byte[]> payloads, PIDCatalog catalog) {
+				return decodeFirst(pid, payloads, getExpectedLength(), catalog);
+			}
+		};
+	}
+
+	/**
+	 * Mode 01 PIDs 00, 20, 40...: which of the next 32 PIDs are supported.
+	 * @param base the PID asked, a multiple of 0x20.
+	 * @return for each of PIDs base+1 to base+32, the number of ECUs that
+	 * support it.
+	 */
+	public static OBDRequest<int[]> supportedPids(int base) {
+		return new OBDRequest<int[]>(0x01, 4, base){
+			@Override
+			public int[] parse(List<byte[]> payloads) {
+				int[] counts = new int[32];
+				for(byte[] p : payloads) {
+					if(p.length < 4) return null;
+					long mask = ((long)word(p, 0) << 16) | word(p, 2);
+					for(int bit=0; bit<32; bit++)
+						if((mask & (1L << (31 - bit))) != 0) counts[bit]++;
+				}
+				return counts;
+			}
+		};
+	}
+
+	/**
+	 * Mode 02: value of a PID when a freeze frame was stored, decoded by the
+	 * interface's PIDCatalog.
+	 * @param frame the freeze frame number, 0 for the one stored with the first DTC.
+	 */
+	public static OBDRequest<Double> freezeFrame(final int pid, int frame, int numBytes) {
+		return new OBDRequest<Double>(0x02, numBytes, pid, frame){
+			@Override
+			public Double parse(List<byte[]> payloads) {
+				return parse(payloads, PIDCatalog.getDefault());
+			}
+			@Override
+			public Double parse(List<byte[]> payloads, PIDCatalog catalog) {
+				return decodeFirst(pid, payloads, getExpectedLength(), catalog);
+			}
+		};
+	}
+
+	/**
+	 * Modes 03, 07 and 0A: trouble codes from every ECU that answers,
+	 * sorted, without duplicates. NO DATA is an empty list.
+	 */
+	public static OBDRequest<List<DiagnosticTroubleCode>> dtcs(DTCMode mode) {
+		return new OBDRequest<List<DiagnosticTroubleCode>>(mode.getService(), -1){
+			@Override
+			public List<DiagnosticTroubleCode> parse(List<byte[]> payloads) {
+				TreeSet<DiagnosticTroubleCode> codes = new TreeSet<DiagnosticTroubleCode>();
+				for(byte[] p : payloads) {
+					int start, count;
+					if(p.length % 2 == 1) {
+						//CAN: count, then that many codes.
+						start = 1;
+						count = Math.min(p[0] & 0xFF, (p.length - 1) / 2);
+					} else {
+						//Older protocols: three codes per frame, padded with 0000.
+						start = 0;
+						count = p.length / 2;
+					}
+					for(int x=0; x<count; x++) {
+						int raw = ((p[start + x*2] & 0xFF) << 8) | (p[start + x*2 + 1] & 0xFF);
+						if(raw != 0) codes.add(new DiagnosticTroubleCode(raw));
+					}
+				}
+				return new ArrayList<DiagnosticTroubleCode>(codes);
+			}
+			@Override
+			public List<DiagnosticTroubleCode> noData() {
+				//Some ECUs answer NO DATA rather than an empty list.
+				return new ArrayList<DiagnosticTroubleCode>();
+			}
+		};
+	}
+
+	/**
+	 * Mode 06: on-board monitoring test results for one monitor (CAN format).
+	 */
+	public static OBDRequest<List<MonitorTestResult>> testResults(final int mid) {
+		return new OBDRequest<List<MonitorTestResult>>(0x06, -1, mid){
+			@Override
+			public List<MonitorTestResult> parse(List<byte[]> payloads) {
+				List<MonitorTestResult> results = new ArrayList<MonitorTestResult>();
+				for(byte[] p : payloads) {
+					//The first record's MID is the echoed argument; later ones carry their own.
+					int pos = 0;
+					int m = mid;
+					while(true) {
+						if(pos > 0) {
+							if(pos >= p.length) break;
+							m = p[pos++] & 0xFF;
+						}
+						if(pos + 8 > p.length) break;
+						results.add(new MonitorTestResult(m, p[pos] & 0xFF, p[pos+1] & 0xFF,
+								word(p, pos+2), word(p, pos+4), word(p, pos+6)));
+						pos += 8;
+					}
+				}
+				return results.isEmpty() ? null : results;
+			}
+		};
+	}
+
+	/**
+	 * Mode 09 PID 02: vehicle identification number.
+	 */
+	public static OBDRequest<String> vin() {
+		return new OBDRequest<String>(0x09, -1, 0x02){
+			@Override
+			public String parse(List<byte[]> payloads) {
+				byte[] b = joinSequenced(payloads);
+				int start = 0;
+				while(start < b.length && b[start] == 0) start++; //older protocols pad the front
+				if(b.length - start != 17) return null;
+				return new String(b, start, 17);
+			}
+		};
+	}
+
+	/**
+	 * Mode 09 PID 04: calibration ids, one per software module.
+	 */
+	public static OBDRequest<List<String>> calibrationIds() {
+		return new OBDRequest<List<String>>(0x09, -1, 0x04){
+			@Override
+			public List<String> parse(List<byte[]> payloads) {
+				byte[] b = joinSequenced(payloads);
+				if(b.length == 0 || b.length % 16 != 0) return null;
+				List<String> ids = new ArrayList<String>();
+				for(int off=0; off<b.length; off+=16) {
+					int len = 0;
+					while(len < 16 && b[off+len] != 0) len++;
+					ids.add(new String(b, off, len));
+				}
+				return ids;
+			}
+		};
+	}
+
+	static int word(byte[] b, int off) {
+		return ((b[off] & 0xFF) << 8) | (b[off+1] & 0xFF);
+	}
+
+	static Double decodeFirst(int pid, List<byte[]> payloads, int numBytes, PIDCatalog catalog) {
+		byte[] p = payloads.get(0);
+		if(numBytes > 0 && p.length < numBytes) return null;
+		int n = numBytes > 0 ? numBytes : p.length;
+		if(catalog.hasFormula(pid)) n = Math.min(n, catalog.getValueBytes(pid));
+		if(n > 7) return null;
+		long raw = 0;
+		for(int x=0; x<n; x++) raw = (raw << 8) | (p[x] & 0xFF);
+		return catalog.decode(pid, raw);
+	}
+
+	/**
+	 * Joins the data of a mode 09 answer. On CAN it is one payload whose
+	 * first byte is the item count. Older protocols send one message per
+	 * four bytes, each starting with its sequence number.
+	 */
+	static byte[] joinSequenced(List<byte[]> payloads) {
+		if(payloads.size() == 1) {
+			byte[] p = payloads.get(0);
+			if(p.length == 0) return p;
+			byte[] b = new byte[p.length - 1];
+			System.arraycopy(p, 1, b, 0, b.length);
+			return b;
+		}
+		List<byte[]> sorted = new ArrayList<byte[]>(payloads);
+		Collections.sort(sorted, new Comparator<byte[]>(){
+			@Override
+			public int compare(byte[] a, byte[] b) {
+				return (a.length == 0 ? 0 : a[0] & 0xFF) - (b.length == 0 ? 0 : b[0] & 0xFF);
+			}
+		});
+		int len = 0;
+		for(byte[] p : sorted) len += Math.max(0, p.length - 1);
+		byte[] b = new byte[len];
+		int off = 0;
+		for(byte[] p : sorted) {
+			if(p.length == 0) continue;
+			System.arraycopy(p, 1, b, off, p.length - 1);
+			off += p.length - 1;
+		}
+		return b;
+	}
+}
@@ -0,0 +1,37 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Receives the parsed answer to an OBDRequest.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public interface OBDResponseListener<T> {
+	/**
+	 * @param time when the request was sent and answered. Reused by the
+	 * caller after this returns.
+	 */
+	void responseReceived(OBDRequest<T> request, T value, SampleTime time);
+	/**
+	 * @param error why request could not be answered.
+	 */
+	void error(OBDError error, OBDRequest<T> request);
+}
@@ -0,0 +1,459 @@
+package com.dgis.JOuST;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * What is known about each mode 01 PID: how many data bytes it answers
+ * with, its names, and, for most, a formula converting the data into
+ * engineering units. Every formula is linear in the unsigned, big-endian
+ * value of the leading data bytes: value = raw * scale + offset.
+ *
+ * A catalog is immutable and indexed by PID, so lookups on the request
+ * path are array reads. The default catalog is the SAE J1979 set compiled
+ * into J1979Catalog, overlaid with the [pids] section of JOuST.cfg if that
+ * file exists. It is built on first use, and may be replaced at any time
+ * with setDefault(), e.g. by a PIDCatalogWatcher when JOuST.cfg changes.
+ *
+ * Each adapter looks PIDs up in its OBDContext's catalog, which is the
+ * default unless the context was given one of its own. Code that looks
+ * PIDs up should call context.getCatalog() for every lookup rather than
+ * keep the catalog, so it sees either being replaced.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class PIDCatalog {
+	//The default catalog is shared by every adapter, so it has a log of its own.
+	private static final OBDLog logger = new OBDLog("catalog");
+
+	/** Largest number of data bytes a PID may have. */
+	public static final int MAX_SIZE = 64;
+
+	private final int[] size;
+	private final int[] valueBytes;
+	private final double[] scale;
+	private final double[] offset;
+	private final String[] unit;
+	private final String[][] names;
+	private final Map<String, Integer> byName;
+
+	private PIDCatalog(Builder b) {
+		size = b.size.clone();
+		valueBytes = b.valueBytes.clone();
+		scale = b.scale.clone();
+		offset = b.offset.clone();
+		unit = b.unit.clone();
+		names = b.names.clone();
+		byName = Collections.unmodifiableMap(new HashMap<String, Integer>(b.byName));
+	}
+
+	private static volatile PIDCatalog current = null;
+	private static final List<PIDCatalogListener> changeListeners = new CopyOnWriteArrayList<PIDCatalogListener>();
+
+	/**
+	 * @return the catalog in use: unless replaced, the J1979 catalog with
+	 * JOuST.cfg applied on top.
+	 */
+	public static PIDCatalog getDefault() {
+		PIDCatalog c = current;
+		if(c != null) return c;
+		synchronized(PIDCatalog.class) {
+			if(current == null) current = loadDefault();
+			return current;
+		}
+	}
+
+	/**
+	 * Replaces the catalog in use and tells every change listener.
+	 */
+	public static void setDefault(PIDCatalog catalog) {
+		if(catalog == null) throw new IllegalArgumentException("catalog must not be null.");
+		PIDCatalog old;
+		synchronized(PIDCatalog.class) {
+			old = getDefault();
+			current = catalog;
+		}
+		if(old == catalog) return;
+		for(PIDCatalogListener list : changeListeners)
+			list.catalogChanged(old, catalog);
+	}
+
+	public static void addChangeListener(PIDCatalogListener list) {
+		changeListeners.add(list);
+	}
+
+	public static void removeChangeListener(PIDCatalogListener list) {
+		changeListeners.remove(list);
+	}
+
+	private static PIDCatalog loadDefault() {
+		File cfg = new File(OBDInterface.CONFIG_FILENAME);
+		if(!cfg.isFile()) return builtin();
+		try {
+			return fromConfig(cfg);
+		} catch (PIDCatalogException e) {
+			logger.logError("Ignoring PIDs in config file: "+e.getMessage());
+		} catch (IOException e) {
+			logger.logError("Could not read config file "+cfg+": "+e.getMessage());
+		}
+		return builtin();
+	}
+
+	/**
+	 * @return the J1979 catalog with the [pids] section of cfg applied on top.
+	 * @throws PIDCatalogException if a line cannot be parsed.
+	 * @throws IOException
+	 */
+	public static PIDCatalog fromConfig(File cfg) throws PIDCatalogException, IOException {
+		return builtin().overlay(load(cfg, true));
+	}
+
+	/**
+	 * @return the SAE J1979 PIDs, without any configuration applied.
+	 */
+	public static PIDCatalog builtin() {
+		Builder b = new Builder();
+		for(int x=0; x<J1979Catalog.PID.length; x++)
+			b.put(J1979Catalog.PID[x], J1979Catalog.SIZE[x], J1979Catalog.NAMES[x],
+					J1979Catalog.SCALE[x], J1979Catalog.OFFSET[x],
+					J1979Catalog.UNIT[x], J1979Catalog.VALUE_BYTES[x]);
+		return b.build();
+	}
+
+	/**
+	 * Reads a catalog file.
+	 * @param f the file.
+	 * @param config if true, f is a JOuST.cfg-style file and only its [pids]
+	 * section is read. Otherwise every line is a PID.
+	 * @throws PIDCatalogException if a line cannot be parsed.
+	 * @throws IOException
+	 */
+	public static PIDCatalog load(File f, boolean config) throws PIDCatalogException, IOException {
+		Reader in = new InputStreamReader(new FileInputStream(f), "UTF-8");
+		try {
+			return parse(in, f.getName(), config);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parses a catalog. Each PID is one line:
+	 * <pre>PID (hex), num bytes, name, name, ... [; scale, offset, unit [, value bytes]]</pre>
+	 * Scales may be written as fractions, e.g. 100/255. Lines starting
+	 * with # are comments.
+	 * @param source name used in error messages.
+	 * @param config see load().
+	 * @throws PIDCatalogException on the first line that cannot be parsed.
+	 * @throws IOException
+	 */
+	public static PIDCatalog parse(Reader r, String source, boolean config) throws PIDCatalogException, IOException {
+		BufferedReader in = new BufferedReader(r);
+		Builder b = new Builder();
+		boolean inPids = !config;
+		String line;
+		int lineNo = 0;
+		while((line = in.readLine()) != null) {
+			lineNo++;
+			line = line.trim();
+			if(line.length() == 0 || line.charAt(0) == '#') continue;
+			if(config) {
+				if(line.charAt(0) == '[') {
+					inPids = line.equals("[pids]");
+					continue;
+				}
+				if(line.equals("{") || line.equals("}")) continue;
+			}
+			if(inPids) parseLine(b, line, source, lineNo);
+		}
+		return b.build();
+	}
+
+	private static void parseLine(Builder b, String line, String source, int lineNo) throws PIDCatalogException {
+		int semi = line.indexOf(';');
+		String[] fields = (semi < 0 ? line : line.substring(0, semi)).split(",");
+		if(fields.length < 3)
+			throw new PIDCatalogException(source, lineNo, "expected PID, size, name, ... but found \""+line+"\"");
+		int pid = parseInt(fields[0].trim().toLowerCase().replace("0x", ""), 16, 0, 0xFF, "PID", source, lineNo);
+		int size = parseInt(fields[1].trim(), 10, 1, MAX_SIZE, "size", source, lineNo);
+		if(b.size[pid] > 0)
+			throw new PIDCatalogException(source, lineNo, String.format("PID 0x%02X is already defined", pid));
+		String[] n = new String[fields.length-2];
+		for(int x=0; x<n.length; x++) {
+			n[x] = fields[x+2].trim();
+			if(n[x].length() == 0)
+				throw new PIDCatalogException(source, lineNo, "empty name");
+			Integer other = b.byName.get(n[x]);
+			if(other != null)
+				throw new PIDCatalogException(source, lineNo, String.format("name \"%s\" is already used by PID 0x%02X", n[x], other));
+		}
+		double sc = Double.NaN, off = 0;
+		String u = null;
+		int vb = size;
+		if(semi >= 0) {
+			String[] formula = line.substring(semi+1).split(",");
+			if(formula.length < 3 || formula.length > 4)
+				throw new PIDCatalogException(source, lineNo, "expected scale, offset, unit [, value bytes] after ';'");
+			sc = parseNumber(formula[0].trim(), "scale", source, lineNo);
+			off = parseNumber(formula[1].trim(), "offset", source, lineNo);
+			u = formula[2].trim();
+			if(formula.length == 4)
+				vb = parseInt(formula[3].trim(), 10, 1, Math.min(size, 7), "value bytes", source, lineNo);
+			else if(size > 7)
+				throw new PIDCatalogException(source, lineNo, "a formula can use at most 7 bytes; give the value bytes");
+		}
+		b.put(pid, size, n, sc, off, u, vb);
+	}
+
+	private static int parseInt(String s, int radix, int min, int max, String what, String source, int lineNo) throws PIDCatalogException {
+		int v;
+		try {
+			v = Integer.parseInt(s, radix);
+		} catch (NumberFormatException e) {
+			throw new PIDCatalogException(source, lineNo, what+" is not a number: \""+s+"\"");
+		}
+		if(v < min || v > max)
+			throw new PIDCatalogException(source, lineNo, what+" out of range: "+s);
+		return v;
+	}
+
+	private static double parseNumber(String s, String what, String source, int lineNo) throws PIDCatalogException {
+		try {
+			int slash = s.indexOf('/');
+			if(slash < 0) return Double.parseDouble(s);
+			return Double.parseDouble(s.substring(0, slash).trim()) / Double.parseDouble(s.substring(slash+1).trim());
+		} catch (NumberFormatException e) {
+			throw new PIDCatalogException(source, lineNo, what+" is not a number: \""+s+"\"");
+		}
+	}
+
+	/**
+	 * @return a catalog with every PID of other replacing the same PID in
+	 * this one. A formula is kept if other gives none, and names are
+	 * added to those already known.
+	 */
+	public PIDCatalog overlay(PIDCatalog other) {
+		Builder b = new Builder(this);
+		for(int pid=0; pid<256; pid++) {
+			if(other.size[pid] == 0) continue;
+			if(other.hasFormula(pid))
+				b.put(pid, other.size[pid], other.names[pid], other.scale[pid], other.offset[pid], other.unit[pid], other.valueBytes[pid]);
+			else
+				b.put(pid, other.size[pid], other.names[pid], scale[pid], offset[pid], unit[pid],
+						Math.min(valueBytes[pid] > 0 ? valueBytes[pid] : other.size[pid], other.size[pid]));
+		}
+		return b.build();
+	}
+
+	/**
+	 * @return true if the catalog knows how many bytes pid answers with.
+	 */
+	public boolean contains(int pid) {
+		return pid >= 0 && pid < 256 && size[pid] > 0;
+	}
+
+	/**
+	 * @return the number of data bytes pid answers with, or -1 if unknown.
+	 */
+	public int getSize(int pid) {
+		return contains(pid) ? size[pid] : -1;
+	}
+
+	/**
+	 * @return the PID called name, or -1 if there is none.
+	 */
+	public int getPid(String name) {
+		Integer pid = byName.get(name);
+		return pid == null ? -1 : pid;
+	}
+
+	/**
+	 * @return every name in the catalog.
+	 */
+	public Set<String> getNames() {
+		return byName.keySet();
+	}
+
+	/**
+	 * @return the first name of pid, or null if unknown.
+	 */
+	public String getName(int pid) {
+		return contains(pid) ? names[pid][0] : null;
+	}
+
+	/**
+	 * @return the unit of the decoded value, or null if pid has no formula.
+	 */
+	public String getUnit(int pid) {
+		return hasFormula(pid) ? unit[pid] : null;
+	}
+
+	/**
+	 * @return true if decode() knows a formula for this pid.
+	 */
+	public boolean hasFormula(int pid) {
+		return contains(pid) && !Double.isNaN(scale[pid]);
+	}
+
+	/**
+	 * @return how many leading data bytes the formula for pid uses, or -1
+	 * if unknown.
+	 */
+	public int getValueBytes(int pid) {
+		return contains(pid) ? valueBytes[pid] : -1;
+	}
+
+	String[] getNames(int pid) {
+		return names[pid];
+	}
+
+	double getScale(int pid) {
+		return scale[pid];
+	}
+
+	double getOffset(int pid) {
+		return offset[pid];
+	}
+
+	/**
+	 * Decodes a response into engineering units.
+	 * @param data null-terminated response as delivered to a PIDResultListener,
+	 * e.g. "410C1AF8".
+	 * @param numBytes the number of data bytes following the 2-byte header.
+	 * @return the value, the raw value if no formula is known for the pid,
+	 * or NaN if the response could not be parsed.
+	 */
+	public double decode(int pid, byte[] data, int numBytes) {
+		if(hasFormula(pid)) numBytes = Math.min(numBytes, valueBytes[pid]);
+		long raw = rawValue(data, numBytes);
+		if(raw < 0) return Double.NaN;
+		return decode(pid, raw);
+	}
+
+	/**
+	 * Applies the formula for pid to the unsigned value of its leading
+	 * getValueBytes() data bytes.
+	 * @return the value, or raw if no formula is known for the pid.
+	 */
+	public double decode(int pid, long raw) {
+		if(!hasFormula(pid)) return raw;
+		return raw * scale[pid] + offset[pid];
+	}
+
+	/**
+	 * Extracts the unsigned value of the data bytes from a response.
+	 * @param data null-terminated response as delivered to a PIDResultListener,
+	 * e.g. "410C1AF8".
+	 * @param numBytes the number of data bytes following the 2-byte header,
+	 * at most 7.
+	 * @return the value, or -1 if the response is too short or not hex.
+	 */
+	public static long rawValue(byte[] data, int numBytes) {
+		long v = 0;
+		int end = 4 + numBytes * 2;
+		if(numBytes > 7 || data.length < end) return -1;
+		for(int x = 4; x < end; x++) {
+			int d = Character.digit(data[x], 16);
+			if(d < 0) return -1;
+			v = (v << 4) | d;
+		}
+		return v;
+	}
+
+	/**
+	 * Collects PIDs into a catalog.
+	 */
+	static final class Builder {
+		final int[] size = new int[256];
+		final int[] valueBytes = new int[256];
+		final double[] scale = new double[256];
+		final double[] offset = new double[256];
+		final String[] unit = new String[256];
+		final String[][] names = new String[256][];
+		final Map<String, Integer> byName = new HashMap<String, Integer>();
+
+		Builder() {
+			Arrays.fill(scale, Double.NaN);
+		}
+
+		Builder(PIDCatalog c) {
+			System.arraycopy(c.size, 0, size, 0, 256);
+			System.arraycopy(c.valueBytes, 0, valueBytes, 0, 256);
+			System.arraycopy(c.scale, 0, scale, 0, 256);
+			System.arraycopy(c.offset, 0, offset, 0, 256);
+			System.arraycopy(c.unit, 0, unit, 0, 256);
+			System.arraycopy(c.names, 0, names, 0, 256);
+			byName.putAll(c.byName);
+		}
+
+		/**
+		 * Adds or replaces pid. Names given for it here point to it even if
+		 * they named another PID before; names it had before are kept.
+		 * @param sc the scale, or NaN for no formula.
+		 */
+		void put(int pid, int sz, String[] n, double sc, double off, String u, int vb) {
+			String[] all = n;
+			if(names[pid] != null) {
+				LinkedHashSet<String> merged = new LinkedHashSet<String>();
+				Collections.addAll(merged, n);
+				Collections.addAll(merged, names[pid]);
+				all = merged.toArray(new String[merged.size()]);
+			}
+			size[pid] = sz;
+			valueBytes[pid] = vb;
+			scale[pid] = sc;
+			offset[pid] = off;
+			unit[pid] = u;
+			names[pid] = all;
+			for(String name : n) {
+				Integer old = byName.put(name, pid);
+				if(old != null && old != pid) names[old] = without(names[old], name);
+			}
+		}
+
+		private static String[] without(String[] a, String name) {
+			List<String> l = new ArrayList<String>(Arrays.asList(a));
+			l.remove(name);
+			//Keep at least a name to print.
+			if(l.isEmpty()) return a;
+			return l.toArray(new String[l.size()]);
+		}
+
+		PIDCatalog build() {
+			return new PIDCatalog(this);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.dgis.JOuST;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Compiles a PID catalog file into a Java class holding it as constant
+ * arrays, so the catalog is available at startup without reading or
+ * parsing anything. J1979Catalog is generated this way from j1979.pids:
+ * <pre>java com.dgis.JOuST.PIDCatalogCompiler src/com/dgis/JOuST/j1979.pids src/com/dgis/JOuST/J1979Catalog.java</pre>
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class PIDCatalogCompiler {
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2) {
+			System.err.println("Usage: PIDCatalogCompiler <catalog file> <output .java file>");
+			System.exit(1);
+		}
+		File in = new File(args[0]);
+		File out = new File(args[1]);
+		PIDCatalog catalog;
+		try {
+			catalog = PIDCatalog.load(in, false);
+		} catch (PIDCatalogException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		String className = out.getName().replaceAll("\\.java$", "");
+		PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(out), "UTF-8"));
+		try {
+			write(catalog, in.getName(), className, w);
+		} finally {
+			w.close();
+		}
+	}
+
+	static void write(PIDCatalog c, String source, String className, PrintWriter w) {
+		List<String> pid = new ArrayList<String>(), size = new ArrayList<String>(), vb = new ArrayList<String>();
+		List<String> scale = new ArrayList<String>(), offset = new ArrayList<String>(), unit = new ArrayList<String>();
+		StringBuilder names = new StringBuilder();
+		for(int x=0; x<256; x++) {
+			if(!c.contains(x)) continue;
+			pid.add(String.format("0x%02X", x));
+			size.add(Integer.toString(c.getSize(x)));
+			vb.add(Integer.toString(c.getValueBytes(x)));
+			boolean f = c.hasFormula(x);
+			scale.add(f ? Double.toString(c.getScale(x)) : "Double.NaN");
+			offset.add(f ? Double.toString(c.getOffset(x)) : "0.0");
+			unit.add(f ? quote(c.getUnit(x)) : "null");
+			names.append("\t\t{");
+			String[] n = c.getNames(x);
+			for(int y=0; y<n.length; y++)
+				names.append(y == 0 ? "" : ", ").append(quote(n[y]));
+			names.append("},\n");
+		}
+		w.println("package com.dgis.JOuST;");
+		w.println();
+		w.println("// Generated by PIDCatalogCompiler from "+source+". Do not edit.");
+		w.println();
+		w.println("final class "+className+" {");
+		w.println("\tprivate "+className+"() {}");
+		array(w, "int", "PID", pid);
+		array(w, "int", "SIZE", size);
+		array(w, "int", "VALUE_BYTES", vb);
+		array(w, "double", "SCALE", scale);
+		array(w, "double", "OFFSET", offset);
+		array(w, "String", "UNIT", unit);
+		w.println();
+		w.println("\tstatic final String[][] NAMES = {");
+		w.print(names);
+		w.println("\t};");
+		w.println("}");
+	}
+
+	private static void array(PrintWriter w, String type, String name, List<String> values) {
+		w.println();
+		w.println("\tstatic final "+type+"[] "+name+" = {");
+		for(int x=0; x<values.size(); x+=8) {
+			w.print("\t\t");
+			for(int y=x; y<Math.min(x+8, values.size()); y++)
+				w.print(values.get(y)+",");
+			w.println();
+		}
+		w.println("\t};");
+	}
+
+	private static String quote(String s) {
+		return "\""+s.replace("\\", "\\\\").replace("\"", "\\\"")+"\"";
+	}
+}
@@ -0,0 +1,49 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A PID catalog could not be parsed. The message names the file and line.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class PIDCatalogException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	private final String source;
+	private final int line;
+
+	public PIDCatalogException(String source, int line, String msg) {
+		super(source+":"+line+": "+msg);
+		this.source = source;
+		this.line = line;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return the line number, counting from 1.
+	 */
+	public int getLine() {
+		return line;
+	}
+}
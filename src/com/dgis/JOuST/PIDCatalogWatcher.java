@@ -0,0 +1,153 @@
+package com.dgis.JOuST;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Watches a config file and, whenever it changes, parses it and makes the
+ * result the default PIDCatalog, or the catalog of one OBDContext for an
+ * adapter with a catalog of its own. Running drivers keep polling through
+ * the swap and move subscriptions made by name onto the new definitions.
+ *
+ * The file is polled for a new modification time or size, which works on
+ * every platform and costs one stat per poll. If the new file cannot be
+ * parsed the error is logged, with its line number, and the catalog in
+ * use is kept.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class PIDCatalogWatcher {
+	public static final long DEFAULT_POLL_MILLIS = 1000;
+
+	private final File file;
+	private final long pollMillis;
+	//Reloaded into, or null to replace the default catalog.
+	private final OBDContext context;
+	private long lastModified;
+	private long lastLength;
+	private Thread watcher = null;
+	private volatile boolean shutdownFlag = false;
+	private volatile OBDLog logger = new OBDLog("catalog");
+
+	/**
+	 * Watches JOuST.cfg once a second.
+	 */
+	public PIDCatalogWatcher() {
+		this(new File(OBDInterface.CONFIG_FILENAME), DEFAULT_POLL_MILLIS);
+	}
+
+	/**
+	 * Watches file, and makes what it parses the default catalog.
+	 */
+	public PIDCatalogWatcher(File file, long pollMillis) {
+		this(file, pollMillis, null);
+	}
+
+	/**
+	 * Watches file for one adapter, and makes what it parses context's
+	 * catalog, logging to context's log.
+	 * @param context the context to reload into, or null for the default
+	 * catalog.
+	 */
+	public PIDCatalogWatcher(File file, long pollMillis, OBDContext context) {
+		if(pollMillis <= 0) throw new IllegalArgumentException("pollMillis must be positive.");
+		this.file = file;
+		this.pollMillis = pollMillis;
+		this.context = context;
+		if(context != null) logger = context.getLog();
+		lastModified = file.lastModified();
+		lastLength = file.length();
+	}
+
+	/**
+	 * @param log where reloads and files that cannot be parsed are reported.
+	 */
+	public void setLog(OBDLog log) {
+		if(log == null) throw new NullPointerException("log");
+		this.logger = log;
+	}
+
+	/**
+	 * Starts watching in a background thread.
+	 */
+	public synchronized void start() {
+		if(watcher != null) return;
+		shutdownFlag = false;
+		watcher = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				while(!shutdownFlag) {
+					try {
+						Thread.sleep(pollMillis);
+					} catch (InterruptedException e) {
+						return;
+					}
+					if(changed()) reload();
+				}
+			}
+		}, "PID catalog watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Stops watching. Does not wait for the thread to end.
+	 */
+	public synchronized void stop() {
+		if(watcher == null) return;
+		shutdownFlag = true;
+		watcher.interrupt();
+		watcher = null;
+	}
+
+	private synchronized boolean changed() {
+		long m = file.lastModified();
+		long l = file.length();
+		if(m == lastModified && l == lastLength) return false;
+		lastModified = m;
+		lastLength = l;
+		return true;
+	}
+
+	/**
+	 * Parses the file now and, if it parses, makes it the catalog in use:
+	 * the context's if there is one, else the default.
+	 * @return true if the catalog was replaced.
+	 */
+	public boolean reload() {
+		PIDCatalog catalog;
+		try {
+			catalog = PIDCatalog.fromConfig(file);
+		} catch (PIDCatalogException e) {
+			logger.logError("Keeping the PID catalog in use: "+e.getMessage());
+			return false;
+		} catch (IOException e) {
+			logger.logError("Could not read "+file+": "+e.getMessage());
+			return false;
+		}
+		if(context != null) context.setCatalog(catalog);
+		else PIDCatalog.setDefault(catalog);
+		logger.logInfo("Reloaded PID catalog from "+file+".");
+		return true;
+	}
+}
@@ -0,0 +1,41 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Told when an event driver stops polling a pid that keeps failing, and
+ * when it answers again.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public interface PIDHealthListener {
+	/**
+	 * pid failed too many times in a row. It will only be probed, first
+	 * after retryMillis and then less often, until it answers. Failed
+	 * probes are not reported.
+	 * @param lastError why the last request failed.
+	 */
+	void pidSuspended(int pid, int failures, OBDError lastError, long retryMillis);
+
+	/**
+	 * A suspended pid answered and is polled normally again.
+	 */
+	void pidRecovered(int pid);
+}
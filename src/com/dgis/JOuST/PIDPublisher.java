@@ -0,0 +1,133 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Publishes the samples of one pid to any number of Flow subscribers.
+ *
+ * The pid is only polled on behalf of a subscriber while it has outstanding
+ * demand: once a subscriber has been handed everything it requested, its
+ * polling stops until it calls request() again, so a slow consumer costs no
+ * bus bandwidth instead of having samples pile up for it. Each subscriber
+ * is polled at no more than the rate given to the constructor. Pausing does
+ * not reset this: the driver remembers when a dropped pid was last
+ * requested, so resuming at once after each sample still waits its turn.
+ *
+ * onNext() is called from the driver's thread and should return quickly.
+ * Failed requests are not passed on: a subscriber just sees a gap, as a
+ * repeating PIDResultListener would. onComplete() is never called.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class PIDPublisher implements Flow.Publisher<PIDReply> {
+	private final IOBDEventDriver driver;
+	private final int pid;
+	private final double maxRate;
+
+	/**
+	 * @param maxRate most samples per second to poll for each subscriber,
+	 * or 0 for as fast as possible.
+	 */
+	public PIDPublisher(IOBDEventDriver driver, int pid, double maxRate) {
+		if(maxRate < 0) throw new IllegalArgumentException("Rate must not be negative.");
+		this.driver = driver;
+		this.pid = pid;
+		this.maxRate = maxRate;
+	}
+
+	public int getPid() {
+		return pid;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super PIDReply> subscriber) {
+		if(subscriber == null) throw new NullPointerException();
+		subscriber.onSubscribe(new DemandSubscription(subscriber));
+	}
+
+	private final class DemandSubscription implements Flow.Subscription, PIDResultListener {
+		private final Flow.Subscriber<? super PIDReply> subscriber;
+		//Guarded by this. Never held while calling into the driver, so
+		//requests are not held up behind a subscriber.
+		private long demand = 0;
+		//Open while polling, null while paused.
+		private PIDSubscription polling = null;
+		private boolean scheduling = false;
+		private boolean cancelled = false;
+
+		DemandSubscription(Flow.Subscriber<? super PIDReply> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0) {
+				cancel();
+				subscriber.onError(new IllegalArgumentException("Requested "+n+" samples; must be positive."));
+				return;
+			}
+			synchronized(this) {
+				if(cancelled) return;
+				demand += n;
+				if(demand < 0) demand = Long.MAX_VALUE; //overflowed: unbounded
+				if(polling != null || scheduling) return;
+				scheduling = true;
+			}
+			PIDSubscription s = driver.subscribe(this, pid, maxRate);
+			boolean close;
+			synchronized(this) {
+				scheduling = false;
+				close = cancelled || demand == 0;
+				if(!close) polling = s;
+			}
+			if(close) s.close();
+		}
+
+		@Override
+		public void cancel() {
+			PIDSubscription s;
+			synchronized(this) {
+				if(cancelled) return;
+				cancelled = true;
+				s = polling;
+				polling = null;
+			}
+			if(s != null) s.close();
+		}
+
+		@Override
+		public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+			PIDSubscription pause = null;
+			synchronized(this) {
+				if(cancelled || demand == 0) return;
+				if(demand != Long.MAX_VALUE) demand--;
+				if(demand == 0) {
+					pause = polling;
+					polling = null;
+				}
+			}
+			if(pause != null) pause.close();
+			subscriber.onNext(new PIDReply(pid, numBytes, data, time, driver.getContext().getCatalog()));
+		}
+
+		@Override
+		public void error(OBDError error, int pid) {
+		}
+	}
+}
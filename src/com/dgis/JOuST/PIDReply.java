@@ -0,0 +1,84 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A copy of one sample, for callers that keep results past the
+ * listener callback, such as users of IOBDEventDriver.requestOnce().
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class PIDReply {
+	private final int pid;
+	private final int numBytes;
+	private final byte[] data;
+	private final SampleTime time;
+	private final PIDCatalog catalog;
+
+	/**
+	 * Copies the arguments, which may be reused by the caller afterwards.
+	 * getValue() will use the default catalog.
+	 */
+	public PIDReply(int pid, int numBytes, byte[] data, SampleTime time) {
+		this(pid, numBytes, data, time, null);
+	}
+
+	/**
+	 * Copies the arguments, which may be reused by the caller afterwards.
+	 * @param catalog decodes getValue(), or null for the default catalog.
+	 */
+	public PIDReply(int pid, int numBytes, byte[] data, SampleTime time, PIDCatalog catalog) {
+		this.catalog = catalog;
+		this.pid = pid;
+		this.numBytes = numBytes;
+		int len = 0;
+		while(len < data.length && data[len] != 0) len++;
+		this.data = new byte[len];
+		System.arraycopy(data, 0, this.data, 0, len);
+		this.time = time.copy();
+	}
+
+	public int getPid() {
+		return pid;
+	}
+
+	public int getNumBytes() {
+		return numBytes;
+	}
+
+	/**
+	 * @return the response as handed to PIDResultListener.dataReceived(),
+	 * without the terminating null.
+	 */
+	public byte[] getData() {
+		return data.clone();
+	}
+
+	public SampleTime getTime() {
+		return time.copy();
+	}
+
+	/**
+	 * @return the value decoded by the catalog given to the constructor.
+	 */
+	public double getValue() {
+		return (catalog != null ? catalog : PIDCatalog.getDefault()).decode(pid, data, numBytes);
+	}
+}
@@ -0,0 +1,58 @@
+package com.dgis.JOuST;
+
+import java.util.concurrent.TimeoutException;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The pending result of a one-shot PID request made through
+ * IOBDEventDriver.requestOnce().
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class PIDRequestFuture extends RequestFuture<PIDReply> {
+	final int pid;
+	final PIDResultListener listener;
+
+	PIDRequestFuture(PIDResultListener listener, int pid, long deadlineNanos) {
+		super(deadlineNanos);
+		this.listener = listener;
+		this.pid = pid;
+	}
+
+	public int getPid() {
+		return pid;
+	}
+
+	void complete(int numBytes, byte[] data, SampleTime time, PIDCatalog catalog) {
+		if(succeed(new PIDReply(pid, numBytes, data, time, catalog)) && listener != null)
+			listener.dataReceived(pid, numBytes, data, time);
+	}
+
+	void fail(OBDError error) {
+		if(fail(error.toString(), null) && listener != null) listener.error(error, pid);
+	}
+
+	@Override
+	void expire() {
+		String msg = "Deadline passed before PID "+String.format("%02X", pid)+" could be requested.";
+		if(fail(msg, new TimeoutException()) && listener != null) listener.error(OBDError.DEADLINE_PASSED, pid);
+	}
+}
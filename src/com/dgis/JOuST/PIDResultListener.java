@@ -1,7 +1,15 @@
 package com.dgis.JOuST;
 
 public interface PIDResultListener{
-	void dataReceived(int pid, int numBytes, byte[] data);
-	void error(String msg, int pid); 
+	/**
+	 * @param data the null-terminated response. Reused by the caller after
+	 * this returns; copy it to keep it.
+	 * @param time when the sample was requested and received. Reused by the
+	 * caller after this returns.
+	 */
+	void dataReceived(int pid, int numBytes, byte[] data, SampleTime time);
+	/**
+	 * @param error why pid could not be read.
+	 */
+	void error(OBDError error, int pid);
 }
-
@@ -0,0 +1,48 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * One listener's repeating request for one pid, as returned by
+ * IOBDEventDriver.subscribe(). The driver polls a pid for as long as at
+ * least one subscription to it is open.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public interface PIDSubscription extends AutoCloseable {
+	/**
+	 * @return the pid being polled. Follows the name if subscribed by
+	 * name and the catalog changes.
+	 */
+	public int getPid();
+
+	/**
+	 * @return false once closed, or removed through the driver.
+	 */
+	public boolean isOpen();
+
+	/**
+	 * Stops delivery to this subscription only. If it was the last one
+	 * open for its pid, the pid is dropped from the schedule at once and
+	 * its share of the bus goes to the remaining pids. Does nothing if
+	 * already closed. May be called from the listener.
+	 */
+	@Override
+	public void close();
+}
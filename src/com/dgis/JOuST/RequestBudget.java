@@ -0,0 +1,61 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * How long one request may take, in milliseconds, split three ways: the
+ * wait for the first byte of the answer, the longest silence allowed
+ * between bytes once it has started, and the overall budget from sending
+ * the request to the prompt. Whichever runs out first ends the request,
+ * so a request never takes longer than the overall budget, however the
+ * bytes trickle in.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class RequestBudget {
+	private final int firstByteMillis;
+	private final int interByteMillis;
+	private final int totalMillis;
+
+	public RequestBudget(int firstByteMillis, int interByteMillis, int totalMillis) {
+		if(firstByteMillis <= 0 || interByteMillis <= 0 || totalMillis <= 0)
+			throw new IllegalArgumentException("Budgets must be positive.");
+		this.firstByteMillis = firstByteMillis;
+		this.interByteMillis = interByteMillis;
+		this.totalMillis = totalMillis;
+	}
+
+	public int getFirstByteMillis() {
+		return firstByteMillis;
+	}
+
+	public int getInterByteMillis() {
+		return interByteMillis;
+	}
+
+	public int getTotalMillis() {
+		return totalMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "first byte "+firstByteMillis+"ms, gap "+interByteMillis+"ms, total "+totalMillis+"ms";
+	}
+}
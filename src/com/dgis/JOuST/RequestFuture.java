@@ -0,0 +1,149 @@
+package com.dgis.JOuST;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The pending result of a one-shot request made through an
+ * IOBDEventDriver. get() throws an ExecutionException if the interface
+ * reported an error, with a TimeoutException as its cause if the
+ * request's deadline passed before it could be sent.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public abstract class RequestFuture<T> implements Future<T> {
+	//System.nanoTime() after which the request is no longer worth sending, or 0.
+	final long deadlineNanos;
+
+	private static final int PENDING = 0;
+	private static final int SENT = 1;
+	private static final int SUCCEEDED = 2;
+	private static final int FAILED = 3;
+	private static final int CANCELLED = 4;
+
+	//Only ever moves forward, by CAS, so exactly one of succeed(), fail()
+	//and cancel() wins. The winner stores the outcome before counting down.
+	private final AtomicInteger state = new AtomicInteger(PENDING);
+	private final CountDownLatch done = new CountDownLatch(1);
+	private T result = null;
+	private ExecutionException failure = null;
+
+	RequestFuture(long deadlineNanos) {
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	boolean expired(long now) {
+		return deadlineNanos != 0 && now - deadlineNanos > 0;
+	}
+
+	/**
+	 * Moves to state unless the future is already done.
+	 * @return true if this call did it.
+	 */
+	private boolean finish(int to) {
+		while(true) {
+			int s = state.get();
+			if(s >= SUCCEEDED) return false;
+			if(to == CANCELLED && s == SENT) return false;
+			if(state.compareAndSet(s, to)) return true;
+		}
+	}
+
+	/**
+	 * Marks the request as on the wire, after which cancel() fails.
+	 * @return false if it was cancelled first.
+	 */
+	boolean sent() {
+		return state.compareAndSet(PENDING, SENT) || state.get() == SENT;
+	}
+
+	/**
+	 * @return false if the future was already done; the caller must then
+	 * not tell anyone.
+	 */
+	boolean succeed(T value) {
+		if(!finish(SUCCEEDED)) return false;
+		result = value;
+		done.countDown();
+		return true;
+	}
+
+	/**
+	 * @return false if the future was already done; the caller must then
+	 * not tell anyone.
+	 */
+	boolean fail(String msg, Throwable cause) {
+		if(!finish(FAILED)) return false;
+		failure = new ExecutionException(msg, cause);
+		done.countDown();
+		return true;
+	}
+
+	/**
+	 * Fails the request because its deadline passed.
+	 */
+	abstract void expire();
+
+	/**
+	 * Withdraws the request if it has not been sent yet. A request that is
+	 * already on the wire completes normally, and this returns false.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if(!finish(CANCELLED)) return false;
+		done.countDown();
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return state.get() == CANCELLED;
+	}
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		done.await();
+		return result();
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if(!done.await(timeout, unit)) throw new TimeoutException();
+		return result();
+	}
+
+	private T result() throws ExecutionException {
+		if(isCancelled()) throw new CancellationException();
+		if(failure != null) throw failure;
+		return result;
+	}
+}
@@ -0,0 +1,114 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * When a sample was requested and when its response completed, as
+ * System.nanoTime() values. The ECU measured the value somewhere in
+ * between.
+ *
+ * Instances handed to listeners are owned and reused by the interface;
+ * use copy() or set() to keep one past the callback.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class SampleTime {
+	//Fixed mapping from the monotonic clock to wall clock time.
+	private static final long WALL_BASE_MILLIS = System.currentTimeMillis();
+	private static final long NANO_BASE = System.nanoTime();
+
+	private long requestSentNanos;
+	private long promptReceivedNanos;
+
+	public SampleTime() {}
+
+	public SampleTime(long requestSentNanos, long promptReceivedNanos) {
+		this.requestSentNanos = requestSentNanos;
+		this.promptReceivedNanos = promptReceivedNanos;
+	}
+
+	/**
+	 * @return System.nanoTime() just after the request was written.
+	 */
+	public long getRequestSentNanos() {
+		return requestSentNanos;
+	}
+
+	/**
+	 * @return System.nanoTime() when the prompt ending the response was read.
+	 */
+	public long getPromptReceivedNanos() {
+		return promptReceivedNanos;
+	}
+
+	/**
+	 * @return best estimate of when the value was measured: halfway
+	 * between request and response.
+	 */
+	public long getSampleNanos() {
+		return requestSentNanos + (promptReceivedNanos - requestSentNanos) / 2;
+	}
+
+	/**
+	 * @return time from request to response.
+	 */
+	public long getLatencyNanos() {
+		return promptReceivedNanos - requestSentNanos;
+	}
+
+	/**
+	 * @return getSampleNanos() as a wall clock time, in the units of
+	 * System.currentTimeMillis().
+	 */
+	public long getWallClockMillis() {
+		return toWallClockMillis(getSampleNanos());
+	}
+
+	/**
+	 * Maps a System.nanoTime() value to wall clock time. The mapping is
+	 * fixed when this class is loaded, so it is unaffected by later wall
+	 * clock adjustments.
+	 */
+	public static long toWallClockMillis(long nanos) {
+		return WALL_BASE_MILLIS + (nanos - NANO_BASE) / 1000000L;
+	}
+
+	public void requestSent(long nanos) {
+		requestSentNanos = nanos;
+	}
+
+	public void promptReceived(long nanos) {
+		promptReceivedNanos = nanos;
+	}
+
+	public void set(SampleTime other) {
+		requestSentNanos = other.requestSentNanos;
+		promptReceivedNanos = other.promptReceivedNanos;
+	}
+
+	public SampleTime copy() {
+		return new SampleTime(requestSentNanos, promptReceivedNanos);
+	}
+
+	@Override
+	public String toString() {
+		return "sent="+requestSentNanos+" received="+promptReceivedNanos;
+	}
+}
@@ -0,0 +1,129 @@
+package com.dgis.JOuST;
+
+import java.util.Arrays;
+
+import com.dgis.JOuST.serial.ElmSerial;
+import com.dgis.JOuST.serial.ObdSerial;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * How long an interface driver waits for each kind of answer, in
+ * milliseconds. OBD requests get a RequestBudget, which may differ by
+ * protocol: the slow-init K-line protocols answer much later than CAN.
+ * Immutable; change an adapter's timing by giving its OBDContext a new
+ * profile.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class TimingProfile {
+	/** The timeouts JOuST has always used. */
+	public static final TimingProfile DEFAULT = new TimingProfile(
+			ObdSerial.OBD_REQUEST_TIMEOUT, ObdSerial.ECU_TIMEOUT,
+			ElmSerial.ATZ_TIMEOUT, ElmSerial.AT_TIMEOUT);
+
+	private final int requestTimeout;
+	private final int ecuTimeout;
+	private final int resetTimeout;
+	private final int atTimeout;
+	//Index 0 is used when the protocol is not known.
+	private final RequestBudget[] budgets;
+
+	/** Highest ELM protocol number. */
+	public static final int MAX_PROTOCOL = 0xC;
+	/** Longest silence allowed in an answer by default. */
+	public static final int DEFAULT_INTER_BYTE_MILLIS = 1000;
+
+	/**
+	 * @param requestTimeout wait for the answer to an OBD request.
+	 * @param ecuTimeout wait for the vehicle to answer during the handshake.
+	 * @param resetTimeout wait for the interface to reset.
+	 * @param atTimeout wait for the interface to answer an AT command.
+	 */
+	public TimingProfile(int requestTimeout, int ecuTimeout, int resetTimeout, int atTimeout) {
+		if(requestTimeout <= 0 || ecuTimeout <= 0 || resetTimeout <= 0 || atTimeout <= 0)
+			throw new IllegalArgumentException("Timeouts must be positive.");
+		this.requestTimeout = requestTimeout;
+		this.ecuTimeout = ecuTimeout;
+		this.resetTimeout = resetTimeout;
+		this.atTimeout = atTimeout;
+		budgets = new RequestBudget[MAX_PROTOCOL + 1];
+		Arrays.fill(budgets, new RequestBudget(requestTimeout,
+				Math.min(DEFAULT_INTER_BYTE_MILLIS, requestTimeout), requestTimeout));
+	}
+
+	private TimingProfile(TimingProfile p, RequestBudget[] budgets) {
+		this.requestTimeout = p.requestTimeout;
+		this.ecuTimeout = p.ecuTimeout;
+		this.resetTimeout = p.resetTimeout;
+		this.atTimeout = p.atTimeout;
+		this.budgets = budgets;
+	}
+
+	public int getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	public int getEcuTimeout() {
+		return ecuTimeout;
+	}
+
+	public int getResetTimeout() {
+		return resetTimeout;
+	}
+
+	public int getAtTimeout() {
+		return atTimeout;
+	}
+
+	/**
+	 * @param protocol the ELM protocol number, 1-C, or 0 if unknown.
+	 * @return the budget for an OBD request on that protocol.
+	 */
+	public RequestBudget getBudget(int protocol) {
+		if(protocol < 0 || protocol > MAX_PROTOCOL) protocol = 0;
+		return budgets[protocol];
+	}
+
+	/**
+	 * @param protocol the ELM protocol number, 1-C, or 0 for when the
+	 * protocol is not known.
+	 * @return a copy of this profile using budget for that protocol.
+	 */
+	public TimingProfile withBudget(int protocol, RequestBudget budget) {
+		if(protocol < 0 || protocol > MAX_PROTOCOL) throw new IllegalArgumentException("No such protocol: "+protocol);
+		RequestBudget[] b = budgets.clone();
+		b[protocol] = budget;
+		return new TimingProfile(this, b);
+	}
+
+	/**
+	 * @return a copy of this profile with a new request timeout, and
+	 * default budgets for every protocol to match.
+	 */
+	public TimingProfile withRequestTimeout(int requestTimeout) {
+		return new TimingProfile(requestTimeout, ecuTimeout, resetTimeout, atTimeout);
+	}
+
+	@Override
+	public String toString() {
+		return "request "+requestTimeout+"ms, ECU "+ecuTimeout+"ms, reset "+resetTimeout+"ms, AT "+atTimeout+"ms";
+	}
+}
@@ -0,0 +1,117 @@
+package com.dgis.JOuST;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * What was learned about a vehicle the last time it was connected: the
+ * interface and protocol that worked, which mode 01 PIDs are supported
+ * and by how many ECUs, and how long the vehicle takes to answer.
+ * Loaded by VIN from a VehicleProfileStore so later connections can skip
+ * the protocol search and the supported-PID walk.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class VehicleProfile {
+	private final String vin;
+	private String interfaceType = null;
+	private int protocol = 0;
+	//Number of ECUs answering each mode 01 PID, 0 if unsupported.
+	private final byte[] ecuCount = new byte[256];
+	private boolean pidsKnown = false;
+	private int latencyMillis = -1;
+
+	public VehicleProfile(String vin) {
+		if(vin == null) throw new IllegalArgumentException("A profile needs a VIN.");
+		this.vin = vin;
+	}
+
+	public String getVin() {
+		return vin;
+	}
+
+	/**
+	 * @return the interface identifier, as from ObdSerial.getInterfaceIdentifier(), or null.
+	 */
+	public String getInterfaceType() {
+		return interfaceType;
+	}
+
+	public void setInterfaceType(String interfaceType) {
+		this.interfaceType = interfaceType;
+	}
+
+	/**
+	 * @return the ELM protocol number (1-C), or 0 if unknown.
+	 */
+	public int getProtocol() {
+		return protocol;
+	}
+
+	public void setProtocol(int protocol) {
+		this.protocol = protocol;
+	}
+
+	/**
+	 * @return true once the supported-PID walk has been done for this vehicle.
+	 */
+	public boolean arePidsKnown() {
+		return pidsKnown;
+	}
+
+	public boolean isSupported(int pid) {
+		return getEcuCount(pid) > 0;
+	}
+
+	/**
+	 * @return how many ECUs answer the pid, 0 if none.
+	 */
+	public int getEcuCount(int pid) {
+		if(pid < 0 || pid >= ecuCount.length) return 0;
+		return ecuCount[pid] & 0xFF;
+	}
+
+	public void setEcuCount(int pid, int count) {
+		ecuCount[pid] = (byte)Math.min(count, 255);
+		pidsKnown = true;
+	}
+
+	/**
+	 * Marks the supported-PID walk as done, even if nothing was supported.
+	 */
+	public void setPidsKnown() {
+		pidsKnown = true;
+	}
+
+	/**
+	 * @return typical time from request to response, or -1 if unknown.
+	 */
+	public int getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	public void setLatencyMillis(int latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	@Override
+	public String toString() {
+		return vin + " (" + interfaceType + ", protocol " + Integer.toHexString(protocol).toUpperCase() + ")";
+	}
+}
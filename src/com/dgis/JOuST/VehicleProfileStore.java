@@ -0,0 +1,174 @@
+package com.dgis.JOuST;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Keeps VehicleProfiles on disk, one small properties file per VIN, and
+ * remembers which vehicle was connected last so it can be tried first.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class VehicleProfileStore {
+	private static final String LAST_FILENAME = "last";
+
+	private final File dir;
+
+	/**
+	 * Uses ~/.joust/profiles.
+	 */
+	public VehicleProfileStore() {
+		this(new File(new File(System.getProperty("user.home"), ".joust"), "profiles"));
+	}
+
+	public VehicleProfileStore(File dir) {
+		this.dir = dir;
+	}
+
+	private File fileFor(String vin) {
+		//VINs are alphanumeric, but don't trust what came off the bus with a path.
+		return new File(dir, vin.replaceAll("[^A-Za-z0-9]", "_") + ".properties");
+	}
+
+	/**
+	 * @return the stored profile, or null if there is none or it cannot be read.
+	 */
+	public VehicleProfile load(String vin) {
+		Properties p = new Properties();
+		try {
+			InputStream in = new FileInputStream(fileFor(vin));
+			try {
+				p.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		if(!vin.equals(p.getProperty("vin"))) return null;
+		VehicleProfile profile = new VehicleProfile(vin);
+		try {
+			profile.setInterfaceType(p.getProperty("interface"));
+			profile.setProtocol(Integer.parseInt(p.getProperty("protocol", "0"), 16));
+			profile.setLatencyMillis(Integer.parseInt(p.getProperty("latency", "-1")));
+			String ecus = p.getProperty("ecus");
+			if(ecus != null) {
+				profile.setPidsKnown();
+				//pid:count pairs, e.g. 0C:1,0D:2
+				for(String pair : ecus.split(",")) {
+					if(pair.length() == 0) continue;
+					String[] kv = pair.split(":");
+					profile.setEcuCount(Integer.parseInt(kv[0], 16), Integer.parseInt(kv[1]));
+				}
+			}
+		} catch (RuntimeException e) {
+			//Corrupt file; rediscover.
+			return null;
+		}
+		return profile;
+	}
+
+	/**
+	 * @return the profile of the vehicle saved or marked last, or null.
+	 */
+	public VehicleProfile loadLast() {
+		String vin = readLast();
+		return vin == null ? null : load(vin);
+	}
+
+	/**
+	 * Writes the profile and marks it as the last vehicle connected.
+	 * @throws IOException
+	 */
+	public void save(VehicleProfile profile) throws IOException {
+		Properties p = new Properties();
+		p.setProperty("vin", profile.getVin());
+		if(profile.getInterfaceType() != null) p.setProperty("interface", profile.getInterfaceType());
+		p.setProperty("protocol", Integer.toHexString(profile.getProtocol()));
+		p.setProperty("latency", Integer.toString(profile.getLatencyMillis()));
+		if(profile.arePidsKnown()) {
+			StringBuilder ecus = new StringBuilder();
+			for(int pid=0; pid<256; pid++) {
+				if(!profile.isSupported(pid)) continue;
+				if(ecus.length() > 0) ecus.append(',');
+				ecus.append(String.format("%02X:%d", pid, profile.getEcuCount(pid)));
+			}
+			p.setProperty("ecus", ecus.toString());
+		}
+		dir.mkdirs();
+		OutputStream out = new FileOutputStream(fileFor(profile.getVin()));
+		try {
+			p.store(out, "JOuST vehicle profile");
+		} finally {
+			out.close();
+		}
+		markLast(profile.getVin());
+	}
+
+	/**
+	 * Makes vin the first vehicle tried on the next connection, or clears
+	 * the mark if vin is null.
+	 * @throws IOException
+	 */
+	public void markLast(String vin) throws IOException {
+		File f = new File(dir, LAST_FILENAME);
+		if(vin == null) {
+			f.delete();
+			return;
+		}
+		dir.mkdirs();
+		OutputStream out = new FileOutputStream(f);
+		try {
+			out.write(vin.getBytes("US-ASCII"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private String readLast() {
+		File f = new File(dir, LAST_FILENAME);
+		if(!f.isFile() || f.length() > 64) return null;
+		try {
+			InputStream in = new FileInputStream(f);
+			try {
+				byte[] b = new byte[(int)f.length()];
+				int len = 0;
+				while(len < b.length) {
+					int n = in.read(b, len, b.length - len);
+					if(n < 0) break;
+					len += n;
+				}
+				String vin = new String(b, 0, len, "US-ASCII").trim();
+				return vin.length() == 0 ? null : vin;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package com.dgis.JOuST.derived;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dgis.JOuST.IOBDEventDriver;
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.PIDNotFoundException;
+import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.SampleTime;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Computes derived signals (fuel economy, fuel rate, averages...) from
+ * the PIDs delivered by an IOBDEventDriver, incrementally as each sample
+ * arrives.
+ *
+ * Signals form a graph: raw PIDs at the leaves, DerivedSignals combining
+ * them, and windowed aggregates over either. When any input of a derived
+ * signal updates, all of its inputs are linearly interpolated to the
+ * latest instant every input has reached, so values that arrived at
+ * different times are never paired blindly. Nothing is polled until a
+ * signal depending on it has a listener.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class DerivedMetricEngine {
+	private final IOBDEventDriver driver;
+	private final Map<String, Node> nodes = new HashMap<String, Node>();
+	private final Map<Integer, SourceNode> sources = new HashMap<Integer, SourceNode>();
+
+	public DerivedMetricEngine(IOBDEventDriver driver) {
+		this.driver = driver;
+	}
+
+	/**
+	 * Makes a derived signal available for subscription. Its inputs must be
+	 * known PIDs or signals defined earlier.
+	 * @throws PIDNotFoundException if an input cannot be resolved.
+	 */
+	public synchronized void define(DerivedSignal signal) throws PIDNotFoundException {
+		checkUnused(signal.getName());
+		Node[] inputs = new Node[signal.getInputCount()];
+		for(int x=0; x<inputs.length; x++) {
+			String name = signal.getInputName(x);
+			inputs[x] = name == null ? source(signal.getInputPid(x)) : resolve(name);
+		}
+		nodes.put(signal.getName(), new FormulaNode(signal, inputs));
+	}
+
+	/**
+	 * Makes an aggregate over another signal or PID available for subscription.
+	 * @param name name of the new signal.
+	 * @param input name of the signal or PID to aggregate.
+	 * @param agg the aggregate. Owned by this engine from now on.
+	 * @throws PIDNotFoundException if input cannot be resolved.
+	 */
+	public synchronized void defineAggregate(String name, String input, WindowedAggregate agg) throws PIDNotFoundException {
+		checkUnused(name);
+		nodes.put(name, new AggregateNode(name, resolve(input), agg));
+	}
+
+	/**
+	 * Calls list with every new value of the named signal or PID.
+	 * @throws PIDNotFoundException if name cannot be resolved.
+	 */
+	public boolean scheduleRepeating(DerivedResultListener list, String name) throws PIDNotFoundException {
+		List<SourceNode> started = new ArrayList<SourceNode>();
+		synchronized(this) {
+			Node n = resolve(name);
+			n.listeners.add(list);
+			n.activate(started);
+		}
+		subscribe(started);
+		return true;
+	}
+
+	/**
+	 * Calls list with every new value of the PID, decoded by the driver's catalog.
+	 */
+	public boolean scheduleRepeating(DerivedResultListener list, int pid) {
+		List<SourceNode> started = new ArrayList<SourceNode>();
+		synchronized(this) {
+			Node n = source(pid);
+			n.listeners.add(list);
+			n.activate(started);
+		}
+		subscribe(started);
+		return true;
+	}
+
+	/**
+	 * Has the driver poll newly activated PIDs. Called without this
+	 * engine's lock: the driver hands samples over on its own thread,
+	 * which then takes that lock, so taking the two in the other order
+	 * here could deadlock.
+	 */
+	private void subscribe(List<SourceNode> started) {
+		for(int x=0; x<started.size(); x++)
+			driver.scheduleRepeating(started.get(x), started.get(x).pid);
+	}
+
+	private void checkUnused(String name) {
+		if(nodes.containsKey(name) || driver.getContext().getCatalog().getPid(name) >= 0)
+			throw new IllegalArgumentException("Signal name already in use: "+name);
+	}
+
+	private Node resolve(String name) throws PIDNotFoundException {
+		Node n = nodes.get(name);
+		if(n != null) return n;
+		int pid = driver.getContext().getCatalog().getPid(name);
+		if(pid < 0) throw new PIDNotFoundException(-1);
+		return source(pid);
+	}
+
+	private SourceNode source(int pid) {
+		SourceNode n = sources.get(pid);
+		if(n == null) {
+			n = new SourceNode(pid);
+			sources.put(pid, n);
+		}
+		return n;
+	}
+
+	abstract class Node {
+		final String name;
+		final List<DerivedResultListener> listeners = new ArrayList<DerivedResultListener>();
+		final List<Node> children = new ArrayList<Node>();
+		boolean active = false;
+
+		Node(String name) {
+			this.name = name;
+		}
+
+		void activate(List<SourceNode> started) {
+			if(active) return;
+			active = true;
+			start(started);
+		}
+
+		/**
+		 * Start producing values. Called at most once.
+		 * @param started PIDs that need polling are added to this, for the
+		 * caller to subscribe to once it has let go of the engine's lock.
+		 */
+		abstract void start(List<SourceNode> started);
+
+		/**
+		 * Called when one of this node's inputs has a new value.
+		 */
+		void inputUpdated(Node input, double value, long time) {}
+
+		void publish(double value, long time) {
+			for(int x=0; x<listeners.size(); x++)
+				listeners.get(x).valueReceived(name, value, time);
+			for(int x=0; x<children.size(); x++)
+				if(children.get(x).active) children.get(x).inputUpdated(this, value, time);
+		}
+
+		void publishError(String msg) {
+			for(int x=0; x<listeners.size(); x++)
+				listeners.get(x).error(msg, name);
+			for(int x=0; x<children.size(); x++)
+				children.get(x).publishError(msg);
+		}
+	}
+
+	final class SourceNode extends Node implements PIDResultListener {
+		final int pid;
+
+		SourceNode(int pid) {
+			super(String.format("0x%02X", pid));
+			this.pid = pid;
+		}
+
+		@Override
+		void start(List<SourceNode> started) {
+			started.add(this);
+		}
+
+		@Override
+		public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+			long now = time.getSampleNanos();
+			double v = driver.getContext().getCatalog().decode(pid, data, numBytes);
+			synchronized(DerivedMetricEngine.this) {
+				if(Double.isNaN(v)) publishError("Could not decode PID "+name);
+				else publish(v, now);
+			}
+		}
+
+		@Override
+		public void error(OBDError error, int pid) {
+			synchronized(DerivedMetricEngine.this) {
+				publishError(error.toString());
+			}
+		}
+	}
+
+	final class FormulaNode extends Node {
+		final DerivedSignal signal;
+		final Node[] inputs;
+		//Last two samples of each input.
+		final long[] prevTime, lastTime;
+		final double[] prevValue, lastValue;
+		final int[] seen;
+		final double[] aligned;
+		long lastEmitted = Long.MIN_VALUE;
+
+		FormulaNode(DerivedSignal signal, Node[] inputs) {
+			super(signal.getName());
+			this.signal = signal;
+			this.inputs = inputs;
+			int n = inputs.length;
+			prevTime = new long[n];
+			lastTime = new long[n];
+			prevValue = new double[n];
+			lastValue = new double[n];
+			seen = new int[n];
+			aligned = new double[n];
+			for(Node in : inputs)
+				if(!in.children.contains(this)) in.children.add(this);
+		}
+
+		@Override
+		void start(List<SourceNode> started) {
+			for(Node in : inputs) in.activate(started);
+		}
+
+		@Override
+		void inputUpdated(Node input, double value, long time) {
+			for(int x=0; x<inputs.length; x++) {
+				if(inputs[x] != input) continue;
+				prevTime[x] = lastTime[x];
+				prevValue[x] = lastValue[x];
+				lastTime[x] = time;
+				lastValue[x] = value;
+				if(seen[x] < 2) seen[x]++;
+			}
+			//Align to the latest instant every input has reached.
+			long t = Long.MAX_VALUE;
+			for(int x=0; x<inputs.length; x++) {
+				if(seen[x] == 0) return;
+				if(lastTime[x] < t) t = lastTime[x];
+			}
+			if(t <= lastEmitted) return;
+			for(int x=0; x<inputs.length; x++)
+				aligned[x] = valueAt(x, t);
+			lastEmitted = t;
+			publish(signal.compute(aligned), t);
+		}
+
+		private double valueAt(int x, long t) {
+			if(lastTime[x] == t || seen[x] < 2) return lastValue[x];
+			if(prevTime[x] >= t) return prevValue[x];
+			double f = (double)(t - prevTime[x]) / (lastTime[x] - prevTime[x]);
+			return prevValue[x] + f * (lastValue[x] - prevValue[x]);
+		}
+	}
+
+	final class AggregateNode extends Node {
+		final Node input;
+		final WindowedAggregate agg;
+
+		AggregateNode(String name, Node input, WindowedAggregate agg) {
+			super(name);
+			this.input = input;
+			this.agg = agg;
+			input.children.add(this);
+		}
+
+		@Override
+		void start(List<SourceNode> started) {
+			input.activate(started);
+		}
+
+		@Override
+		void inputUpdated(Node in, double value, long time) {
+			agg.add(value);
+			publish(agg.value(), time);
+		}
+	}
+}
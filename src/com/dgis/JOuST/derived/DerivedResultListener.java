@@ -0,0 +1,35 @@
+package com.dgis.JOuST.derived;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Receives values computed by a DerivedMetricEngine.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public interface DerivedResultListener {
+	/**
+	 * @param name the signal the value belongs to.
+	 * @param value the value, in the signal's units.
+	 * @param timeNanos the System.nanoTime() the value is aligned to.
+	 */
+	void valueReceived(String name, double value, long timeNanos);
+	void error(String msg, String name);
+}
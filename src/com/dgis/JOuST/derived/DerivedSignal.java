@@ -0,0 +1,84 @@
+package com.dgis.JOuST.derived;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A value computed from one or more other signals. Inputs are either raw
+ * PIDs or previously defined signals; compute() receives their values
+ * interpolated to a common timestamp, in the order they were declared.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public abstract class DerivedSignal {
+	private final String name;
+	private final int[] inputPids;
+	private final String[] inputNames;
+
+	/**
+	 * @param name name to subscribe to this signal by.
+	 * @param inputPids the mode 01 PIDs this signal is computed from.
+	 */
+	public DerivedSignal(String name, int... inputPids) {
+		this.name = name;
+		this.inputPids = inputPids.clone();
+		this.inputNames = new String[inputPids.length];
+	}
+
+	/**
+	 * @param name name to subscribe to this signal by.
+	 * @param inputNames PID names (as in the config file) or names of
+	 * other derived signals this signal is computed from.
+	 */
+	public DerivedSignal(String name, String... inputNames) {
+		this.name = name;
+		this.inputNames = inputNames.clone();
+		this.inputPids = new int[inputNames.length];
+		for(int x=0; x<inputPids.length; x++) inputPids[x] = -1;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getInputCount() {
+		return inputPids.length;
+	}
+
+	/**
+	 * @return the PID of input i, or -1 if it was declared by name.
+	 */
+	public int getInputPid(int i) {
+		return inputPids[i];
+	}
+
+	/**
+	 * @return the name of input i, or null if it was declared by PID.
+	 */
+	public String getInputName(int i) {
+		return inputNames[i];
+	}
+
+	/**
+	 * @param inputs input values aligned to the same instant. Do not keep a
+	 * reference; the array is reused.
+	 * @return the value of this signal at that instant.
+	 */
+	public abstract double compute(double[] inputs);
+}
@@ -0,0 +1,54 @@
+package com.dgis.JOuST.derived;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Exponentially weighted moving average.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class ExponentialAverage implements WindowedAggregate {
+	private final double alpha;
+	private double value = Double.NaN;
+
+	/**
+	 * @param alpha weight of each new value, 0 &lt; alpha &lt;= 1.
+	 */
+	public ExponentialAverage(double alpha) {
+		if(!(alpha > 0 && alpha <= 1)) throw new IllegalArgumentException("alpha must be in (0, 1].");
+		this.alpha = alpha;
+	}
+
+	@Override
+	public void add(double v) {
+		if(Double.isNaN(value)) value = v;
+		else value += alpha * (v - value);
+	}
+
+	@Override
+	public double value() {
+		return value;
+	}
+
+	@Override
+	public void reset() {
+		value = Double.NaN;
+	}
+}
@@ -0,0 +1,67 @@
+package com.dgis.JOuST.derived;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Mean of the last N values, kept as a running sum over a ring buffer.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class MovingAverage implements WindowedAggregate {
+	private final double[] values;
+	private int ptr = 0;
+	private int count = 0;
+	private double sum = 0;
+
+	/**
+	 * @param size number of values to average over.
+	 */
+	public MovingAverage(int size) {
+		if(size <= 0) throw new IllegalArgumentException("Window size must be positive.");
+		values = new double[size];
+	}
+
+	@Override
+	public void add(double v) {
+		if(count == values.length) sum -= values[ptr];
+		else count++;
+		values[ptr] = v;
+		sum += v;
+		ptr++;
+		if(ptr == values.length) {
+			ptr = 0;
+			//Once per lap, throw away accumulated rounding error.
+			sum = 0;
+			for(int x=0; x<count; x++) sum += values[x];
+		}
+	}
+
+	@Override
+	public double value() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	@Override
+	public void reset() {
+		ptr = 0;
+		count = 0;
+		sum = 0;
+	}
+}
@@ -0,0 +1,95 @@
+package com.dgis.JOuST.derived;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Derived signals that only need standard mode 01 PIDs.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class StandardSignals {
+	public static final int PID_RPM = 0x0C;
+	public static final int PID_SPEED = 0x0D;
+	public static final int PID_MAF = 0x10;
+
+	static final double STOICH = 14.7;
+	static final double GASOLINE_DENSITY = 6.17; //pounds per gallon
+	static final double GRAM_PER_POUND = 453.59237;
+	static final double MILE_PER_KM = 0.62137119;
+	static final double SECOND_PER_HOUR = 3600;
+	static final double LITER_PER_GALLON = 3.78541178;
+
+	private StandardSignals() {}
+
+	/**
+	 * Fuel consumed, in US gallons per hour, estimated from mass air flow
+	 * assuming a stoichiometric gasoline mixture.
+	 */
+	public static DerivedSignal fuelRate(String name) {
+		return new DerivedSignal(name, PID_MAF){
+			@Override
+			public double compute(double[] in) {
+				return gallonsPerHour(in[0]);
+			}
+		};
+	}
+
+	/**
+	 * Instantaneous fuel economy, in miles per US gallon.
+	 */
+	public static DerivedSignal milesPerGallon(String name) {
+		return new DerivedSignal(name, PID_SPEED, PID_MAF){
+			@Override
+			public double compute(double[] in) {
+				return milesPerGallon(in[0], in[1]);
+			}
+		};
+	}
+
+	/**
+	 * Instantaneous fuel consumption, in liters per 100km.
+	 */
+	public static DerivedSignal litersPer100Km(String name) {
+		return new DerivedSignal(name, PID_SPEED, PID_MAF){
+			@Override
+			public double compute(double[] in) {
+				if(in[0] <= 0) return Double.POSITIVE_INFINITY;
+				return gallonsPerHour(in[1]) * LITER_PER_GALLON * 100 / in[0];
+			}
+		};
+	}
+
+	/**
+	 * @param maf mass air flow, g/s.
+	 * @return fuel flow, gal/h.
+	 */
+	public static double gallonsPerHour(double maf) {
+		return maf * SECOND_PER_HOUR / (STOICH * GRAM_PER_POUND * GASOLINE_DENSITY);
+	}
+
+	/**
+	 * @param speed vehicle speed, km/h.
+	 * @param maf mass air flow, g/s.
+	 * @return fuel economy, mpg.
+	 */
+	public static double milesPerGallon(double speed, double maf) {
+		return (STOICH * GASOLINE_DENSITY * GRAM_PER_POUND * speed * MILE_PER_KM)/(SECOND_PER_HOUR * maf);
+	}
+}
@@ -0,0 +1,219 @@
+package com.dgis.JOuST.derived;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Splits the stream of RPM, speed and mass air flow samples into trips,
+ * and keeps each trip's distance, fuel used and idle time as the samples
+ * arrive. Each sample costs a constant amount of work and nothing is kept
+ * but running totals, so a trip of any length takes the same memory.
+ *
+ * A trip starts with the first sample that shows the engine running or
+ * the vehicle moving, and ends once neither has been true for the stop
+ * hold time, or nothing has been heard for that long. It ends at the last
+ * moment either was true, so the hold is not counted.
+ *
+ * Distance and fuel are integrated between consecutive samples of speed
+ * and mass air flow with the trapezoid rule. A gap longer than the
+ * maximum gap is not integrated, since nothing is known about it. Idle
+ * time is time with the engine running and the speed below IDLE_SPEED.
+ *
+ * Feed it with update(), or attach() it to a DerivedMetricEngine. When
+ * samples can stop altogether, e.g. the ignition is switched off, call
+ * tick() now and then so the trip still ends; attach() does so whenever
+ * the engine reports an error.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class TripEngine {
+	/**
+	 * RPM at or above which the engine counts as running.
+	 */
+	public static final double ENGINE_ON_RPM = 300;
+	/**
+	 * Speed in km/h below which the vehicle counts as standing.
+	 */
+	public static final double IDLE_SPEED = 1;
+	public static final long DEFAULT_STOP_HOLD_MILLIS = 60 * 1000;
+	public static final long DEFAULT_MAX_GAP_MILLIS = 5 * 1000;
+
+	private final long stopHoldNanos;
+	private final long maxGapNanos;
+	private final List<TripListener> listeners = new CopyOnWriteArrayList<TripListener>();
+
+	//Latest sample of each input and its time; NaN until the first.
+	private double rpm = Double.NaN;
+	private double speed = Double.NaN;
+	private double maf = Double.NaN;
+	private long rpmNanos;
+	private long speedNanos;
+	private long mafNanos;
+	//Latest sample of any input.
+	private long lastNanos;
+
+	//The trip in progress.
+	private boolean inTrip = false;
+	private long startNanos;
+	//Last time the engine was running or the vehicle moving.
+	private long activeNanos;
+	private double distanceKm;
+	private double fuelGallons;
+	private long idleNanos;
+	private double maxSpeed;
+
+	public TripEngine() {
+		this(DEFAULT_STOP_HOLD_MILLIS, DEFAULT_MAX_GAP_MILLIS);
+	}
+
+	/**
+	 * @param stopHoldMillis how long the engine must be off and the vehicle
+	 * still before a trip ends.
+	 * @param maxGapMillis longest time between two samples of an input
+	 * that is still integrated.
+	 */
+	public TripEngine(long stopHoldMillis, long maxGapMillis) {
+		if(stopHoldMillis <= 0 || maxGapMillis <= 0) throw new IllegalArgumentException("Times must be positive.");
+		stopHoldNanos = stopHoldMillis * 1000000L;
+		maxGapNanos = maxGapMillis * 1000000L;
+	}
+
+	public void addListener(TripListener list) {
+		listeners.add(list);
+	}
+
+	public void removeListener(TripListener list) {
+		listeners.remove(list);
+	}
+
+	/**
+	 * Subscribes to the RPM, speed and mass air flow PIDs of engine.
+	 */
+	public void attach(DerivedMetricEngine engine) {
+		engine.scheduleRepeating(new Input(StandardSignals.PID_RPM), StandardSignals.PID_RPM);
+		engine.scheduleRepeating(new Input(StandardSignals.PID_SPEED), StandardSignals.PID_SPEED);
+		engine.scheduleRepeating(new Input(StandardSignals.PID_MAF), StandardSignals.PID_MAF);
+	}
+
+	/**
+	 * Takes a sample. Other PIDs are ignored.
+	 * @param pid StandardSignals.PID_RPM, PID_SPEED or PID_MAF.
+	 * @param value in RPM, km/h or g/s.
+	 * @param timeNanos the System.nanoTime() the sample was taken.
+	 */
+	public synchronized void update(int pid, double value, long timeNanos) {
+		if(Double.isNaN(value)) return;
+		tick(timeNanos);
+		switch(pid) {
+		case StandardSignals.PID_RPM:
+			rpm = value;
+			rpmNanos = timeNanos;
+			break;
+		case StandardSignals.PID_SPEED:
+			if(inTrip && !Double.isNaN(speed) && integrable(speedNanos, timeNanos)) {
+				double hours = (timeNanos - speedNanos) / 3.6e12;
+				distanceKm += (speed + value) / 2 * hours;
+				if(speed < IDLE_SPEED && engineRunning()) idleNanos += timeNanos - speedNanos;
+			}
+			speed = value;
+			speedNanos = timeNanos;
+			break;
+		case StandardSignals.PID_MAF:
+			if(inTrip && !Double.isNaN(maf) && integrable(mafNanos, timeNanos)) {
+				double hours = (timeNanos - mafNanos) / 3.6e12;
+				fuelGallons += StandardSignals.gallonsPerHour((maf + value) / 2) * hours;
+			}
+			maf = value;
+			mafNanos = timeNanos;
+			break;
+		default:
+			return;
+		}
+		lastNanos = timeNanos;
+		if(!active()) return;
+		activeNanos = timeNanos;
+		if(!inTrip) {
+			inTrip = true;
+			startNanos = timeNanos;
+			distanceKm = 0;
+			fuelGallons = 0;
+			idleNanos = 0;
+			maxSpeed = 0;
+			for(TripListener list : listeners)
+				list.tripStarted(startNanos);
+		}
+		if(speed > maxSpeed) maxSpeed = speed;
+	}
+
+	private boolean integrable(long from, long to) {
+		return to - from > 0 && to - from <= maxGapNanos && from - startNanos >= 0;
+	}
+
+	private boolean engineRunning() {
+		return rpm >= ENGINE_ON_RPM;
+	}
+
+	private boolean active() {
+		return engineRunning() || speed >= IDLE_SPEED;
+	}
+
+	/**
+	 * Ends the trip in progress if the engine has been off and the vehicle
+	 * still, or nothing has been heard, for the stop hold time.
+	 * @param nowNanos the current System.nanoTime().
+	 */
+	public synchronized void tick(long nowNanos) {
+		if(!inTrip || nowNanos - activeNanos < stopHoldNanos) return;
+		inTrip = false;
+		//Samples from before the trip ended must not be integrated into the next.
+		rpm = speed = maf = Double.NaN;
+		TripSummary summary = new TripSummary(startNanos, activeNanos, distanceKm, fuelGallons, idleNanos, maxSpeed, true);
+		for(TripListener list : listeners)
+			list.tripEnded(summary);
+	}
+
+	/**
+	 * @return the totals of the trip in progress so far, or null if there
+	 * is none.
+	 */
+	public synchronized TripSummary getCurrent() {
+		if(!inTrip) return null;
+		return new TripSummary(startNanos, lastNanos, distanceKm, fuelGallons, idleNanos, maxSpeed, false);
+	}
+
+	private final class Input implements DerivedResultListener {
+		private final int pid;
+
+		Input(int pid) {
+			this.pid = pid;
+		}
+
+		@Override
+		public void valueReceived(String name, double value, long timeNanos) {
+			update(pid, value, timeNanos);
+		}
+
+		@Override
+		public void error(String msg, String name) {
+			tick(System.nanoTime());
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.dgis.JOuST.derived;
+
+import com.dgis.JOuST.SampleTime;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Totals for one trip, as computed by a TripEngine.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class TripSummary {
+	private final long startNanos;
+	private final long endNanos;
+	private final double distanceKm;
+	private final double fuelGallons;
+	private final long idleNanos;
+	private final double maxSpeed;
+	private final boolean finished;
+
+	TripSummary(long startNanos, long endNanos, double distanceKm, double fuelGallons, long idleNanos, double maxSpeed, boolean finished) {
+		this.startNanos = startNanos;
+		this.endNanos = endNanos;
+		this.distanceKm = distanceKm;
+		this.fuelGallons = fuelGallons;
+		this.idleNanos = idleNanos;
+		this.maxSpeed = maxSpeed;
+		this.finished = finished;
+	}
+
+	/**
+	 * @return the System.nanoTime() the trip started at.
+	 */
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+	/**
+	 * @return the System.nanoTime() the trip ended at, or of the latest
+	 * sample if it has not.
+	 */
+	public long getEndNanos() {
+		return endNanos;
+	}
+
+	public long getStartMillis() {
+		return SampleTime.toWallClockMillis(startNanos);
+	}
+
+	public long getEndMillis() {
+		return SampleTime.toWallClockMillis(endNanos);
+	}
+
+	public long getDurationMillis() {
+		return (endNanos - startNanos) / 1000000L;
+	}
+
+	public double getDistanceKm() {
+		return distanceKm;
+	}
+
+	public double getDistanceMiles() {
+		return distanceKm * StandardSignals.MILE_PER_KM;
+	}
+
+	/**
+	 * @return fuel used, in US gallons, estimated from mass air flow.
+	 */
+	public double getFuelGallons() {
+		return fuelGallons;
+	}
+
+	/**
+	 * @return average fuel economy over the trip, in miles per US gallon,
+	 * or NaN if no fuel was used.
+	 */
+	public double getMilesPerGallon() {
+		return fuelGallons > 0 ? getDistanceMiles() / fuelGallons : Double.NaN;
+	}
+
+	/**
+	 * @return time spent with the engine running and the vehicle standing.
+	 */
+	public long getIdleMillis() {
+		return idleNanos / 1000000L;
+	}
+
+	/**
+	 * @return the highest speed seen, in km/h.
+	 */
+	public double getMaxSpeed() {
+		return maxSpeed;
+	}
+
+	/**
+	 * @return false if this is a snapshot of the trip in progress.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d s, %.2f km, %.3f gal, %.1f mpg, %d s idle, max %.0f km/h%s",
+				getDurationMillis() / 1000, distanceKm, fuelGallons, getMilesPerGallon(),
+				getIdleMillis() / 1000, maxSpeed, finished ? "" : " (in progress)");
+	}
+}
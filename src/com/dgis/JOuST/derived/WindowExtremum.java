@@ -0,0 +1,85 @@
+package com.dgis.JOuST.derived;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Minimum or maximum of the last N values. Keeps a monotonic queue of
+ * candidates, so each value is pushed and popped at most once.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class WindowExtremum implements WindowedAggregate {
+	private final boolean max;
+	private final int size;
+	//Ring of candidates, oldest at head. Values are monotonic from head to tail.
+	private final double[] values;
+	private final long[] index;
+	private int head = 0;
+	private int length = 0;
+	private long count = 0;
+
+	public static WindowExtremum min(int size) {
+		return new WindowExtremum(size, false);
+	}
+
+	public static WindowExtremum max(int size) {
+		return new WindowExtremum(size, true);
+	}
+
+	private WindowExtremum(int size, boolean max) {
+		if(size <= 0) throw new IllegalArgumentException("Window size must be positive.");
+		this.size = size;
+		this.max = max;
+		values = new double[size];
+		index = new long[size];
+	}
+
+	@Override
+	public void add(double v) {
+		//Drop candidates that can never be the answer again.
+		while(length > 0) {
+			double tail = values[(head + length - 1) % size];
+			if(max ? tail > v : tail < v) break;
+			length--;
+		}
+		//Drop the head if it has left the window.
+		if(length > 0 && index[head] <= count - size) {
+			head = (head + 1) % size;
+			length--;
+		}
+		int slot = (head + length) % size;
+		values[slot] = v;
+		index[slot] = count;
+		length++;
+		count++;
+	}
+
+	@Override
+	public double value() {
+		return length == 0 ? Double.NaN : values[head];
+	}
+
+	@Override
+	public void reset() {
+		head = 0;
+		length = 0;
+		count = 0;
+	}
+}
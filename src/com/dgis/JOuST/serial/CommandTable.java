@@ -0,0 +1,100 @@
+package com.dgis.JOuST.serial;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Every request an ELM interface is sent for a PID, and the start of the
+ * answer to look for, encoded once when the class loads. The request
+ * path only looks them up.
+ *
+ * Requests are "MMPP\r" (mode, PID, carriage return), except mode 02,
+ * which asks for freeze frame 00: "02PP00\r". Answers start with the
+ * mode plus 0x40 and the PID: "41PP", "42PP" and so on. Modes that do
+ * not take a PID have no entries.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class CommandTable {
+	/** Modes that take a PID. */
+	private static final int[] PID_MODES = {0x01, 0x02, 0x05, 0x06, 0x08, 0x09};
+
+	private static final byte[][][] COMMANDS = new byte[0x10][][];
+	private static final byte[][][] PREFIXES = new byte[0x10][][];
+	private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+	static {
+		for (int mode : PID_MODES) {
+			COMMANDS[mode] = new byte[256][];
+			PREFIXES[mode] = new byte[256][];
+			for (int pid = 0; pid < 256; pid++) {
+				byte[] cmd = new byte[mode == 0x02 ? 7 : 5];
+				hex(cmd, 0, mode);
+				hex(cmd, 2, pid);
+				if (mode == 0x02) hex(cmd, 4, 0);
+				cmd[cmd.length - 1] = '\r';
+				COMMANDS[mode][pid] = cmd;
+				byte[] prefix = new byte[4];
+				hex(prefix, 0, mode + 0x40);
+				hex(prefix, 2, pid);
+				PREFIXES[mode][pid] = prefix;
+			}
+		}
+	}
+
+	private CommandTable() {
+	}
+
+	private static void hex(byte[] b, int off, int value) {
+		b[off] = HEX[(value >> 4) & 0xF];
+		b[off + 1] = HEX[value & 0xF];
+	}
+
+	/**
+	 * @return true if the table has entries for mode and pid.
+	 */
+	public static boolean contains(int mode, int pid) {
+		return mode >= 0 && mode < COMMANDS.length && COMMANDS[mode] != null
+				&& pid >= 0 && pid < 256;
+	}
+
+	/**
+	 * @return the request, ending in a carriage return. Shared; do not modify.
+	 * @throws IllegalArgumentException if !contains(mode, pid).
+	 */
+	public static byte[] command(int mode, int pid) {
+		check(mode, pid);
+		return COMMANDS[mode][pid];
+	}
+
+	/**
+	 * @return the hex digits every answer to the request starts with, with
+	 * no spaces. Shared; do not modify.
+	 * @throws IllegalArgumentException if !contains(mode, pid).
+	 */
+	public static byte[] responsePrefix(int mode, int pid) {
+		check(mode, pid);
+		return PREFIXES[mode][pid];
+	}
+
+	private static void check(int mode, int pid) {
+		if (!contains(mode, pid))
+			throw new IllegalArgumentException("No command for mode "+mode+", PID "+pid+".");
+	}
+}
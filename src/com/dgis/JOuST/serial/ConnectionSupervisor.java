@@ -0,0 +1,399 @@
+package com.dgis.JOuST.serial;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.dgis.JOuST.ConnectionState;
+import com.dgis.JOuST.ConnectionStateListener;
+import com.dgis.JOuST.DTCMode;
+import com.dgis.JOuST.DTCResultListener;
+import com.dgis.JOuST.DiagnosticTroubleCode;
+import com.dgis.JOuST.OBDContext;
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.OBDLog;
+import com.dgis.JOuST.OBDRequest;
+import com.dgis.JOuST.OBDResponseListener;
+import com.dgis.JOuST.PIDNotFoundException;
+import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.SampleTime;
+import com.dgis.JOuST.VehicleProfile;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Wraps an ObdSerial and keeps its link to the vehicle up. Hand it to an
+ * OBDEventDriver in place of the device.
+ *
+ * The link is considered lost when a request throws an IOException, or
+ * when several requests in a row time out or the interface reports that
+ * it cannot reach the vehicle (UNABLE TO CONNECT, bus and CAN errors).
+ * The supervisor then reconnects in the thread that made the request,
+ * which for an event driver pauses all scheduling, backing off
+ * exponentially between attempts. Once the vehicle answers, the request
+ * that failed is reported as an error and the driver carries on with all
+ * of its subscriptions.
+ *
+ * Reconnecting blocks until it succeeds. Interrupt the requesting thread,
+ * or call stop(), to give up.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class ConnectionSupervisor implements ObdSerial {
+	public static final int DEFAULT_MAX_FAILURES = 3;
+	public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 250;
+	public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30000;
+
+	private final ObdSerial device;
+	private final LinkReconnector reconnector;
+	private final OBDLog logger;
+	private final List<ConnectionStateListener> listeners = new CopyOnWriteArrayList<ConnectionStateListener>();
+
+	private volatile ConnectionState state = ConnectionState.CONNECTED;
+	private volatile boolean stopped = false;
+	//Requests in a row that timed out or hit a link error. Only touched
+	//by the requesting thread.
+	private int consecutiveFailures = 0;
+	//See how each request ends on its way to the caller's listener.
+	//Reused, as only the requesting thread makes requests.
+	private final PIDOutcome pidOutcome = new PIDOutcome();
+	private final DTCOutcome dtcOutcome = new DTCOutcome();
+
+	private volatile int maxFailures = DEFAULT_MAX_FAILURES;
+	private volatile long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+	private volatile long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+
+	/**
+	 * Reconnects with a full handshake.
+	 */
+	public ConnectionSupervisor(ObdSerial device) {
+		this(device, handshake(null));
+	}
+
+	public ConnectionSupervisor(ObdSerial device, LinkReconnector reconnector) {
+		this.device = device;
+		this.reconnector = reconnector;
+		this.logger = device.getContext().getLog();
+	}
+
+	/**
+	 * @param profile the vehicle's profile, or null.
+	 * @return a reconnector that warm starts an ElmSerial straight onto
+	 * the profile's protocol, falling back to a full handshake, or does
+	 * the full handshake if there is no profile.
+	 */
+	public static LinkReconnector handshake(final VehicleProfile profile) {
+		return new LinkReconnector() {
+			@Override
+			public boolean reconnect(ObdSerial device) throws IOException {
+				if(profile != null && device instanceof ElmSerial)
+					return ((ElmSerial)device).resetAndHandshake(profile).foundDevice;
+				return device.resetAndHandshake().foundDevice;
+			}
+		};
+	}
+
+	/**
+	 * @param maxFailures requests in a row that may time out or hit a
+	 * link error before the link is considered lost.
+	 * @param initialBackoffMillis wait after the first failed attempt.
+	 * @param maxBackoffMillis the wait doubles up to this.
+	 */
+	public void setPolicy(int maxFailures, long initialBackoffMillis, long maxBackoffMillis) {
+		if(maxFailures < 1 || initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis)
+			throw new IllegalArgumentException("Invalid reconnection policy.");
+		this.maxFailures = maxFailures;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	public ConnectionState getState() {
+		return state;
+	}
+
+	public void addStateListener(ConnectionStateListener list) {
+		listeners.add(list);
+	}
+
+	public void removeStateListener(ConnectionStateListener list) {
+		listeners.remove(list);
+	}
+
+	private void setState(ConnectionState now, String reason) {
+		ConnectionState old = state;
+		if(old == now) return;
+		state = now;
+		logger.logInfo("Connection "+now+": "+reason);
+		for(ConnectionStateListener list : listeners)
+			list.stateChanged(old, now, reason);
+	}
+
+	/**
+	 * Counts requests in a row that timed out or hit a link error, and
+	 * reconnects once there are too many.
+	 * @param failed whether the request just made did.
+	 * @throws IOException if reconnecting was given up.
+	 */
+	private void checkFailures(boolean failed) throws IOException {
+		if(!failed) {
+			consecutiveFailures = 0;
+			return;
+		}
+		if(++consecutiveFailures >= maxFailures)
+			reconnect(consecutiveFailures+" requests in a row failed.");
+	}
+
+	/**
+	 * Reconnects after a request threw e.
+	 * @throws IOException e, if stopped or interrupted, or if reconnecting
+	 * was given up.
+	 */
+	private void linkFailed(IOException e) throws IOException {
+		//An interrupted read says nothing about the link.
+		if(stopped || e instanceof InterruptedIOException) throw e;
+		reconnect("I/O error: "+e.getMessage());
+	}
+
+	private void reconnect(String reason) throws IOException {
+		setState(ConnectionState.LOST, reason);
+		long backoff = initialBackoffMillis;
+		int attempt = 0;
+		while(!stopped) {
+			attempt++;
+			setState(ConnectionState.RECONNECTING, "attempt "+attempt+".");
+			try {
+				if(reconnector.reconnect(device)) {
+					consecutiveFailures = 0;
+					setState(ConnectionState.CONNECTED, "reconnected after "+attempt+" attempt(s).");
+					return;
+				}
+				logger.logWarning("Reconnection attempt "+attempt+": vehicle did not answer.");
+			} catch (IOException e) {
+				logger.logWarning("Reconnection attempt "+attempt+" failed: "+e.getMessage());
+			}
+			try {
+				Thread.sleep(backoff);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reconnecting.");
+			}
+			backoff = Math.min(backoff * 2, maxBackoffMillis);
+		}
+		throw new IOException("Stopped while reconnecting.");
+	}
+
+	@Override
+	public void requestPID(PIDResultListener list, int pid, int numBytes) throws IOException {
+		try {
+			device.requestPID(pidOutcome.watch(list), pid, numBytes);
+		} catch (IOException e) {
+			pidOutcome.done();
+			linkFailed(e);
+			list.error(OBDError.IO_ERROR, pid);
+			return;
+		}
+		checkFailures(pidOutcome.done());
+	}
+
+	@Override
+	public void requestPID(PIDResultListener list, int pid) throws IOException, PIDNotFoundException {
+		try {
+			device.requestPID(pidOutcome.watch(list), pid);
+		} catch (IOException e) {
+			pidOutcome.done();
+			linkFailed(e);
+			list.error(OBDError.IO_ERROR, pid);
+			return;
+		}
+		checkFailures(pidOutcome.done());
+	}
+
+	@Override
+	public void requestPID(PIDResultListener list, String name) throws IOException, PIDNotFoundException {
+		try {
+			device.requestPID(pidOutcome.watch(list), name);
+		} catch (IOException e) {
+			pidOutcome.done();
+			linkFailed(e);
+			list.error(OBDError.IO_ERROR, -1);
+			return;
+		}
+		checkFailures(pidOutcome.done());
+	}
+
+	@Override
+	public <T> void request(OBDRequest<T> req, OBDResponseListener<T> list) throws IOException {
+		//One-shot requests are rare enough to watch with a new listener each.
+		ResponseOutcome<T> outcome = new ResponseOutcome<T>(list);
+		try {
+			device.request(req, outcome);
+		} catch (IOException e) {
+			linkFailed(e);
+			list.error(OBDError.IO_ERROR, req);
+			return;
+		}
+		checkFailures(outcome.failed);
+	}
+
+	@Override
+	public void requestDTCs(DTCResultListener list, DTCMode mode) throws IOException {
+		try {
+			device.requestDTCs(dtcOutcome.watch(list), mode);
+		} catch (IOException e) {
+			dtcOutcome.done();
+			linkFailed(e);
+			list.error(OBDError.IO_ERROR, mode);
+			return;
+		}
+		checkFailures(dtcOutcome.done());
+	}
+
+	@Override
+	public ResetResult resetAndHandshake() throws IOException {
+		ResetResult res = device.resetAndHandshake();
+		if(res.foundDevice) {
+			consecutiveFailures = 0;
+			setState(ConnectionState.CONNECTED, "handshake done.");
+		}
+		return res;
+	}
+
+	/**
+	 * Stops the device and gives up any reconnection in progress at its
+	 * next attempt.
+	 */
+	@Override
+	public void stop() throws IOException {
+		stopped = true;
+		setState(ConnectionState.STOPPED, "stopped.");
+		device.stop();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return !stopped && device.isOpen();
+	}
+
+	@Override
+	public OBDContext getContext() {
+		return device.getContext();
+	}
+
+	@Override
+	public String getInterfaceIdentifier() {
+		return device.getInterfaceIdentifier();
+	}
+
+	/**
+	 * @return the supervised device.
+	 */
+	public ObdSerial getDevice() {
+		return device;
+	}
+
+	/**
+	 * @return true if error says the link, rather than the request, is at
+	 * fault.
+	 */
+	private static boolean linkFailure(OBDError error) {
+		return error.isTimeout() || error.isLinkError();
+	}
+
+	/**
+	 * Passes a PID request's outcome on, noting whether it failed.
+	 */
+	private static final class PIDOutcome implements PIDResultListener {
+		private PIDResultListener target;
+		private boolean failed;
+
+		PIDResultListener watch(PIDResultListener list) {
+			target = list;
+			failed = false;
+			return this;
+		}
+
+		/**
+		 * @return whether the request timed out or hit a link error.
+		 */
+		boolean done() {
+			target = null;
+			return failed;
+		}
+
+		@Override
+		public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+			target.dataReceived(pid, numBytes, data, time);
+		}
+
+		@Override
+		public void error(OBDError error, int pid) {
+			failed = linkFailure(error);
+			target.error(error, pid);
+		}
+	}
+
+	private static final class DTCOutcome implements DTCResultListener {
+		private DTCResultListener target;
+		private boolean failed;
+
+		DTCResultListener watch(DTCResultListener list) {
+			target = list;
+			failed = false;
+			return this;
+		}
+
+		boolean done() {
+			target = null;
+			return failed;
+		}
+
+		@Override
+		public void dtcsReceived(DTCMode mode, List<DiagnosticTroubleCode> codes) {
+			target.dtcsReceived(mode, codes);
+		}
+
+		@Override
+		public void error(OBDError error, DTCMode mode) {
+			failed = linkFailure(error);
+			target.error(error, mode);
+		}
+	}
+
+	private static final class ResponseOutcome<T> implements OBDResponseListener<T> {
+		private final OBDResponseListener<T> target;
+		boolean failed;
+
+		ResponseOutcome(OBDResponseListener<T> target) {
+			this.target = target;
+		}
+
+		@Override
+		public void responseReceived(OBDRequest<T> request, T value, SampleTime time) {
+			target.responseReceived(request, value, time);
+		}
+
+		@Override
+		public void error(OBDError error, OBDRequest<T> request) {
+			failed = linkFailure(error);
+			target.error(error, request);
+		}
+	}
+}
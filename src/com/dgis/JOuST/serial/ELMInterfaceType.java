@@ -0,0 +1,33 @@
+package com.dgis.JOuST.serial;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The ELM chips an interface can identify itself as.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+enum ELMInterfaceType{
+	INTERFACE_ELM320{public String toString(){return "ELM 320";}},
+	INTERFACE_ELM322{public String toString(){return "ELM 322";}},
+	INTERFACE_ELM323{public String toString(){return "ELM 323";}},
+	INTERFACE_ELM327{public String toString(){return "ELM 327";}},
+	UNKNOWN_INTERFACE
+}
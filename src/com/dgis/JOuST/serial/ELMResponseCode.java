@@ -0,0 +1,115 @@
+package com.dgis.JOuST.serial;
+
+import com.dgis.JOuST.OBDError;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * What kind of answer an ELM interface gave, as classified by
+ * ElmSerial.process_response().
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public enum ELMResponseCode{
+	HEX_DATA,
+	BUS_BUSY,
+	BUS_ERROR,
+	BUS_INIT_ERROR,
+	UNABLE_TO_CONNECT,
+	CAN_ERROR,
+	DATA_ERROR,
+	DATA_ERROR2,
+	ERR_NO_DATA,
+	BUFFER_FULL,
+	SERIAL_ERROR,
+	UNKNOWN_CMD,
+	RUBBISH,
+	INTERFACE_ID,
+	PROTOCOL_INIT_ERROR;
+	
+	public String toString(){ return getMessage(); }
+	
+	public String getMessage(){
+		return getMessage(this);
+	}
+	// Adapted from ScanTool
+	public static String getMessage(ELMResponseCode error) {
+		switch (error) {
+		case BUS_ERROR:
+			return "Bus Error: OBDII bus is shorted to Vbatt or Ground.";
+
+		case BUS_BUSY:
+			return "OBD Bus Busy. Try again.";
+
+		case BUS_INIT_ERROR:
+			return "OBD Bus Init Error. Check connection to the vehicle, make sure the vehicle is OBD-II compliant, and ignition is ON.";
+
+		case UNABLE_TO_CONNECT:
+			return "Unable to connect to OBD bus. Check connection to the vehicle. Make sure the vehicle is OBD-II compliant, and ignition is ON.";
+
+		case CAN_ERROR:
+			return "CAN Error. Check connection to the vehicle. Make sure the vehicle is OBD-II compliant, and ignition is ON.";
+
+		case DATA_ERROR:
+		case DATA_ERROR2:
+			return "Data Error: there has been a loss of data. You may have a bad connection to the vehicle, check the cable and try again.";
+
+		case BUFFER_FULL:
+			return "Hardware data buffer overflow.";
+
+		case SERIAL_ERROR:
+		case UNKNOWN_CMD:
+		case RUBBISH:
+			return "Serial Link Error: please check connection between computer and scan tool.";
+		default:
+			return error.name();
+		}
+	}
+
+	/**
+	 * @return what a request answered this way reports to its listener.
+	 */
+	public OBDError getError() {
+		switch (this) {
+		case ERR_NO_DATA:
+			return OBDError.NO_DATA;
+		case BUS_BUSY:
+			return OBDError.BUS_BUSY;
+		case BUS_ERROR:
+			return OBDError.BUS_ERROR;
+		case BUS_INIT_ERROR:
+		case PROTOCOL_INIT_ERROR:
+			return OBDError.BUS_INIT_ERROR;
+		case UNABLE_TO_CONNECT:
+			return OBDError.UNABLE_TO_CONNECT;
+		case CAN_ERROR:
+			return OBDError.CAN_ERROR;
+		case DATA_ERROR:
+		case DATA_ERROR2:
+			return OBDError.DATA_ERROR;
+		case BUFFER_FULL:
+			return OBDError.BUFFER_FULL;
+		case HEX_DATA:
+			return OBDError.INVALID_ANSWER;
+		default:
+			return OBDError.SERIAL_ERROR;
+		}
+	}
+}
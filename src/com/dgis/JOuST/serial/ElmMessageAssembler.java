@@ -0,0 +1,107 @@
+package com.dgis.JOuST.serial;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Splits a complete ELM response into the messages it contains, as byte
+ * arrays. Each line of a single-frame response is one message. CAN
+ * responses longer than one frame arrive as a line holding the total
+ * length in hex followed by numbered frames:
+ * <pre>
+ * 00A
+ * 0: 43 04 01 33 02 34
+ * 1: 03 00 04 00 00 00 00
+ * </pre>
+ * and are reassembled into one message, trimmed to the stated length.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+final class ElmMessageAssembler {
+	private ElmMessageAssembler() {}
+
+	/**
+	 * @param response the response text, up to and optionally including the prompt.
+	 * @return the messages, in the order received. Lines that are not hex
+	 * (e.g. SEARCHING...) are skipped.
+	 */
+	static List<byte[]> assemble(String response) {
+		List<byte[]> messages = new ArrayList<byte[]>();
+		byte[] multi = null; //message being reassembled
+		int multiLen = 0;
+		for(String rawLine : response.split("[\r\n>]")) {
+			String line = rawLine.replaceAll("\\s", "");
+			if(line.length() == 0) continue;
+			int colon = line.indexOf(':');
+			if(colon > 0 && multi != null) {
+				//A numbered frame of the message being reassembled.
+				byte[] frame = hexToBytes(line.substring(colon+1));
+				if(frame == null) continue;
+				int n = Math.min(frame.length, multi.length - multiLen);
+				System.arraycopy(frame, 0, multi, multiLen, n);
+				multiLen += n;
+				if(multiLen == multi.length) {
+					messages.add(multi);
+					multi = null;
+				}
+				continue;
+			}
+			if(multi != null) {
+				//Frames went missing. Keep what we have.
+				messages.add(trim(multi, multiLen));
+				multi = null;
+			}
+			if(line.length() == 3 && isHex(line)) {
+				multi = new byte[Integer.parseInt(line, 16)];
+				multiLen = 0;
+				continue;
+			}
+			byte[] single = hexToBytes(line);
+			if(single != null) messages.add(single);
+		}
+		if(multi != null) messages.add(trim(multi, multiLen));
+		return messages;
+	}
+
+	private static byte[] trim(byte[] b, int len) {
+		byte[] r = new byte[len];
+		System.arraycopy(b, 0, r, 0, len);
+		return r;
+	}
+
+	private static boolean isHex(String s) {
+		for(int x=0; x<s.length(); x++)
+			if(Character.digit(s.charAt(x), 16) < 0) return false;
+		return true;
+	}
+
+	/**
+	 * @return the bytes, or null if s is not an even number of hex digits.
+	 */
+	static byte[] hexToBytes(String s) {
+		if(s.length() % 2 != 0 || !isHex(s)) return null;
+		byte[] b = new byte[s.length() / 2];
+		for(int x=0; x<b.length; x++)
+			b[x] = (byte)Integer.parseInt(s.substring(x*2, x*2+2), 16);
+		return b;
+	}
+}
@@ -0,0 +1,68 @@
+package com.dgis.JOuST.serial;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The classification of one answer, filled in by process_response() and
+ * reused from one request to the next.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+final class ElmResponse {
+	ELMResponseCode code;
+	ELMInterfaceType interfaceType;
+	//The answer with whitespace and prompt removed, and the reply within it.
+	byte[] text = new byte[256];
+	int start;
+	int end;
+	//The answer as read, for process_response(); see load().
+	private byte[] raw = new byte[256];
+
+	/**
+	 * Copies response into a reused, null-terminated array.
+	 * @return the array, valid until the next call.
+	 */
+	byte[] load(CharSequence response) {
+		int len = response.length();
+		if(raw.length <= len) raw = new byte[len + 1];
+		for(int x=0; x<len; x++)
+			raw[x] = (byte)response.charAt(x);
+		raw[len] = 0;
+		return raw;
+	}
+
+	byte[] reset(int capacity) {
+		if(text.length < capacity) text = new byte[capacity];
+		code = null;
+		interfaceType = null;
+		start = end = 0;
+		return text;
+	}
+
+	ELMResponseCode set(ELMResponseCode code) {
+		this.code = code;
+		return code;
+	}
+
+	ELMResponseCode found(ELMInterfaceType type) {
+		interfaceType = type;
+		return set(ELMResponseCode.INTERFACE_ID);
+	}
+}
@@ -2,11 +2,29 @@ package com.dgis.JOuST.serial;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-
-import com.dgis.JOuST.OBDInterface;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dgis.JOuST.DTCMode;
+import com.dgis.JOuST.DTCResultListener;
+import com.dgis.JOuST.DiagnosticTroubleCode;
+import com.dgis.JOuST.LogMessage;
+import com.dgis.JOuST.OBDContext;
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.OBDLog;
+import com.dgis.JOuST.OBDMetrics;
+import com.dgis.JOuST.OBDRequest;
+import com.dgis.JOuST.OBDRequests;
+import com.dgis.JOuST.OBDResponseListener;
+import com.dgis.JOuST.PIDCatalog;
 import com.dgis.JOuST.PIDNotFoundException;
 import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.RequestBudget;
+import com.dgis.JOuST.SampleTime;
+import com.dgis.JOuST.TimeoutKind;
+import com.dgis.JOuST.VehicleProfile;
 import com.dgis.util.Logger;
 
 /*
@@ -29,6 +47,13 @@ import com.dgis.util.Logger;
 /**
  * An implementation of ObdSerial that can talk to the ELM32X line of interfaces.
  *
+ * requestPID() allocates nothing once warmed up: commands come from
+ * CommandTable, and the answer is read, classified and handed to the
+ * listener in buffers this instance reuses. That holds as long as the log
+ * level is below LEVEL_SUPERFINE and the answers are good; errors, AT
+ * commands, resets and request() allocate as they please. See
+ * OBDEventDriver for the rest of the steady state.
+ *
  * Copyright (C) 2009 Giacomo Ferrari
  * @author Giacomo Ferrari
  */
@@ -40,15 +65,33 @@ public class ElmSerial implements ObdSerial {
 
 	private static final byte SPECIAL_DELIMITER = '\r';
 
-	private static Logger logger = Logger.getInstance();
+	private final OBDContext context;
+	private final OBDLog logger;
+	private final OBDMetrics metrics;
 
 	private InputStream input;
 	private OutputStream output;
+
+	private StreamTranscript transcript = null;
+
+	//Time of the last read that returned data. Only touched by the requesting thread.
+	private long lastReadNanos;
+	//Handed to listeners with each sample; reused.
+	private final SampleTime sampleTime = new SampleTime();
+	//Classifies each answer; reused.
+	private final ElmResponse reply = new ElmResponse();
+	//Outgoing commands are encoded here; reused. Only touched by the requesting thread.
+	private byte[] commandBuf = new byte[32];
+	//requestPID() reads into these and hands requestBuf to the listener; reused.
+	private final byte[] requestBuf = new byte[256];
+	private final StringBuffer requestResponse = new StringBuffer(256);
 	
 	boolean isOpen=false;
 	
 	// ///PROTOCOL SPECIFIC VARIABLES/////
 	private ELMInterfaceType device=ELMInterfaceType.UNKNOWN_INTERFACE;
+	//ELM protocol number, 0 until known. Picks the RequestBudget.
+	private int protocol = 0;
 
 	/**
 	 * Construct a new ElmSerial with the specified Streams to use
@@ -58,6 +101,20 @@ public class ElmSerial implements ObdSerial {
 	 * @param out
 	 */
 	public ElmSerial(InputStream in, OutputStream out) {
+		this(in, out, new OBDContext());
+	}
+
+	/**
+	 * Construct a new ElmSerial with its own catalog, log, metrics and
+	 * timing. Will not try to perform any communication yet.
+	 * @param in
+	 * @param out
+	 * @param context
+	 */
+	public ElmSerial(InputStream in, OutputStream out, OBDContext context) {
+		this.context = context;
+		this.logger = context.getLog();
+		this.metrics = context.getMetrics();
 		try {
 			reopen(in,out);
 		} catch (IOException e) {
@@ -76,11 +133,40 @@ public class ElmSerial implements ObdSerial {
 	 */
 	public void reopen(InputStream in, OutputStream out) throws IOException {
 		if(isOpen) stop();
+		if(transcript != null) {
+			in=transcript.wrap(in);
+			out=transcript.wrap(out);
+		}
 		input=in;
 		output=out;
 		isOpen=true;
 	}
 
+	/**
+	 * Records all traffic through this instance's streams from now on,
+	 * including across reopen(). Must be called before the streams are
+	 * in use by another thread.
+	 * @param t the transcript to record into.
+	 */
+	public void setTranscript(StreamTranscript t) {
+		if(transcript != null) throw new IllegalStateException("A transcript is already attached.");
+		transcript = t;
+		t.setLog(context.getLog());
+		if(input != null) input = t.wrap(input);
+		if(output != null) output = t.wrap(output);
+	}
+
+	/**
+	 * @return the attached transcript, or null.
+	 */
+	public StreamTranscript getTranscript() {
+		return transcript;
+	}
+
+	private void transcriptError() {
+		if(transcript != null) transcript.errorOccurred();
+	}
+
 	@Override
 	public void stop() throws IOException {
 		logger.logInfo("Closing port.");
@@ -90,6 +176,11 @@ public class ElmSerial implements ObdSerial {
 		output=null;
 	}
 
+	@Override
+	public OBDContext getContext() {
+		return context;
+	}
+
 	@Override
 	public boolean isOpen() {
 		return isOpen;
@@ -101,11 +192,11 @@ public class ElmSerial implements ObdSerial {
 	 * @throws IOException
 	 */
 	private void send_command(String c) throws IOException {
-		//TODO: Why aren't I using c.getBytes()?
-		byte[] buf = new byte[c.length()];
-		for (int x = 0; x < buf.length; x++)
+		byte[] buf = commandBuffer(c.length() + 1);
+		for (int x = 0; x < c.length(); x++)
 			buf[x] = (byte) c.charAt(x);
-		send_command(buf);
+		buf[c.length()] = '\r';
+		send_raw(buf, c.length() + 1);
 	}
 	
 	/**
@@ -114,19 +205,41 @@ public class ElmSerial implements ObdSerial {
 	 * @throws IOException
 	 */
 	public void send_command(byte[] command) throws IOException {
-		output.write(command);
-		output.write(new byte[] { '\r' });
+		byte[] buf = commandBuffer(command.length + 1);
+		System.arraycopy(command, 0, buf, 0, command.length);
+		buf[command.length] = '\r';
+		send_raw(buf, command.length + 1);
+	}
+
+	/**
+	 * Sends bytes that already end in a carriage return, in one write, so
+	 * a USB-serial adapter sees one transfer per command.
+	 * @throws IOException
+	 */
+	private void send_raw(byte[] command, int len) throws IOException {
+		output.write(command, 0, len);
 		output.flush();
 	}
 
+	/**
+	 * @return the reused buffer commands are encoded into, at least size long.
+	 */
+	private byte[] commandBuffer(int size) {
+		if (commandBuf.length < size) commandBuf = new byte[size];
+		return commandBuf;
+	}
+
 	/**
 	 * Will attempt to determine the type of response that was received from the device.
+	 * Allocates nothing unless the response is noise.
+	 * @param result filled with the code, the interface found, if any, and
+	 * where the reply starts and ends in result.getText().
 	 * @param cmd_sent
-	 * @param msg_received
-	 * @return the return value of the visitor call.
+	 * @param msg_received null-terminated, or ending with the array.
+	 * @return the type of response.
 	 * @throws IOException
 	 */
-	public Object process_response(ElmResponseVisitor visit, byte[] cmd_sent, byte[] msg_received)
+	ELMResponseCode process_response(ElmResponse result, byte[] cmd_sent, byte[] msg_received)
 			throws IOException {
 		int i = 0;
 		int msgPos = 0; //Start of the message. May not be 0 if echo is on.
@@ -136,7 +249,7 @@ public class ElmSerial implements ObdSerial {
 			//Also keep track of where the start of the reply
 			//should be (msgPos).
 			boolean echoOn = true;
-			for (i = 0; i<cmd_sent.length && cmd_sent[i] != 0; i++) {
+			for (i = 0; i<cmd_sent.length && cmd_sent[i] != 0 && cmd_sent[i] != '\r'; i++) {
 				if (cmd_sent[i] != msg_received[msgPos]) // if the characters are not the same
 				{
 					echoOn = false;
@@ -151,81 +264,100 @@ public class ElmSerial implements ObdSerial {
 				msgPos = 0;
 		}
 
-		// Strip off nulls and special characters at start of reply.
-		while (msg_received[msgPos] > 0 && (msg_received[msgPos] <= ' '))
-			msgPos++;
-
-		// Pull out reply string.
-		StringBuffer msgBuf = new StringBuffer(msg_received.length-msgPos);
-		//Accept characters until null hit.
+		//Copy out the reply, collapsing whitespace & prompt.
+		final byte[] msg = result.reset(msg_received.length - msgPos);
+		int end = 0;
 		for(int j=msgPos; j<msg_received.length; j++){
-			if(msg_received[j]==0) break;
-			msgBuf.append((char)msg_received[j]);
+			byte c = msg_received[j];
+			if(c==0) break;
+			if(c<=' ' || c=='>') continue;
+			msg[end++] = c;
 		}
-		String msg = msgBuf.toString();
-		
-		//Collapse whitespace & prompt
-		msg = msg.replaceAll("\\s|>", "");
+		result.end = end;
 		
 		//Get rid of useless bits...
-		if (msg.startsWith("SEARCHING..."))
-			msg=msg.substring(12);
-		else if (msg.startsWith("BUSINIT:OK"))
-			msg=msg.substring(12);
-		else if (msg.startsWith("BUSINIT:...OK"))
-			msg=msg.substring(15);
+		int start = 0;
+		if (startsWith(msg, 0, end, "SEARCHING..."))
+			start = 12;
+		else if (startsWith(msg, 0, end, "BUSINIT:OK"))
+			start = 10;
+		else if (startsWith(msg, 0, end, "BUSINIT:...OK"))
+			start = 13;
+		result.start = start;
 		
 		//Check for <DATA ERROR>
-		int indexOfLT = msg.indexOf('<');
-		if(indexOfLT>=0){
-			if(msg.startsWith("<DATAERROR", indexOfLT)) //Remember, spaces are gone, as is >
-				return visit.dataError2();
+		for(int j=start; j<end; j++){
+			if(msg[j]!='<') continue;
+			if(startsWith(msg, j, end, "<DATAERROR")) //Remember, spaces are gone, as is >
+				return result.set(ELMResponseCode.DATA_ERROR2);
 			else
-				return visit.rubbish();
+				return result.set(ELMResponseCode.RUBBISH);
 		}
 		
 		//Check for hex number.
 		boolean isHex = true;
-		//Check every character for non-hexness
-		for(char c : msg.toCharArray()){
-			if(!(Character.isDigit(c) || (c>='a' && c<='f') || (c>='A' && c <= 'F'))){
+		//Check every character for non-hexness. Multi-frame CAN responses
+		//number their frames ("0:", "1:", ...), so allow colons too.
+		for(int j=start; j<end; j++){
+			byte c = msg[j];
+			if(!((c>='0' && c<='9') || (c>='a' && c<='f') || (c>='A' && c <= 'F') || c==':')){
 				isHex=false;
 				break;
 			}
 		}
-		if(isHex) {return visit.hexData();}
+		if(isHex) {return result.set(ELMResponseCode.HEX_DATA);}
 		
-		if (msg.contains("NODATA"))
-			{return visit.noData();}
-		if (msg.contains("UNABLETOCONNECT"))
-			{return visit.unableToConnect();}
-		if (msg.contains("BUSBUSY"))
-			{return visit.busBusy();}
-		if (msg.contains("DATAERROR"))
-			{return visit.dataError();}
-		if (msg.contains("BUSERROR") || msg.contains("FBERROR"))
-			{return visit.busError();}
-		if (msg.contains("CANERROR"))
-			{return visit.CANError();}
-		if (msg.contains("BUFFERFULL"))
-			{return visit.bufferIsFull();}
-		if (msg.contains("BUSINIT:ERROR") || msg.contains("BUSINIT:...ERROR"))
-			{return visit.busInitError();}
-		if (msg.contains("BUSINIT:") || msg.contains("BUSINIT:..."))
-			{return visit.serialError();}
-		if (msg.contains("?"))
-			{return visit.unknownCommand();}
-		if (msg.contains("ELM320"))
-			{return visit.interfaceFound(ELMInterfaceType.INTERFACE_ELM320);}
-		if (msg.contains("ELM322"))
-			{return visit.interfaceFound(ELMInterfaceType.INTERFACE_ELM322);}
-		if (msg.contains("ELM323"))
-			{return visit.interfaceFound(ELMInterfaceType.INTERFACE_ELM323);}
-		if (msg.contains("ELM327"))
-			{return visit.interfaceFound(ELMInterfaceType.INTERFACE_ELM327);}
-
-		logger.logWarning("Warning: Discarded apparent noise: |"+msg+"|");
-		return visit.rubbish();
+		if (contains(msg, start, end, "NODATA"))
+			{return result.set(ELMResponseCode.ERR_NO_DATA);}
+		if (contains(msg, start, end, "UNABLETOCONNECT"))
+			{metrics.linkError(); return result.set(ELMResponseCode.UNABLE_TO_CONNECT);}
+		if (contains(msg, start, end, "BUSBUSY"))
+			{return result.set(ELMResponseCode.BUS_BUSY);}
+		if (contains(msg, start, end, "DATAERROR"))
+			{return result.set(ELMResponseCode.DATA_ERROR);}
+		if (contains(msg, start, end, "BUSERROR") || contains(msg, start, end, "FBERROR"))
+			{metrics.linkError(); return result.set(ELMResponseCode.BUS_ERROR);}
+		if (contains(msg, start, end, "CANERROR"))
+			{metrics.linkError(); return result.set(ELMResponseCode.CAN_ERROR);}
+		if (contains(msg, start, end, "BUFFERFULL"))
+			{return result.set(ELMResponseCode.BUFFER_FULL);}
+		if (contains(msg, start, end, "BUSINIT:ERROR") || contains(msg, start, end, "BUSINIT:...ERROR"))
+			{metrics.linkError(); return result.set(ELMResponseCode.BUS_INIT_ERROR);}
+		if (contains(msg, start, end, "BUSINIT:"))
+			{return result.set(ELMResponseCode.SERIAL_ERROR);}
+		if (contains(msg, start, end, "?"))
+			{return result.set(ELMResponseCode.UNKNOWN_CMD);}
+		if (contains(msg, start, end, "ELM320"))
+			{return result.found(ELMInterfaceType.INTERFACE_ELM320);}
+		if (contains(msg, start, end, "ELM322"))
+			{return result.found(ELMInterfaceType.INTERFACE_ELM322);}
+		if (contains(msg, start, end, "ELM323"))
+			{return result.found(ELMInterfaceType.INTERFACE_ELM323);}
+		if (contains(msg, start, end, "ELM327"))
+			{return result.found(ELMInterfaceType.INTERFACE_ELM327);}
+
+		final int noiseStart = start, noiseEnd = end;
+		logger.log(Logger.LEVEL_WARNING, new LogMessage(){
+			@Override
+			public String get() {
+				return "Warning: Discarded apparent noise: |"+new String(msg, noiseStart, noiseEnd-noiseStart)+"|";
+			}
+		});
+		transcriptError();
+		return result.set(ELMResponseCode.RUBBISH);
+	}
+
+	private static boolean startsWith(byte[] b, int from, int end, String s) {
+		if(end - from < s.length()) return false;
+		for(int x=0; x<s.length(); x++)
+			if(b[from+x] != s.charAt(x)) return false;
+		return true;
+	}
+
+	private static boolean contains(byte[] b, int from, int end, String s) {
+		for(int x=from; x<=end-s.length(); x++)
+			if(startsWith(b, x, end, s)) return true;
+		return false;
 	}
 
 	/**
@@ -239,7 +371,7 @@ public class ElmSerial implements ObdSerial {
 		// TODO test timeout
 		boolean timedOut = false;
 		while (true) {
-			ELMReadResult res = read_comport(temp_buf, AT_TIMEOUT);
+			ELMReadResult res = read_comport(temp_buf, context.getTiming().getAtTimeout());
 			if (res == ELMReadResult.PROMPT)
 				break;
 			else if (res == ELMReadResult.TIMEOUT) {
@@ -250,7 +382,7 @@ public class ElmSerial implements ObdSerial {
 		if (!timedOut) {
 			send_command("atl0"); // turn off linefeeds
 			while (true) {
-				ELMReadResult res = read_comport(temp_buf, AT_TIMEOUT);
+				ELMReadResult res = read_comport(temp_buf, context.getTiming().getAtTimeout());
 				if (res == ELMReadResult.PROMPT)
 					break;
 				else if (res == ELMReadResult.TIMEOUT) {
@@ -271,25 +403,39 @@ public class ElmSerial implements ObdSerial {
 	 * @throws IOException
 	 */
 	private ELMReadResult read_comport(byte[] buf, int timeout) throws IOException {
-		//Wait for data.
-		long startTime = System.currentTimeMillis();
+		return read_comport_until(buf, System.nanoTime() + timeout * 1000000L);
+	}
+
+	/**
+	 * Attempts to read from the Stream.
+	 * @param buf the buffer to read into.
+	 * @param deadline Will return ElmReadResult.TIMEOUT if no data has
+	 * arrived by this System.nanoTime().
+	 * @return the result of the read.
+	 * @throws InterruptedIOException if the thread is interrupted while waiting.
+	 * @throws IOException
+	 */
+	private ELMReadResult read_comport_until(byte[] buf, long deadline) throws IOException {
+		//Wait for data, without sleeping past the deadline.
 		while(input.available()==0){
+			long left = deadline - System.nanoTime();
+			if(left <= 0)
+				return ELMReadResult.TIMEOUT;
 			try {
-				Thread.sleep(10);
+				Thread.sleep(Math.max(1, Math.min(10, left / 1000000L)));
 			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-			if(System.currentTimeMillis()-startTime > timeout){
-				//TODO log something
-				return ELMReadResult.TIMEOUT;
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the interface.");
 			}
 		}
-		//Read the data.
-		int len = input.read(buf);
-		if (len == 0)
+		//Read the data, leaving room to null-terminate it.
+		int len = input.read(buf, 0, buf.length-1);
+		lastReadNanos = System.nanoTime();
+		if (len <= 0)
 			return ELMReadResult.EMPTY;
-		logger.logSuperfine("RX: " + new String(buf));
+		buf[len] = 0;
+		if (logger.isLoggable(Logger.LEVEL_SUPERFINE))
+			logger.logSuperfine("RX: " + new String(buf, 0, len));
 		for (int p = 0; p < len; p++) {
 			if (buf[p] == '>') {
 				return ELMReadResult.PROMPT;
@@ -398,13 +544,13 @@ public class ElmSerial implements ObdSerial {
 		}
 		// case RESET_START:
 		// wait until we either get a prompt or the timer times out
-		long time = System.currentTimeMillis();
+		long time = System.nanoTime();
 		while (true) {
 			if (input.available() > 0) {
 				if (input.read() == '>')
 					break;
 			} else {
-				if (System.currentTimeMillis() - time > ATZ_TIMEOUT)
+				if (System.nanoTime() - time > context.getTiming().getResetTimeout() * 1000000L)
 					break;
 			}
 		}
@@ -414,34 +560,25 @@ public class ElmSerial implements ObdSerial {
 		// case RESET_WAIT_RX:
 		byte[] buf = new byte[128];
 		try {
-			Thread.sleep(ATZ_TIMEOUT);
+			Thread.sleep(context.getTiming().getResetTimeout());
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
-		ELMReadResult status = read_comport(buf, ATZ_TIMEOUT); // read comport
+		ELMReadResult status = read_comport(buf, context.getTiming().getResetTimeout()); // read comport
 		while (status == ELMReadResult.DATA){ // if new data detected in com port buffer
 			response.append(new String(buf)); // append contents of buf to
 												// response
-			status = read_comport(buf, ATZ_TIMEOUT);
+			status = read_comport(buf, context.getTiming().getResetTimeout());
 		}
 		if (status == ELMReadResult.PROMPT) // if '>' detected
 		{
 			logger.logVerbose("Got prompt.");
 			response.append(new String(buf));
-			process_response(new AElmResponseVisitor(){
-				@Override
-				public Object interfaceFound(ELMInterfaceType type) {
-					device=type;
-					return null;
-				}
-				@Override
-				Object defaultCase() {
-					String s = "Unexpected response while trying to find device identifier!";
-					logger.logError(s);
-					return null;
-				}
-			}, "atz".getBytes(), response.toString()
-					.getBytes());
+			if (process_response(reply, "atz".getBytes(), response.toString()
+					.getBytes()) == ELMResponseCode.INTERFACE_ID)
+				device = reply.interfaceType;
+			else
+				logger.logError("Unexpected response while trying to find device identifier!");
 			logger.logVerbose("Response: "+device);
 			switch(device){
 			case INTERFACE_ELM323: case INTERFACE_ELM327:
@@ -466,6 +603,77 @@ public class ElmSerial implements ObdSerial {
 		}
 	}
 
+	/**
+	 * Reconnects to a vehicle seen before. On an ELM327, warm starts the
+	 * interface and selects the profile's protocol directly, which skips
+	 * the full reset delay and the protocol search. Falls back to
+	 * resetAndHandshake() if the interface or vehicle do not answer as
+	 * expected.
+	 * @param profile what is known about the vehicle, or null.
+	 * @throws IOException
+	 */
+	public ResetResult resetAndHandshake(VehicleProfile profile) throws IOException {
+		if(profile == null || profile.getProtocol() <= 0
+				|| !ELMInterfaceType.INTERFACE_ELM327.toString().equals(profile.getInterfaceType()))
+			return resetAndHandshake();
+		if(!isOpen){
+			logger.logWarning("resetAndHandshake() called after stop().");
+			throw new IOException("resetAndHandshake() called after stop().");
+		}
+		logger.logInfo("Warm starting interface for "+profile.getVin()+".");
+		String id = at_command("atws", context.getTiming().getResetTimeout());
+		if(id == null || !id.contains("ELM327")) {
+			logger.logInfo("Warm start failed, doing a full reset.");
+			return resetAndHandshake();
+		}
+		device = ELMInterfaceType.INTERFACE_ELM327;
+		//Warm start turns echo back on.
+		turnOffEcho();
+		String ok = at_command("atsp"+Integer.toHexString(profile.getProtocol()), context.getTiming().getAtTimeout());
+		if(ok == null || !ok.contains("OK")) {
+			logger.logInfo("Could not select protocol, doing a full reset.");
+			return resetAndHandshake();
+		}
+		send_command("0100");
+		ResetResult res = RESET_WAIT_0100(new StringBuffer(256));
+		if(!res.foundDevice) {
+			logger.logInfo("Vehicle did not answer on its known protocol, doing a full reset.");
+			return resetAndHandshake();
+		}
+		protocol = profile.getProtocol();
+		return res;
+	}
+
+	/**
+	 * Asks an ELM327 which protocol it is using.
+	 * @return the ELM protocol number (1-C), or 0 if unknown.
+	 * @throws IOException
+	 */
+	public int getProtocol() throws IOException {
+		if(device != ELMInterfaceType.INTERFACE_ELM327) return 0;
+		String r = at_command("atdpn", context.getTiming().getAtTimeout());
+		if(r == null || r.length() == 0) return 0;
+		//"A6" means automatically selected protocol 6.
+		int p = Character.digit(r.charAt(r.length()-1), 16);
+		protocol = p < 0 ? 0 : p;
+		return protocol;
+	}
+
+	/**
+	 * Sends an AT command and waits for the prompt.
+	 * @return the response without whitespace and prompt, or null on timeout.
+	 * @throws IOException
+	 */
+	private String at_command(String cmd, int timeout) throws IOException {
+		send_command(cmd);
+		StringBuffer response = new StringBuffer(64);
+		if(!read_until_prompt(new byte[128], response, timeout)) return null;
+		String r = response.toString().replaceAll("\\s|>", "");
+		//Strip the echo, if it is on.
+		if(r.toLowerCase().startsWith(cmd)) r = r.substring(cmd.length());
+		return r;
+	}
+
 	private ResetResult RESET_ECU_TIMEOUT(StringBuffer response) throws IOException {
 		// if (serial_time_out) // if the timer timed out
 		// {
@@ -483,7 +691,7 @@ public class ElmSerial implements ObdSerial {
 	private ResetResult RESET_WAIT_0100(StringBuffer response) throws IOException {
 		byte[] buf = new byte[128];
 		while(true){
-			ELMReadResult readStatus = read_comport(buf, ECU_TIMEOUT);
+			ELMReadResult readStatus = read_comport(buf, context.getTiming().getEcuTimeout());
 			//logger.logVerbose("Response: "+readStatus.toString());
 			if (readStatus == ELMReadResult.DATA){ // if new data detected in com port buffer
 				String dta = new String(buf);
@@ -494,27 +702,17 @@ public class ElmSerial implements ObdSerial {
 			else if (readStatus == ELMReadResult.PROMPT) // if we got the prompt
 			{
 				response.append(new String(buf));
-				//TODO: semi-hack
-				ResetResult res = (ResetResult) process_response(new AElmResponseVisitor(){
-					@Override
-					Object defaultCase() {
-						return new ResetResult(device.toString(), false);
-					}
-					@Override
-					public Object hexData() {
-						return new ResetResult("OK.", true);
-					}
-					@Override
-					public Object noData() {
-						return new ResetResult("Did not receive a response.", false);
-					}
-					@Override
-					public Object unableToConnect() {
-						return new ResetResult("Unable to connect to interface.", false);
-					}
-				}, "0100".getBytes(), response.toString()
-						.getBytes());
-				return res;
+				switch (process_response(reply, "0100".getBytes(), response.toString()
+						.getBytes())) {
+				case HEX_DATA:
+					return new ResetResult("OK.", true);
+				case ERR_NO_DATA:
+					return new ResetResult("Did not receive a response.", false);
+				case UNABLE_TO_CONNECT:
+					return new ResetResult("Unable to connect to interface.", false);
+				default:
+					return new ResetResult(device.toString(), false);
+				}
 	
 			} else if (readStatus == ELMReadResult.TIMEOUT) // if the timer timed out
 			{
@@ -528,57 +726,35 @@ public class ElmSerial implements ObdSerial {
 	@Override
 	public void requestPID(final PIDResultListener list, final int pid, final int numBytes) throws IOException {
 		if (isOpen) {
-			String cmd = String.format("01%02X", pid);
-			send_command(cmd); // send command for that particular sensor
-			final byte[] buf = new byte[256];
-			final StringBuffer response = new StringBuffer(255);
-			ELMReadResult response_status = ELMReadResult.DATA;
-			long start_time = System.currentTimeMillis();
-			while (true) {
-				response_status = read_comport(buf, OBD_REQUEST_TIMEOUT); // read comport
-				String r = bytesToString(buf);
-				response.append(r);
-				if (response_status == ELMReadResult.DATA) // if data detected in com port buffer
-				{
-					continue;
-				} else if (response_status == ELMReadResult.PROMPT) // if '>' detected
-				{
-					process_response(new AElmResponseVisitor(){
-							@Override
-							Object defaultCase(){
-								list.error("Did not get a hexadecimal value back from interface when requesting PID#"+String.format("%02X",pid), pid);
-								return null;
-							}
-							@Override
-							public Object hexData() {
-								String cmd = String.format("41%02X", pid);
-								if (find_valid_response(buf, response.toString(), cmd,
-										null)) {
-									buf[4 + numBytes* 2] = 0;  // solves problem where response is padded with zeroes (i.e., '41 05 7C 00 00 00')
-									//TODO calculate value here as per
-									//sensor->formula((int)strtol(buf + 4, NULL, 16), buf); //plug the value into formula
-									list.dataReceived(pid, numBytes, buf);
-								} else {
-									//TODO log something- got nothing back.
-									list.error("Got no data back from interface when requesting PID#"+String.format("%02X",pid), pid);
-								}
-								return null;
-							}
-						}, cmd.getBytes(), response.toString().getBytes());
-						return;
-				} else if(response_status == ELMReadResult.EMPTY){
-					if(System.currentTimeMillis() - start_time > OBD_REQUEST_TIMEOUT){
-						//TODO log timeout
-						list.error("Got no data back from interface when requesting PID#"+String.format("%02X",pid), pid);
-						return;
-					} else {
-						//Not enough data, still not timed out
-						continue;
-					}
-				} else {
-					//TODO log something.
-					list.error("Unknown error: "+ response_status.name(), pid);
-				}
+			if (!CommandTable.contains(0x01, pid)) {
+				list.error(OBDError.UNKNOWN_PID, pid);
+				return;
+			}
+			byte[] cmd = CommandTable.command(0x01, pid);
+			send_raw(cmd, cmd.length); // send command for that particular sensor
+			sampleTime.requestSent(System.nanoTime());
+			byte[] buf = requestBuf;
+			StringBuffer response = requestResponse;
+			response.setLength(0);
+			final TimeoutKind timedOut = read_response(buf, response, context.getTiming().getBudget(protocol), sampleTime.getRequestSentNanos());
+			if (timedOut != null) {
+				transcriptError();
+				metrics.timedOut(timedOut);
+				list.error(OBDError.forTimeout(timedOut), pid);
+				return;
+			}
+			sampleTime.promptReceived(lastReadNanos);
+			ELMResponseCode code = process_response(reply, cmd, reply.load(response));
+			if (code == ELMResponseCode.HEX_DATA
+					&& find_valid_response(buf, response, CommandTable.responsePrefix(0x01, pid), null)) {
+				buf[4 + numBytes* 2] = 0;  // solves problem where response is padded with zeroes (i.e., '41 05 7C 00 00 00')
+				metrics.answered(sampleTime.getLatencyNanos());
+				list.dataReceived(pid, numBytes, buf, sampleTime);
+			} else {
+				//Either not hex, or nothing in it answered this PID.
+				transcriptError();
+				metrics.failed();
+				list.error(code.getError(), pid);
 			}
 		} else {
 			logger.logWarning("requestPID() called after stop().");
@@ -589,67 +765,195 @@ public class ElmSerial implements ObdSerial {
 	@Override
 	public void requestPID(PIDResultListener list, int pid) throws IOException,
 			PIDNotFoundException {
-		Integer size = OBDInterface.PID_SIZES.get(pid);
-		if(size == null) throw new PIDNotFoundException(pid);
+		int size = context.getCatalog().getSize(pid);
+		if(size < 0) throw new PIDNotFoundException(pid);
 		requestPID(list, pid, size);
 	}
 
 	@Override
 	public void requestPID(PIDResultListener list, String name)
 			throws IOException, PIDNotFoundException {
-		Integer pid = OBDInterface.PID_NAMES.get(name);
-		if(pid == null) throw new PIDNotFoundException(-1);
-		Integer size = OBDInterface.PID_SIZES.get(pid);
-		if(size == null) throw new PIDNotFoundException(pid);
+		PIDCatalog catalog = context.getCatalog();
+		int pid = catalog.getPid(name);
+		if(pid < 0) throw new PIDNotFoundException(-1);
+		int size = catalog.getSize(pid);
+		if(size < 0) throw new PIDNotFoundException(pid);
 		requestPID(list, pid, size);
 		
 	}
 
+	@Override
+	public <T> void request(final OBDRequest<T> req, final OBDResponseListener<T> list) throws IOException {
+		if (!isOpen) {
+			logger.logWarning("request() called after stop().");
+			throw new IOException("request() called after stop().");
+		}
+		final String cmd = req.getCommand();
+		send_command(cmd);
+		sampleTime.requestSent(System.nanoTime());
+		StringBuffer response = new StringBuffer(256);
+		TimeoutKind timedOut = read_response(new byte[256], response, context.getTiming().getBudget(protocol), sampleTime.getRequestSentNanos());
+		if (timedOut != null) {
+			transcriptError();
+			metrics.timedOut(timedOut);
+			list.error(OBDError.forTimeout(timedOut), req);
+			return;
+		}
+		sampleTime.promptReceived(lastReadNanos);
+		ELMResponseCode code = process_response(reply, cmd.getBytes(), response.toString().getBytes());
+		T value = null;
+		if (code == ELMResponseCode.HEX_DATA)
+			value = parseResponse(req, response.toString(), context.getCatalog());
+		else if (code == ELMResponseCode.ERR_NO_DATA)
+			value = req.noData();
+		if(value == null) {
+			transcriptError();
+			metrics.failed();
+			list.error(code.getError(), req);
+		} else {
+			metrics.answered(sampleTime.getLatencyNanos());
+			list.responseReceived(req, value, sampleTime);
+		}
+	}
+
+	@Override
+	public void requestDTCs(final DTCResultListener list, final DTCMode mode) throws IOException {
+		request(OBDRequests.dtcs(mode), new OBDResponseListener<List<DiagnosticTroubleCode>>(){
+			@Override
+			public void responseReceived(OBDRequest<List<DiagnosticTroubleCode>> request,
+					List<DiagnosticTroubleCode> value, SampleTime time) {
+				list.dtcsReceived(mode, value);
+			}
+			@Override
+			public void error(OBDError error, OBDRequest<List<DiagnosticTroubleCode>> request) {
+				list.error(error, mode);
+			}
+		});
+	}
+
+	/**
+	 * Extracts the payloads answering req from a complete response, with
+	 * multi-frame messages reassembled, and parses them.
+	 * @return the value, or null if nothing answered req or the answer was malformed.
+	 */
+	static <T> T parseResponse(OBDRequest<T> req, String response) {
+		return parseResponse(req, response, PIDCatalog.getDefault());
+	}
+
+	/**
+	 * Same as parseResponse(req, response), decoding PID values with catalog.
+	 */
+	static <T> T parseResponse(OBDRequest<T> req, String response, PIDCatalog catalog) {
+		List<byte[]> payloads = new ArrayList<byte[]>();
+		for(byte[] msg : ElmMessageAssembler.assemble(response)) {
+			if(!req.matches(msg)) continue;
+			int len = msg.length - req.getHeaderLength();
+			if(req.getExpectedLength() >= 0 && len > req.getExpectedLength())
+				len = req.getExpectedLength(); //padded
+			byte[] payload = new byte[len];
+			System.arraycopy(msg, req.getHeaderLength(), payload, 0, len);
+			payloads.add(payload);
+		}
+		if(payloads.isEmpty()) return null;
+		return req.parse(payloads, catalog);
+	}
+
+	/**
+	 * Reads until the prompt, appending everything to response.
+	 * @param timeout give up after this many milliseconds.
+	 * @return false if the interface stopped answering first.
+	 * @throws IOException
+	 */
+	private boolean read_until_prompt(byte[] buf, StringBuffer response, int timeout) throws IOException {
+		return read_response(buf, response, new RequestBudget(timeout, timeout, timeout), System.nanoTime()) == null;
+	}
+
+	/**
+	 * Reads until the prompt, appending everything to response, within a
+	 * budget counted from start: the first byte must arrive within the
+	 * first-byte limit, each later one within the inter-byte gap of the
+	 * one before, and the prompt within the total. No single wait runs
+	 * past the total, so a trickle of bytes cannot stretch a request.
+	 * @param start System.nanoTime() at which the request was sent.
+	 * @return null if the prompt arrived, else which limit ran out.
+	 * @throws IOException
+	 */
+	private TimeoutKind read_response(byte[] buf, StringBuffer response, RequestBudget budget, long start) throws IOException {
+		final long total = start + budget.getTotalMillis() * 1000000L;
+		final long gap = budget.getInterByteMillis() * 1000000L;
+		long limit = start + budget.getFirstByteMillis() * 1000000L;
+		TimeoutKind kind = TimeoutKind.FIRST_BYTE;
+		while (true) {
+			if (limit - total > 0) {
+				limit = total;
+				kind = TimeoutKind.TOTAL;
+			}
+			ELMReadResult response_status = read_comport_until(buf, limit);
+			if (response_status == ELMReadResult.TIMEOUT)
+				return kind;
+			if (response_status == ELMReadResult.EMPTY)
+				continue;
+			for (int i = 0; i < buf.length && buf[i] != 0; i++)
+				response.append((char)buf[i]);
+			if (response_status == ELMReadResult.PROMPT)
+				return null;
+			limit = lastReadNanos + gap;
+			kind = TimeoutKind.INTER_BYTE;
+		}
+	}
+
 	// Lifted from ScanTool
 	// TODO Convert this to Java style
 	public static boolean find_valid_response(byte[] buf, String response,
 			String filter, int[] endOfResp) {
+		return find_valid_response(buf, response, filter.getBytes(), endOfResp);
+	}
+
+	/**
+	 * Copies the first line of response that starts with filter into buf,
+	 * without spaces, and null-terminates it. Compares bytes in place, so
+	 * response can be the StringBuffer it was read into.
+	 * @param filter the start of the line wanted, without spaces.
+	 * @param endOfResp if not null, gets the index in response just past
+	 * the line found, or the end of response.
+	 * @return true if a non-empty line was found.
+	 */
+	public static boolean find_valid_response(byte[] buf, CharSequence response,
+			byte[] filter, int[] endOfResp) {
+		int len = response.length();
 		int in_ptr = 0; // in response
 		int out_ptr = 0; // in buf
 
 		buf[0] = 0;
 
-		response = response.replaceAll(" ", "");
-		
-		while (in_ptr < response.length()) {
-			if (response.startsWith(filter, in_ptr)) {
-				while (in_ptr < response.length()
-						&& response.charAt(in_ptr) != SPECIAL_DELIMITER)
-				{
-					//char x = response.charAt(in_ptr);
-					buf[out_ptr] = (byte)response.charAt(in_ptr);
-					in_ptr++;
-					out_ptr++;
-				}
+		while (in_ptr < len) {
+			//Does this line start with filter, spaces aside?
+			int p = in_ptr;
+			int f = 0;
+			while (f < filter.length && p < len) {
+				char c = response.charAt(p++);
+				if (c == ' ') continue;
+				if (c != filter[f]) break;
+				f++;
+			}
+			boolean match = f == filter.length;
+			//Copy it, or skip to the next delimiter.
+			while (in_ptr < len && response.charAt(in_ptr) != SPECIAL_DELIMITER) {
+				char c = response.charAt(in_ptr++);
+				if (match && c != ' ' && out_ptr < buf.length - 1)
+					buf[out_ptr++] = (byte)c;
+			}
+			in_ptr++; // skip the delimiter
+			if (match) {
 				buf[out_ptr] = 0; // terminate string
-				if (response.charAt(in_ptr) == SPECIAL_DELIMITER)
-					in_ptr++;
 				break;
-			} else {
-				// skip to the next delimiter
-				while (in_ptr < response.length()
-						&& response.charAt(in_ptr) != SPECIAL_DELIMITER)
-					in_ptr++;
-				//TODO if (response.charAt(in_ptr) != SPECIAL_DELIMITER) // skip the
-																	// delimiter
-					in_ptr++;
 			}
 		}
 
 		if (endOfResp != null)
-			endOfResp[0] = in_ptr;
+			endOfResp[0] = Math.min(in_ptr, len);
 
-		String r = bytesToString(buf);
-
-		if (r.length() > 0)
-			return true;
-		else
-			return false;
+		return out_ptr > 0;
 	}
 	
 	/**
@@ -674,125 +978,6 @@ public class ElmSerial implements ObdSerial {
 }
 
 
-enum ELMInterfaceType{
-	INTERFACE_ELM320{public String toString(){return "ELM 320";}},
-	INTERFACE_ELM322{public String toString(){return "ELM 322";}},
-	INTERFACE_ELM323{public String toString(){return "ELM 323";}},
-	INTERFACE_ELM327{public String toString(){return "ELM 327";}},
-	UNKNOWN_INTERFACE
-}
-
-interface ELMResponse{
-	void visit(ElmResponseVisitor visitor);
-}
-interface ElmResponseVisitor{
-
-	Object dataError2();
-
-	Object noData();
-
-	Object interfaceFound(ELMInterfaceType type);
-
-	Object unknownCommand();
-
-	Object serialError();
-
-	Object busInitError();
-
-	Object bufferIsFull();
-
-	Object busError();
-
-	Object CANError();
-
-	Object dataError();
-
-	Object busBusy();
-
-	Object unableToConnect();
-
-	Object hexData();
-
-	Object rubbish();
-	
-}
-
-abstract class AElmResponseVisitor implements ElmResponseVisitor{
-	public Object dataError2(){return defaultCase();}
-	public Object interfaceFound(ELMInterfaceType type){return defaultCase();}
-	public Object unknownCommand(){return defaultCase();}
-	public Object serialError(){return defaultCase();}
-	public Object busInitError(){return defaultCase();}
-	public Object bufferIsFull(){return defaultCase();}
-	public Object busError(){return defaultCase();}
-	public Object CANError(){return defaultCase();}
-	public Object dataError(){return defaultCase();}
-	public Object busBusy(){return defaultCase();}
-	public Object unableToConnect(){return defaultCase();}
-	public Object hexData(){return defaultCase();}
-	public Object noData(){return defaultCase();}
-	public Object rubbish(){return defaultCase();}
-	abstract Object defaultCase();
-}
-
-enum ELMResponseCode{
-	//process_response return values
-	HEX_DATA,
-	BUS_BUSY,
-	BUS_ERROR,
-	BUS_INIT_ERROR,
-	UNABLE_TO_CONNECT,
-	CAN_ERROR,
-	DATA_ERROR,
-	DATA_ERROR2,
-	ERR_NO_DATA,
-	BUFFER_FULL,
-	SERIAL_ERROR,
-	UNKNOWN_CMD,
-	RUBBISH,
-	INTERFACE_ID,
-	PROTOCOL_INIT_ERROR;
-	
-	public String toString(){ return getMessage(); }
-	
-	String getMessage(){
-		return getMessage(this);
-	}
-	// Adapted from ScanTool
-	public static String getMessage(ELMResponseCode error) {
-		switch (error) {
-		case BUS_ERROR:
-			return "Bus Error: OBDII bus is shorted to Vbatt or Ground.";
-
-		case BUS_BUSY:
-			return "OBD Bus Busy. Try again.";
-
-		case BUS_INIT_ERROR:
-			return "OBD Bus Init Error. Check connection to the vehicle, make sure the vehicle is OBD-II compliant, and ignition is ON.";
-
-		case UNABLE_TO_CONNECT:
-			return "Unable to connect to OBD bus. Check connection to the vehicle. Make sure the vehicle is OBD-II compliant, and ignition is ON.";
-
-		case CAN_ERROR:
-			return "CAN Error. Check connection to the vehicle. Make sure the vehicle is OBD-II compliant, and ignition is ON.";
-
-		case DATA_ERROR:
-		case DATA_ERROR2:
-			return "Data Error: there has been a loss of data. You may have a bad connection to the vehicle, check the cable and try again.";
-
-		case BUFFER_FULL:
-			return "Hardware data buffer overflow.";
-
-		case SERIAL_ERROR:
-		case UNKNOWN_CMD:
-		case RUBBISH:
-			return "Serial Link Error: please check connection between computer and scan tool.";
-		default:
-			return error.name();
-		}
-	}
-}
-
 enum ELMReadResult{
 	EMPTY,
 	DATA,
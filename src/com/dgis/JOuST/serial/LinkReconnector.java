@@ -0,0 +1,38 @@
+package com.dgis.JOuST.serial;
+
+import java.io.IOException;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Brings a lost link back, for a ConnectionSupervisor. If the port itself
+ * may have gone away, e.g. a USB adapter losing power with the ignition,
+ * reopen it here and hand the new streams to ElmSerial.reopen() before
+ * the handshake.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public interface LinkReconnector {
+	/**
+	 * @return true if the vehicle answers again.
+	 * @throws IOException if the attempt failed; it will be retried.
+	 */
+	boolean reconnect(ObdSerial device) throws IOException;
+}
@@ -2,6 +2,11 @@ package com.dgis.JOuST.serial;
 
 import java.io.IOException;
 
+import com.dgis.JOuST.DTCMode;
+import com.dgis.JOuST.DTCResultListener;
+import com.dgis.JOuST.OBDContext;
+import com.dgis.JOuST.OBDRequest;
+import com.dgis.JOuST.OBDResponseListener;
 import com.dgis.JOuST.PIDNotFoundException;
 import com.dgis.JOuST.PIDResultListener;
 
@@ -86,6 +91,30 @@ public interface ObdSerial {
 	 */
 	public void requestPID(PIDResultListener list, String name) throws IOException, PIDNotFoundException;
 	
+	/**
+	 * Sends an arbitrary request, for any service, and parses the answer.
+	 * May return before request is completed.
+	 * @param req the request.
+	 * @param list the listener to call with the parsed answer.
+	 * @throws IOException
+	 */
+	public <T> void request(OBDRequest<T> req, OBDResponseListener<T> list) throws IOException;
+	
+	/**
+	 * Requests the diagnostic trouble codes of every ECU that answers.
+	 * Same as request(OBDRequests.dtcs(mode), ...).
+	 * May return before request is completed.
+	 * @param list the listener to call when the codes are received.
+	 * @param mode which codes to read.
+	 * @throws IOException
+	 */
+	public void requestDTCs(DTCResultListener list, DTCMode mode) throws IOException;
+	
+	/**
+	 * @return the catalog, log, metrics and timing this instance uses.
+	 */
+	public OBDContext getContext();
+	
 	/**
 	 * @return the state of the connection (ignores protocol state,
 	 * reports if close() has been called).
@@ -98,19 +127,3 @@ public interface ObdSerial {
 	 */
 	public String getInterfaceIdentifier();
 }
-
-class ResetResult{
-	/**
-	 * Was the interface found?
-	 */
-	public boolean foundDevice;
-	/**
-	 * Arbitrary response string detailing failure or success.
-	 */
-	public String response;
-
-	public ResetResult(String response, boolean found) {
-		this.response=response;
-		foundDevice=found;
-	}
-}
\ No newline at end of file
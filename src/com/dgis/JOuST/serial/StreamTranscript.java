@@ -0,0 +1,269 @@
+package com.dgis.JOuST.serial;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.dgis.JOuST.OBDLog;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Records every byte sent to and received from an interface, along with
+ * the System.nanoTime() at which it crossed the stream, into a fixed-size
+ * ring buffer. Older bytes are overwritten once the buffer is full.
+ *
+ * Writers never lock: each write claims a range of slots with a single
+ * atomic add. A slot holds its byte, direction and sequence number packed
+ * into one atomic word, so they can never be seen apart; the timestamp
+ * is written between clearing that word and setting it, so dump(), which
+ * reads the word before and after the timestamp, skips any slot that was
+ * overwritten while it was being read.
+ *
+ * Nothing is recorded unless the streams are wrapped with wrap(), so an
+ * ElmSerial without a transcript pays nothing. Dumps on error are written
+ * by a background thread, at most one every ERROR_DUMP_INTERVAL_MILLIS,
+ * so a failing request does not wait on the disk.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class StreamTranscript {
+	public static final byte TX = 'T';
+	public static final byte RX = 'R';
+
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * Errors that follow a dump within this long do not cause another.
+	 */
+	public static final long ERROR_DUMP_INTERVAL_MILLIS = 10000;
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final int mask;
+	//Per slot: (sequence number + 1) << 9 | direction bit << 8 | byte, or
+	//0 if never written or being written.
+	private final AtomicLongArray published;
+	private final AtomicLongArray time;
+	private final AtomicLong head = new AtomicLong();
+
+	private volatile File errorDumpFile = null;
+	private volatile OBDLog log = new OBDLog("transcript");
+	private final AtomicBoolean dumping = new AtomicBoolean();
+	private volatile long lastErrorDumpNanos;
+	private volatile boolean dumpedOnError = false;
+
+	public StreamTranscript() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity number of bytes to keep. Rounded up to a power of two.
+	 */
+	public StreamTranscript(int capacity) {
+		if(capacity <= 0) throw new IllegalArgumentException("Transcript capacity must be positive.");
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity) size <<= 1;
+		mask = size - 1;
+		published = new AtomicLongArray(size);
+		time = new AtomicLongArray(size);
+	}
+
+	/**
+	 * @param log where failures to write dumps are reported.
+	 */
+	public void setLog(OBDLog log) {
+		if(log == null) throw new NullPointerException("log");
+		this.log = log;
+	}
+
+	/**
+	 * @return a stream that records everything read from in.
+	 */
+	public InputStream wrap(InputStream in) {
+		return new FilterInputStream(in){
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if(b >= 0) record(RX, (byte)b, System.nanoTime());
+				return b;
+			}
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				if(n > 0) record(RX, b, off, n);
+				return n;
+			}
+		};
+	}
+
+	/**
+	 * @return a stream that records everything written to out.
+	 */
+	public OutputStream wrap(OutputStream out) {
+		return new FilterOutputStream(out){
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				record(TX, (byte)b, System.nanoTime());
+			}
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				record(TX, b, off, len);
+			}
+		};
+	}
+
+	void record(byte dir, byte[] b, int off, int len) {
+		long now = System.nanoTime();
+		long seq = head.getAndAdd(len);
+		for(int x=0; x<len; x++, seq++)
+			put(seq, dir, b[off+x], now);
+	}
+
+	void record(byte dir, byte b, long now) {
+		put(head.getAndIncrement(), dir, b, now);
+	}
+
+	private void put(long seq, byte dir, byte b, long now) {
+		int slot = (int)(seq & mask);
+		//Each lazySet orders the stores before it, so a reader that sees
+		//the new time also sees the word cleared or replaced.
+		published.lazySet(slot, 0);
+		time.lazySet(slot, now);
+		published.lazySet(slot, (seq+1) << 9 | (dir == TX ? 0x100 : 0) | (b & 0xFF));
+	}
+
+	/**
+	 * @return total number of bytes recorded since creation.
+	 */
+	public long getRecordedCount() {
+		return head.get();
+	}
+
+	/**
+	 * Writes a human-readable copy of the buffer to out, one line per run of
+	 * bytes that share a direction and timestamp. Times are relative to the
+	 * oldest byte still held.
+	 */
+	public synchronized void dump(OutputStream out) {
+		PrintStream ps = new PrintStream(out);
+		long end = head.get();
+		long start = Math.max(0, end - published.length());
+		long base = -1;
+		long runTime = 0;
+		byte runDir = 0;
+		StringBuilder hex = new StringBuilder();
+		StringBuilder text = new StringBuilder();
+		for(long seq = start; seq < end; seq++) {
+			int slot = (int)(seq & mask);
+			long word = published.get(slot);
+			if(word >>> 9 != seq+1) continue; //not yet written, or already overwritten
+			long t = time.get(slot);
+			if(published.get(slot) != word) continue; //overwritten while we were reading it
+			int b = (int)(word & 0xFF);
+			byte dir = (word & 0x100) != 0 ? TX : RX;
+			if(base < 0) base = t;
+			if(hex.length() > 0 && (dir != runDir || t != runTime)) {
+				printRun(ps, runDir, runTime - base, hex, text);
+			}
+			runDir = dir;
+			runTime = t;
+			hex.append(' ').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+			text.append(b >= ' ' && b < 127 ? (char)b : '.');
+		}
+		if(hex.length() > 0) printRun(ps, runDir, runTime - base, hex, text);
+		ps.flush();
+	}
+
+	private static void printRun(PrintStream ps, byte dir, long nanos, StringBuilder hex, StringBuilder text) {
+		ps.println(String.format("%12.6f ms %s%s  |%s|", nanos / 1e6, dir == TX ? "TX" : "RX", hex, text));
+		hex.setLength(0);
+		text.setLength(0);
+	}
+
+	/**
+	 * Writes the buffer to a file, replacing it.
+	 * @throws IOException
+	 */
+	public void dump(File f) throws IOException {
+		dump(f, false);
+	}
+
+	private void dump(File f, boolean append) throws IOException {
+		FileOutputStream out = new FileOutputStream(f, append);
+		try {
+			if(append) out.write(("--- "+new Date()+"\n").getBytes());
+			dump(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * When set, errorOccurred() will append the buffer to this file.
+	 * @param f the file, or null to disable dumping on error.
+	 */
+	public void setErrorDumpFile(File f) {
+		errorDumpFile = f;
+	}
+
+	/**
+	 * Called by the interface driver when a request fails. Starts
+	 * appending the buffer to the error dump file in the background, if
+	 * one has been set and no dump was started in the last
+	 * ERROR_DUMP_INTERVAL_MILLIS.
+	 * @return true if a dump was started.
+	 */
+	public boolean errorOccurred() {
+		final File f = errorDumpFile;
+		if(f == null) return false;
+		long now = System.nanoTime();
+		if(dumpedOnError && now - lastErrorDumpNanos < ERROR_DUMP_INTERVAL_MILLIS * 1000000L) return false;
+		if(!dumping.compareAndSet(false, true)) return false;
+		lastErrorDumpNanos = now;
+		dumpedOnError = true;
+		Thread t = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				try {
+					dump(f, true);
+				} catch (IOException e) {
+					log.logError("Could not write transcript to "+f+": "+e.getMessage());
+				} finally {
+					dumping.set(false);
+				}
+			}
+		}, "transcript dump");
+		t.setDaemon(true);
+		t.start();
+		return true;
+	}
+}
@@ -0,0 +1,182 @@
+package com.dgis.JOuST.serial;
+
+import java.io.IOException;
+
+import com.dgis.JOuST.IOBDEventDriver;
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.OBDLog;
+import com.dgis.JOuST.OBDRequest;
+import com.dgis.JOuST.OBDRequests;
+import com.dgis.JOuST.OBDResponseListener;
+import com.dgis.JOuST.SampleTime;
+import com.dgis.JOuST.VehicleProfile;
+import com.dgis.JOuST.VehicleProfileListener;
+import com.dgis.JOuST.VehicleProfileStore;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Connects to a vehicle using what was learned the last time it was seen.
+ *
+ * If a profile was saved on a previous run, the interface is warm started
+ * straight onto the known protocol and polling can begin at once; the VIN
+ * is checked afterwards with verify(), once the event driver is running.
+ * Otherwise the full handshake is done, the VIN read, and the protocol and
+ * supported PIDs discovered and saved for next time.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class VehicleConnector {
+	private final ElmSerial elm;
+	private final VehicleProfileStore store;
+	private final OBDLog logger;
+	private VehicleProfile profile;
+	private boolean fromCache;
+
+	public VehicleConnector(ElmSerial elm, VehicleProfileStore store) {
+		this.elm = elm;
+		this.store = store;
+		this.logger = elm.getContext().getLog();
+	}
+
+	/**
+	 * Connects to the vehicle.
+	 * @return true if the vehicle answered.
+	 * @throws IOException
+	 */
+	public boolean connect() throws IOException {
+		VehicleProfile last = store.loadLast();
+		if(last != null) {
+			ResetResult res = elm.resetAndHandshake(last);
+			if(!res.foundDevice) return false;
+			profile = last;
+			fromCache = true;
+			return true;
+		}
+		fromCache = false;
+		ResetResult res = elm.resetAndHandshake();
+		if(!res.foundDevice) return false;
+		String vin = read(OBDRequests.vin());
+		if(vin == null) {
+			logger.logWarning("Vehicle did not report a VIN, its profile will not be saved.");
+			return true;
+		}
+		profile = store.load(vin);
+		if(profile == null) {
+			profile = discover(vin);
+			logger.logInfo("Discovered "+profile+".");
+		}
+		try {
+			store.save(profile);
+		} catch(IOException e) {
+			logger.logWarning("Could not save vehicle profile: "+e.getMessage());
+		}
+		return true;
+	}
+
+	/**
+	 * @return the profile of the connected vehicle, or null if it is not known.
+	 */
+	public VehicleProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * @return true if connect() used a cached profile that verify() has not
+	 * yet confirmed.
+	 */
+	public boolean isUnverified() {
+		return fromCache;
+	}
+
+	/**
+	 * Checks, in the background, that a cached profile belongs to the
+	 * connected vehicle. Does nothing if the profile was not cached.
+	 * @param driver the running event driver.
+	 * @param list told if the VIN does not match.
+	 */
+	public void verify(IOBDEventDriver driver, final VehicleProfileListener list) {
+		if(!fromCache) return;
+		final VehicleProfile cached = profile;
+		driver.requestOnce(OBDRequests.vin(), new OBDResponseListener<String>(){
+			@Override
+			public void responseReceived(OBDRequest<String> request, String vin, SampleTime time) {
+				fromCache = false;
+				if(vin == null || vin.equals(cached.getVin())) return;
+				logger.logWarning("Connected with profile for "+cached.getVin()+" but vehicle is "+vin+".");
+				try {
+					store.markLast(null);
+				} catch(IOException e) {
+					logger.logWarning("Could not clear last vehicle profile: "+e.getMessage());
+				}
+				if(list != null) list.profileMismatch(cached, vin);
+			}
+			@Override
+			public void error(OBDError error, OBDRequest<String> request) {
+				logger.logWarning("Could not verify vehicle profile: "+error);
+			}
+		}, elm.getContext().getTiming().getRequestTimeout());
+	}
+
+	private VehicleProfile discover(String vin) throws IOException {
+		VehicleProfile p = new VehicleProfile(vin);
+		p.setInterfaceType(elm.getInterfaceIdentifier());
+		p.setProtocol(elm.getProtocol());
+		final SampleTime latency = new SampleTime();
+		for(int base=0; base<0x100; base+=0x20) {
+			int[] counts = read(OBDRequests.supportedPids(base), latency);
+			if(counts == null) break;
+			for(int x=0; x<32 && base+1+x < 0x100; x++)
+				p.setEcuCount(base+1+x, counts[x]);
+			if(base == 0)
+				p.setLatencyMillis((int)(latency.getLatencyNanos() / 1000000L));
+			//Last bit of each range says whether the next range exists.
+			if(counts[31] == 0) break;
+		}
+		p.setPidsKnown();
+		return p;
+	}
+
+	private <T> T read(OBDRequest<T> req) throws IOException {
+		return read(req, null);
+	}
+
+	/**
+	 * Sends a request and waits for its answer. ElmSerial answers before
+	 * request() returns.
+	 */
+	private <T> T read(OBDRequest<T> req, final SampleTime time) throws IOException {
+		final Object[] result = new Object[1];
+		elm.request(req, new OBDResponseListener<T>(){
+			@Override
+			public void responseReceived(OBDRequest<T> request, T value, SampleTime t) {
+				result[0] = value;
+				if(time != null) time.set(t);
+			}
+			@Override
+			public void error(OBDError error, OBDRequest<T> request) {
+				logger.logVerbose("Profile discovery: "+request+": "+error);
+			}
+		});
+		@SuppressWarnings("unchecked")
+		T value = (T)result[0];
+		return value;
+	}
+}
@@ -0,0 +1,43 @@
+package com.dgis.JOuST.store;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Everything a RollupStore keeps for one pid: its raw samples, its minute
+ * and hour rollups, and the time of its last sample.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+final class PidColumns {
+	final SampleColumn samples;
+	final RollupColumn minutes;
+	final RollupColumn hours;
+	long lastTime;
+
+	PidColumns(File dir, int segmentBytes) throws IOException {
+		samples = new SampleColumn(dir, segmentBytes);
+		minutes = new RollupColumn(new File(dir, "minute.rol"), Resolution.MINUTE);
+		hours = new RollupColumn(new File(dir, "hour.rol"), Resolution.HOUR);
+		lastTime = samples.lastTime();
+	}
+}
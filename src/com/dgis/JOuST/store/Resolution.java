@@ -0,0 +1,55 @@
+package com.dgis.JOuST.store;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * The bucket widths RollupStore keeps rollups at.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public enum Resolution {
+	MINUTE(60 * 1000L),
+	HOUR(60 * 60 * 1000L);
+
+	private final long millis;
+
+	private Resolution(long millis) {
+		this.millis = millis;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * @return the start of the bucket t falls in.
+	 */
+	public long floor(long t) {
+		long r = t % millis;
+		return r < 0 ? t - r - millis : t - r;
+	}
+
+	/**
+	 * @return the start of the first bucket starting at or after t.
+	 */
+	public long ceil(long t) {
+		long f = floor(t);
+		return f == t ? t : f + millis;
+	}
+}
@@ -0,0 +1,97 @@
+package com.dgis.JOuST.store;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Count, minimum, maximum and sum of the samples of one pid over a span
+ * of time, as answered by RollupStore.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public final class Rollup {
+	private final int pid;
+	private final long startMillis;
+	private final long endMillis;
+	private final long count;
+	private final double min;
+	private final double max;
+	private final double sum;
+
+	public Rollup(int pid, long startMillis, long endMillis, long count, double min, double max, double sum) {
+		this.pid = pid;
+		this.startMillis = startMillis;
+		this.endMillis = endMillis;
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.sum = sum;
+	}
+
+	public int getPid() {
+		return pid;
+	}
+
+	/**
+	 * @return the start of the span, inclusive.
+	 */
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * @return the end of the span, exclusive.
+	 */
+	public long getEndMillis() {
+		return endMillis;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the smallest sample, or NaN if there were none.
+	 */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * @return the largest sample, or NaN if there were none.
+	 */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the mean of the samples, or NaN if there were none.
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PID %02X [%d, %d): n=%d min=%s max=%s mean=%s", pid, startMillis, endMillis, count, getMin(), getMax(), getMean());
+	}
+}
@@ -0,0 +1,44 @@
+package com.dgis.JOuST.store;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Sums up rollups and samples for a query.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+final class RollupAccumulator {
+	private long count = 0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+	private double sum = 0;
+
+	void merge(long count, double min, double max, double sum) {
+		if(count == 0) return;
+		this.count += count;
+		this.min = Math.min(this.min, min);
+		this.max = Math.max(this.max, max);
+		this.sum += sum;
+	}
+
+	Rollup toRollup(int pid, long startMillis, long endMillis) {
+		return new Rollup(pid, startMillis, endMillis, count, min, max, sum);
+	}
+}
@@ -0,0 +1,144 @@
+package com.dgis.JOuST.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * The rollups of one pid at one resolution: a memory-mapped file of
+ * fixed-size records, one per bucket that has samples, in time order.
+ * The last record is the bucket being filled and is updated in place
+ * with each sample, so the file is always current.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+final class RollupColumn {
+	static final int MAGIC = 0x4A524331; //JRC1
+	//magic, unused, record count
+	static final int HEADER_BYTES = 16;
+	//bucket start, count, min, max, sum
+	static final int RECORD_BYTES = 40;
+	static final int INITIAL_RECORDS = 1024;
+
+	private final File file;
+	private final Resolution resolution;
+	private MappedByteBuffer buf;
+	private int records;
+
+	RollupColumn(File file, Resolution resolution) throws IOException {
+		this.file = file;
+		this.resolution = resolution;
+		boolean create = !file.exists();
+		map(HEADER_BYTES + INITIAL_RECORDS * RECORD_BYTES);
+		if(create) {
+			buf.putInt(0, MAGIC);
+			buf.putLong(8, 0);
+		} else {
+			if(buf.getInt(0) != MAGIC) throw new IOException(file+" is not a rollup file.");
+			records = (int)buf.getLong(8);
+			if(records < 0 || HEADER_BYTES + (long)records * RECORD_BYTES > buf.capacity())
+				throw new IOException(file+" is corrupt.");
+		}
+	}
+
+	private void map(long size) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			size = Math.max(size, raf.length());
+			buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private int offset(int record) {
+		return HEADER_BYTES + record * RECORD_BYTES;
+	}
+
+	/**
+	 * Folds a sample into its bucket. Samples must come in time order.
+	 */
+	void add(long t, double value) throws IOException {
+		long bucket = resolution.floor(t);
+		int o;
+		if(records > 0 && buf.getLong(offset(records-1)) == bucket) {
+			o = offset(records-1);
+			buf.putLong(o + 8, buf.getLong(o + 8) + 1);
+			buf.putDouble(o + 16, Math.min(buf.getDouble(o + 16), value));
+			buf.putDouble(o + 24, Math.max(buf.getDouble(o + 24), value));
+			buf.putDouble(o + 32, buf.getDouble(o + 32) + value);
+			return;
+		}
+		if(offset(records + 1) > buf.capacity()) map(2L * buf.capacity());
+		o = offset(records);
+		buf.putLong(o, bucket);
+		buf.putLong(o + 8, 1);
+		buf.putDouble(o + 16, value);
+		buf.putDouble(o + 24, value);
+		buf.putDouble(o + 32, value);
+		records++;
+		buf.putLong(8, records);
+	}
+
+	void force() {
+		buf.force();
+	}
+
+	/**
+	 * @return the index of the first bucket starting at or after t.
+	 */
+	private int search(long t) {
+		int lo = 0, hi = records;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(buf.getLong(offset(mid)) < t) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Folds every bucket starting in [from, to) into acc.
+	 */
+	void merge(long from, long to, RollupAccumulator acc) {
+		for(int r = search(from); r < records; r++) {
+			int o = offset(r);
+			if(buf.getLong(o) >= to) break;
+			acc.merge(buf.getLong(o + 8), buf.getDouble(o + 16), buf.getDouble(o + 24), buf.getDouble(o + 32));
+		}
+	}
+
+	/**
+	 * Adds a Rollup for every bucket starting in [from, to) to out.
+	 */
+	void list(int pid, long from, long to, List<Rollup> out) {
+		for(int r = search(from); r < records; r++) {
+			int o = offset(r);
+			long start = buf.getLong(o);
+			if(start >= to) break;
+			out.add(new Rollup(pid, start, start + resolution.getMillis(), buf.getLong(o + 8),
+					buf.getDouble(o + 16), buf.getDouble(o + 24), buf.getDouble(o + 32)));
+		}
+	}
+}
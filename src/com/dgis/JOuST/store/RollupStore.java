@@ -0,0 +1,273 @@
+package com.dgis.JOuST.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dgis.JOuST.OBDError;
+import com.dgis.JOuST.OBDLog;
+import com.dgis.JOuST.PIDCatalog;
+import com.dgis.JOuST.PIDResultListener;
+import com.dgis.JOuST.SampleTime;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * An append-only store of decoded pid samples that keeps per-minute and
+ * per-hour rollups (count, min, max, sum) as samples arrive, so summaries
+ * over long spans never have to read the samples themselves.
+ *
+ * Subscribe it to an IOBDEventDriver like any other listener, or hand it
+ * samples with record(). Each pid is a column in its own directory under
+ * the store's: the raw samples, delta and XOR compressed in memory-mapped
+ * segments (see SampleColumn), and one memory-mapped file of rollups per
+ * resolution. Samples older than the pid's last one are dropped.
+ *
+ * summarize() answers from the hour rollups wherever whole hours fit in
+ * the range, minute rollups at the edges, and reads raw samples only for
+ * the partial minutes at either end, so a month of trips costs at most a
+ * few thousand records.
+ *
+ * Writes go to mapped memory and reach the disk when the operating system
+ * gets to them, or on flush(). Not safe for use by more than one process.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+public class RollupStore implements PIDResultListener, Closeable {
+	public static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+
+	private final File dir;
+	private final PIDCatalog catalog;
+	private final int segmentBytes;
+	private final PidColumns[] columns = new PidColumns[256];
+	private long dropped = 0;
+	//Samples from dataReceived() that could not be written, and whether
+	//the last one failed, so a full disk is logged once rather than for
+	//every sample.
+	private long failed = 0;
+	private boolean failing = false;
+	private volatile OBDLog log = new OBDLog("store");
+	private boolean closed = false;
+
+	/**
+	 * Decodes samples with the default catalog.
+	 */
+	public RollupStore(File dir) throws IOException {
+		this(dir, null, DEFAULT_SEGMENT_BYTES);
+	}
+
+	/**
+	 * @param catalog decodes samples handed to dataReceived(), or null for
+	 * the default catalog.
+	 * @param segmentBytes size of each raw sample segment file.
+	 */
+	public RollupStore(File dir, PIDCatalog catalog, int segmentBytes) throws IOException {
+		if(!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create "+dir);
+		this.dir = dir;
+		this.catalog = catalog;
+		this.segmentBytes = segmentBytes;
+	}
+
+	private File columnDir(int pid) {
+		return new File(dir, String.format("%02X", pid));
+	}
+
+	/**
+	 * @return the pid's columns, or null if it has none and create is false.
+	 */
+	private PidColumns columns(int pid, boolean create) throws IOException {
+		if(closed) throw new IOException("Store is closed.");
+		if(pid < 0 || pid > 0xFF) throw new IllegalArgumentException("No such PID: "+pid);
+		if(columns[pid] == null && (create || columnDir(pid).isDirectory()))
+			columns[pid] = new PidColumns(columnDir(pid), segmentBytes);
+		return columns[pid];
+	}
+
+	/**
+	 * Appends a sample and folds it into the rollups.
+	 * @return false if it was dropped for being older than the pid's last
+	 * sample, or not a number.
+	 */
+	public synchronized boolean record(int pid, long timeMillis, double value) throws IOException {
+		PidColumns c = columns(pid, true);
+		if(Double.isNaN(value) || timeMillis < c.lastTime) {
+			dropped++;
+			return false;
+		}
+		c.samples.append(timeMillis, value);
+		c.minutes.add(timeMillis, value);
+		c.hours.add(timeMillis, value);
+		c.lastTime = timeMillis;
+		return true;
+	}
+
+	/**
+	 * Records the decoded sample, at the wall clock time it was taken.
+	 * Samples that cannot be written are counted, see getFailed(), and
+	 * the first of each run of them is logged.
+	 */
+	@Override
+	public void dataReceived(int pid, int numBytes, byte[] data, SampleTime time) {
+		double value = (catalog != null ? catalog : PIDCatalog.getDefault()).decode(pid, data, numBytes);
+		synchronized(this) {
+			try {
+				record(pid, time.getWallClockMillis(), value);
+				failing = false;
+			} catch (IOException e) {
+				failed++;
+				if(!failing)
+					log.logError(String.format("Could not store samples of PID %02X: %s", pid, e.getMessage()));
+				failing = true;
+			}
+		}
+	}
+
+	@Override
+	public void error(OBDError error, int pid) {
+	}
+
+	/**
+	 * @return how many samples were dropped as out of order or not a number.
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return how many samples handed to dataReceived() could not be
+	 * written.
+	 */
+	public synchronized long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @param log where samples that cannot be written are reported.
+	 */
+	public void setLog(OBDLog log) {
+		if(log == null) throw new NullPointerException("log");
+		this.log = log;
+	}
+
+	/**
+	 * @return the pids that have samples, in ascending order.
+	 */
+	public synchronized List<Integer> getPids() {
+		List<Integer> pids = new ArrayList<Integer>();
+		for(int pid=0; pid<256; pid++)
+			if(columns[pid] != null || columnDir(pid).isDirectory()) pids.add(pid);
+		return pids;
+	}
+
+	/**
+	 * Summarizes the samples of pid with fromMillis <= time < toMillis.
+	 */
+	public synchronized Rollup summarize(int pid, long fromMillis, long toMillis) throws IOException {
+		RollupAccumulator acc = new RollupAccumulator();
+		PidColumns c = columns(pid, false);
+		if(c != null && fromMillis < toMillis) {
+			long hourStart = Resolution.HOUR.ceil(fromMillis);
+			long hourEnd = Resolution.HOUR.floor(toMillis);
+			if(hourStart < hourEnd) {
+				c.hours.merge(hourStart, hourEnd, acc);
+				summarizeMinutes(c, fromMillis, hourStart, acc);
+				summarizeMinutes(c, hourEnd, toMillis, acc);
+			} else {
+				summarizeMinutes(c, fromMillis, toMillis, acc);
+			}
+		}
+		return acc.toRollup(pid, fromMillis, toMillis);
+	}
+
+	private static void summarizeMinutes(PidColumns c, long from, long to, RollupAccumulator acc) {
+		if(from >= to) return;
+		long minuteStart = Resolution.MINUTE.ceil(from);
+		long minuteEnd = Resolution.MINUTE.floor(to);
+		if(minuteStart < minuteEnd) {
+			c.minutes.merge(minuteStart, minuteEnd, acc);
+			summarizeSamples(c, from, minuteStart, acc);
+			summarizeSamples(c, minuteEnd, to, acc);
+		} else {
+			summarizeSamples(c, from, to, acc);
+		}
+	}
+
+	private static void summarizeSamples(PidColumns c, long from, long to, RollupAccumulator acc) {
+		if(from >= to) return;
+		SampleColumn.Cursor cur = c.samples.cursor(from, to);
+		while(cur.next())
+			acc.merge(1, cur.value, cur.value, cur.value);
+	}
+
+	/**
+	 * @return the rollup of every bucket at resolution res that starts in
+	 * [fromMillis, toMillis) and has samples, in time order.
+	 */
+	public synchronized List<Rollup> rollups(int pid, Resolution res, long fromMillis, long toMillis) throws IOException {
+		List<Rollup> out = new ArrayList<Rollup>();
+		PidColumns c = columns(pid, false);
+		if(c != null) (res == Resolution.HOUR ? c.hours : c.minutes).list(pid, fromMillis, toMillis, out);
+		return out;
+	}
+
+	/**
+	 * Reads raw samples of pid with fromMillis <= time < toMillis, oldest
+	 * first, until the arrays are full.
+	 * @return how many samples were read.
+	 */
+	public synchronized int read(int pid, long fromMillis, long toMillis, long[] times, double[] values) throws IOException {
+		PidColumns c = columns(pid, false);
+		if(c == null) return 0;
+		int n = 0;
+		SampleColumn.Cursor cur = c.samples.cursor(fromMillis, toMillis);
+		while(n < times.length && n < values.length && cur.next()) {
+			times[n] = cur.time;
+			values[n] = cur.value;
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Writes everything recorded so far to disk.
+	 */
+	public synchronized void flush() {
+		for(PidColumns c : columns) {
+			if(c == null) continue;
+			c.samples.force();
+			c.minutes.force();
+			c.hours.force();
+		}
+	}
+
+	/**
+	 * Flushes, and refuses further use. The mappings themselves are
+	 * released when they are garbage collected.
+	 */
+	@Override
+	public synchronized void close() {
+		if(closed) return;
+		flush();
+		for(int x=0; x<columns.length; x++)
+			columns[x] = null;
+		closed = true;
+	}
+}
@@ -0,0 +1,262 @@
+package com.dgis.JOuST.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Copyright (C) 2009 Giacomo Ferrari
+ * This file is part of JOuST.
+ *  JOuST is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  JOuST is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with JOuST.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * The raw samples of one pid, in memory-mapped segment files of a fixed
+ * size, named by sequence number. Samples are appended in time order.
+ *
+ * Each segment starts with a header, kept up to date on every append so
+ * a crash loses nothing that was handed over, followed by the samples.
+ * Each sample is its time as the zigzag varint of the change in the gap
+ * since the previous one (so a steady sample rate costs a byte), then its
+ * value XORed with the previous one: a byte holding the number of leading
+ * and trailing zero bytes of the XOR, then the bytes between. A value
+ * that did not change costs a byte. Every segment decodes on its own.
+ *
+ * Copyright (C) 2009 Giacomo Ferrari
+ * @author Giacomo Ferrari
+ */
+
+final class SampleColumn {
+	static final int MAGIC = 0x4A534331; //JSC1
+	//magic, count, used, unused, first time, last time, last gap, last value bits
+	static final int HEADER_BYTES = 48;
+	//Longest encoded sample: a 10 byte varint, a control byte, 8 value bytes.
+	static final int MAX_SAMPLE_BYTES = 19;
+
+	private final File dir;
+	private final int segmentBytes;
+	private final List<Segment> segments = new ArrayList<Segment>();
+	private final byte[] scratch = new byte[MAX_SAMPLE_BYTES];
+
+	SampleColumn(File dir, int segmentBytes) throws IOException {
+		if(segmentBytes < HEADER_BYTES + MAX_SAMPLE_BYTES) throw new IllegalArgumentException("Segments too small.");
+		this.dir = dir;
+		this.segmentBytes = segmentBytes;
+		if(!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create "+dir);
+		String[] names = dir.list();
+		Arrays.sort(names);
+		for(String name : names) {
+			if(!name.endsWith(".seg")) continue;
+			segments.add(new Segment(new File(dir, name), segmentBytes, false));
+		}
+	}
+
+	/**
+	 * @return the time of the last sample, or Long.MIN_VALUE if there are none.
+	 */
+	long lastTime() {
+		for(int x=segments.size()-1; x>=0; x--) {
+			Segment s = segments.get(x);
+			if(s.count > 0) return s.lastTime;
+		}
+		return Long.MIN_VALUE;
+	}
+
+	/**
+	 * Appends a sample no older than the last one.
+	 */
+	void append(long t, double value) throws IOException {
+		Segment s = segments.isEmpty() ? null : segments.get(segments.size()-1);
+		if(s == null || s.used + MAX_SAMPLE_BYTES > s.buf.capacity()) {
+			s = new Segment(new File(dir, String.format("%08d.seg", segments.size())), segmentBytes, true);
+			segments.add(s);
+		}
+		s.append(t, Double.doubleToRawLongBits(value), scratch);
+	}
+
+	void force() {
+		for(int x=0; x<segments.size(); x++)
+			segments.get(x).buf.force();
+	}
+
+	/**
+	 * @return a cursor over the samples with from <= time < to.
+	 */
+	Cursor cursor(long from, long to) {
+		return new Cursor(from, to);
+	}
+
+	/**
+	 * Walks the samples in a time range, skipping segments outside it.
+	 */
+	final class Cursor {
+		private final long from;
+		private final long to;
+		private int segment = -1;
+		private Segment s;
+		private int pos;
+		private int left;
+		private long gap;
+		private long bits;
+		long time;
+		double value;
+
+		Cursor(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * @return true if time and value now hold the next sample.
+		 */
+		boolean next() {
+			while(true) {
+				while(s == null || left == 0) {
+					if(++segment >= segments.size()) return false;
+					s = segments.get(segment);
+					if(s.count == 0 || s.lastTime < from) {
+						s = null;
+						continue;
+					}
+					if(s.firstTime >= to) return false;
+					pos = HEADER_BYTES;
+					left = s.count;
+					time = s.firstTime;
+					gap = 0;
+					bits = 0;
+				}
+				gap += unzigzag(readVarint());
+				time += gap;
+				bits ^= readXor();
+				left--;
+				if(time >= to) {
+					left = 0;
+					segment = segments.size();
+					return false;
+				}
+				if(time >= from) {
+					value = Double.longBitsToDouble(bits);
+					return true;
+				}
+			}
+		}
+
+		private long readVarint() {
+			long v = 0;
+			for(int shift = 0;; shift += 7) {
+				int b = s.buf.get(pos++);
+				v |= (long)(b & 0x7F) << shift;
+				if((b & 0x80) == 0) return v;
+			}
+		}
+
+		private long readXor() {
+			int control = s.buf.get(pos++) & 0xFF;
+			int lead = control >> 4;
+			int trail = control & 0xF;
+			long x = 0;
+			for(int n = 8 - lead - trail; n > 0; n--)
+				x = (x << 8) | (s.buf.get(pos++) & 0xFF);
+			return x << (8 * trail);
+		}
+	}
+
+	static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * One mapped segment file.
+	 */
+	static final class Segment {
+		final MappedByteBuffer buf;
+		int count;
+		int used;
+		long firstTime;
+		long lastTime;
+		long lastGap;
+		long lastBits;
+
+		Segment(File f, int size, boolean create) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(f, "rw");
+			try {
+				if(!create) size = (int)Math.min(Math.max(raf.length(), size), Integer.MAX_VALUE);
+				buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			} finally {
+				//The mapping outlives the channel.
+				raf.close();
+			}
+			if(create) {
+				used = HEADER_BYTES;
+				buf.putInt(0, MAGIC);
+				writeHeader();
+				return;
+			}
+			if(buf.getInt(0) != MAGIC) throw new IOException(f+" is not a sample segment.");
+			count = buf.getInt(4);
+			used = buf.getInt(8);
+			firstTime = buf.getLong(16);
+			lastTime = buf.getLong(24);
+			lastGap = buf.getLong(32);
+			lastBits = buf.getLong(40);
+			if(used < HEADER_BYTES || used > buf.capacity()) throw new IOException(f+" is corrupt.");
+		}
+
+		void append(long t, long bits, byte[] scratch) {
+			if(count == 0) {
+				firstTime = t;
+				lastTime = t;
+			}
+			long gap = t - lastTime;
+			int n = 0;
+			long v = zigzag(gap - lastGap);
+			while((v & ~0x7FL) != 0) {
+				scratch[n++] = (byte)((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			scratch[n++] = (byte)v;
+			long x = bits ^ lastBits;
+			int lead = x == 0 ? 8 : Long.numberOfLeadingZeros(x) / 8;
+			int trail = x == 0 ? 0 : Long.numberOfTrailingZeros(x) / 8;
+			scratch[n++] = (byte)(lead << 4 | trail);
+			for(int b = 7 - lead; b >= trail; b--)
+				scratch[n++] = (byte)(x >>> (8 * b));
+			for(int i=0; i<n; i++)
+				buf.put(used + i, scratch[i]);
+			used += n;
+			count++;
+			lastTime = t;
+			lastGap = gap;
+			lastBits = bits;
+			writeHeader();
+		}
+
+		private void writeHeader() {
+			buf.putInt(4, count);
+			buf.putInt(8, used);
+			buf.putLong(16, firstTime);
+			buf.putLong(24, lastTime);
+			buf.putLong(32, lastGap);
+			buf.putLong(40, lastBits);
+		}
+	}
+}